@@ -22,8 +22,11 @@ import org.apache.http.ParseException;
 import org.apache.http.protocol.HTTP;
 import org.apache.http.util.EntityUtils;
 import org.peterbaldwin.client.android.vlcremote.R;
+import org.peterbaldwin.vlcremote.model.Preferences;
 import org.peterbaldwin.vlcremote.preference.ProgressCategory;
 import org.peterbaldwin.vlcremote.receiver.PhoneStateChangedReceiver;
+import org.peterbaldwin.vlcremote.sweep.AddressRange;
+import org.peterbaldwin.vlcremote.sweep.DiscoveryCache;
 import org.peterbaldwin.vlcremote.sweep.PortSweeper;
 
 import android.app.AlertDialog;
@@ -35,6 +38,7 @@ import android.content.DialogInterface;
 import android.content.Intent;
 import android.content.IntentFilter;
 import android.content.pm.PackageManager;
+import android.net.DhcpInfo;
 import android.net.NetworkInfo;
 import android.net.Uri;
 import android.net.wifi.SupplicantState;
@@ -44,6 +48,7 @@ import android.os.Bundle;
 import android.os.Looper;
 import android.os.SystemClock;
 import android.preference.CheckBoxPreference;
+import android.preference.EditTextPreference;
 import android.preference.Preference;
 import android.preference.Preference.OnPreferenceChangeListener;
 import android.preference.PreferenceActivity;
@@ -59,11 +64,15 @@ import android.view.View;
 import android.widget.AdapterView.AdapterContextMenuInfo;
 import android.widget.EditText;
 import android.widget.ListAdapter;
+import android.widget.Toast;
 
 import java.io.IOException;
 import java.net.HttpURLConnection;
 import java.text.MessageFormat;
 import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
 
 @SuppressWarnings("deprecation")
 public final class PickServerActivity extends PreferenceActivity implements PortSweeper.Callback,
@@ -77,6 +86,19 @@ public final class PickServerActivity extends PreferenceActivity implements Port
             PhoneStateChangedReceiver.class.getName());
 
     public static final String EXTRA_PORT = "org.peterbaldwin.portsweep.intent.extra.PORT";
+
+    /**
+     * Ports to scan besides {@link #EXTRA_PORT} and the ports of the
+     * remembered servers, as an {@code int[]}.
+     */
+    public static final String EXTRA_PORTS = "org.peterbaldwin.portsweep.intent.extra.PORTS";
+
+    /**
+     * Address ranges to scan besides the Wi-Fi network, as a
+     * {@code String[]} of CIDR ranges such as {@code 10.0.0.0/23}.
+     */
+    public static final String EXTRA_RANGES = "org.peterbaldwin.portsweep.intent.extra.RANGES";
+
     public static final String EXTRA_FILE = "org.peterbaldwin.portsweep.intent.extra.FILE";
     public static final String EXTRA_WORKERS = "org.peterbaldwin.portsweep.intent.extra.WORKERS";
     public static final String EXTRA_REMEMBERED = "org.peterbaldwin.portsweep.intent.extra.REMEMBERED";
@@ -85,6 +107,8 @@ public final class PickServerActivity extends PreferenceActivity implements Port
     private static final String KEY_SERVERS = "servers";
     private static final String KEY_ADD_SERVER = "add_server";
     private static final String KEY_PAUSE_FOR_CALL = "pause_for_call";
+    private static final String KEY_SWEEP_PORTS = "sweep_ports";
+    private static final String KEY_SWEEP_RANGES = "sweep_ranges";
 
     public static final int DEFAULT_WORKERS = 16;
 
@@ -114,12 +138,17 @@ public final class PickServerActivity extends PreferenceActivity implements Port
 
     private String mFile;
     private int mPort;
+    private int[] mExtraPorts;
+    private int[] mPorts;
+    private String[] mRanges;
     private int mWorkers;
     private long mCreateTime;
     private ArrayList<String> mRemembered;
 
     private CheckBoxPreference mPreferenceWiFi;
     private CheckBoxPreference mPreferencePauseForCall;
+    private EditTextPreference mPreferenceSweepPorts;
+    private EditTextPreference mPreferenceSweepRanges;
     private ProgressCategory mProgressCategory;
     private Preference mPreferenceAddServer;
 
@@ -134,6 +163,10 @@ public final class PickServerActivity extends PreferenceActivity implements Port
         mPreferencePauseForCall = (CheckBoxPreference) preferenceScreen.findPreference(KEY_PAUSE_FOR_CALL);
         mProgressCategory = (ProgressCategory) preferenceScreen.findPreference(KEY_SERVERS);
         mPreferenceAddServer = preferenceScreen.findPreference(KEY_ADD_SERVER);
+        mPreferenceSweepPorts = (EditTextPreference) preferenceScreen
+                .findPreference(KEY_SWEEP_PORTS);
+        mPreferenceSweepRanges = (EditTextPreference) preferenceScreen
+                .findPreference(KEY_SWEEP_RANGES);
 
         mPreferencePauseForCall.setOnPreferenceChangeListener(this);
         mPreferencePauseForCall.setChecked(getPauseForCall());
@@ -154,6 +187,23 @@ public final class PickServerActivity extends PreferenceActivity implements Port
             mRemembered = new ArrayList<String>();
         }
 
+        mExtraPorts = intent.getIntArrayExtra(EXTRA_PORTS);
+        if (mExtraPorts == null) {
+            mExtraPorts = new int[0];
+        }
+        mPorts = getPorts();
+
+        mRanges = intent.getStringArrayExtra(EXTRA_RANGES);
+        if (mRanges == null) {
+            mRanges = new String[0];
+        }
+
+        mPreferenceSweepPorts.setOnPreferenceChangeListener(this);
+        mPreferenceSweepRanges.setOnPreferenceChangeListener(this);
+        setSweepSummary(mPreferenceSweepPorts, join(mExtraPorts), R.string.summary_sweep_ports);
+        setSweepSummary(mPreferenceSweepRanges, TextUtils.join(", ", mRanges),
+                R.string.summary_sweep_ranges);
+
         registerForContextMenu(getListView());
 
         mWorkers = intent.getIntExtra(EXTRA_WORKERS, DEFAULT_WORKERS);
@@ -223,6 +273,8 @@ public final class PickServerActivity extends PreferenceActivity implements Port
                 break;
             case HttpURLConnection.HTTP_OK:
                 try {
+                    // The sweep keeps only the start of the page, which is
+                    // where VLC's error message is
                     if (EntityUtils.toString(response.getEntity()).contains("--http-password")) {
                         preference.setSummary(getText(R.string.summary_password_not_set));
                         preference.setEnabled(false);
@@ -250,7 +302,58 @@ public final class PickServerActivity extends PreferenceActivity implements Port
     private PortSweeper createPortSweeper() {
         PortSweeper.Callback callback = this;
         Looper looper = Looper.myLooper();
-        return new PortSweeper(mPort, mFile, mWorkers, callback, looper);
+        DiscoveryCache discoveryCache = DiscoveryCache.get(this);
+        return new PortSweeper(mPorts, mFile, mWorkers, callback, looper, discoveryCache);
+    }
+
+    /**
+     * Returns the default port, the ports of the remembered servers, so that
+     * servers on other ports are found again on other networks, and the
+     * ports that the user added.
+     */
+    private int[] getPorts() {
+        Set<Integer> ports = new LinkedHashSet<Integer>();
+        ports.add(Integer.valueOf(mPort));
+        for (String server : mRemembered) {
+            int index = server.lastIndexOf(':');
+            if (index != -1) {
+                try {
+                    ports.add(Integer.valueOf(server.substring(index + 1)));
+                } catch (NumberFormatException e) {
+                    Log.w(TAG, "Invalid port number: " + server);
+                }
+            }
+        }
+        for (int port : mExtraPorts) {
+            ports.add(Integer.valueOf(port));
+        }
+        int[] array = new int[ports.size()];
+        int i = 0;
+        for (Integer port : ports) {
+            array[i++] = port.intValue();
+        }
+        return array;
+    }
+
+    /**
+     * Returns the prefix length of the Wi-Fi network, or 24 if it is not
+     * known.
+     */
+    private int getPrefixLength() {
+        WifiManager manager = (WifiManager) getSystemService(WIFI_SERVICE);
+        DhcpInfo info = manager.getDhcpInfo();
+        int prefixLength = (info != null) ? Integer.bitCount(info.netmask) : 0;
+        return (prefixLength > 0 && prefixLength < 32) ? prefixLength : 24;
+    }
+
+    /**
+     * Returns the address of the Wi-Fi gateway, or {@code null} if it is not
+     * known.
+     */
+    private byte[] getGateway() {
+        WifiManager manager = (WifiManager) getSystemService(WIFI_SERVICE);
+        DhcpInfo info = manager.getDhcpInfo();
+        return (info != null && info.gateway != 0) ? toByteArray(info.gateway) : null;
     }
 
     private WifiInfo getConnectionInfo() {
@@ -266,18 +369,23 @@ public final class PickServerActivity extends PreferenceActivity implements Port
         return null;
     }
 
-    private byte[] getIpAddress() {
+    void startSweep() {
         WifiInfo info = getConnectionInfo();
         if (info != null) {
-            return toByteArray(info.getIpAddress());
-        }
-        return null;
-    }
-
-    void startSweep() {
-        byte[] ipAddress = getIpAddress();
-        if (ipAddress != null) {
-            mPortSweeper.sweep(ipAddress);
+            byte[] ipAddress = toByteArray(info.getIpAddress());
+            int prefixLength = getPrefixLength();
+            List<AddressRange> ranges = new ArrayList<AddressRange>();
+            ranges.add(AddressRange.around(ipAddress, prefixLength));
+            for (String range : mRanges) {
+                try {
+                    ranges.add(AddressRange.parse(range));
+                } catch (IllegalArgumentException e) {
+                    Log.w(TAG, e.getMessage());
+                }
+            }
+            String network = DiscoveryCache.getNetworkKey(info.getSSID(), ipAddress,
+                    prefixLength);
+            mPortSweeper.sweep(ipAddress, getGateway(), ranges, network);
         }
     }
 
@@ -389,7 +497,9 @@ public final class PickServerActivity extends PreferenceActivity implements Port
             // Undo checkbox toggle
             updateWifiInfo();
             return true;
-        } else if (preference == mPreferencePauseForCall) {
+        } else if (preference == mPreferencePauseForCall
+                || preference == mPreferenceSweepPorts
+                || preference == mPreferenceSweepRanges) {
             return super.onPreferenceTreeClick(preferenceScreen, preference);
         } else {
             String server = preference.getKey();
@@ -403,11 +513,126 @@ public final class PickServerActivity extends PreferenceActivity implements Port
         if (preference == mPreferencePauseForCall) {
             setPauseForCall(Boolean.TRUE.equals(newValue));
             return true;
+        } else if (preference == mPreferenceSweepPorts) {
+            String value = String.valueOf(newValue);
+            try {
+                mExtraPorts = parsePorts(value);
+            } catch (IllegalArgumentException e) {
+                showError(R.string.error_sweep_port, e.getMessage());
+                return false;
+            }
+            Preferences.get(this).setSweepPorts(value);
+            // Keep the new ports if the activity is recreated
+            getIntent().putExtra(EXTRA_PORTS, mExtraPorts);
+            setSweepSummary(mPreferenceSweepPorts, value, R.string.summary_sweep_ports);
+            mPorts = getPorts();
+            restartSweep();
+            return true;
+        } else if (preference == mPreferenceSweepRanges) {
+            String value = String.valueOf(newValue);
+            try {
+                mRanges = parseRanges(value);
+            } catch (IllegalArgumentException e) {
+                showError(R.string.error_sweep_range, e.getMessage());
+                return false;
+            }
+            Preferences.get(this).setSweepRanges(value);
+            getIntent().putExtra(EXTRA_RANGES, mRanges);
+            setSweepSummary(mPreferenceSweepRanges, value, R.string.summary_sweep_ranges);
+            startSweep();
+            return true;
         } else {
             return false;
         }
     }
 
+    private void setSweepSummary(EditTextPreference preference, String value, int summary) {
+        value = value.trim();
+        preference.setText(value);
+        if (value.length() != 0) {
+            preference.setSummary(value);
+        } else {
+            preference.setSummary(summary);
+        }
+    }
+
+    private void showError(int resId, String value) {
+        String template = getString(resId);
+        Object[] objects = {
+            value
+        };
+        CharSequence text = MessageFormat.format(template, objects);
+        Toast.makeText(this, text, Toast.LENGTH_LONG).show();
+    }
+
+    /**
+     * Sweeps again with a new {@link PortSweeper}, because the ports to scan
+     * are fixed when it is created.
+     */
+    private void restartSweep() {
+        mPortSweeper.destory();
+        mPortSweeper = createPortSweeper();
+        startSweep();
+    }
+
+    private static String[] split(String list) {
+        String trimmed = list.trim();
+        return trimmed.length() != 0 ? trimmed.split("[,\\s]+") : new String[0];
+    }
+
+    private static String join(int[] values) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < values.length; i++) {
+            if (i != 0) {
+                builder.append(", ");
+            }
+            builder.append(values[i]);
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Parses a list of ports separated by commas or spaces.
+     *
+     * @throws IllegalArgumentException if a port is invalid; the message is
+     *             the invalid port.
+     */
+    public static int[] parsePorts(String list) {
+        String[] values = split(list);
+        int[] ports = new int[values.length];
+        for (int i = 0; i < values.length; i++) {
+            int port;
+            try {
+                port = Integer.parseInt(values[i]);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException(values[i]);
+            }
+            if (port <= 0 || port > 0xFFFF) {
+                throw new IllegalArgumentException(values[i]);
+            }
+            ports[i] = port;
+        }
+        return ports;
+    }
+
+    /**
+     * Parses a list of CIDR ranges separated by commas or spaces.
+     *
+     * @throws IllegalArgumentException if a range is invalid or too large;
+     *             the message is the invalid range.
+     */
+    public static String[] parseRanges(String list) {
+        String[] ranges = split(list);
+        for (String range : ranges) {
+            try {
+                AddressRange.parse(range);
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException(range);
+            }
+        }
+        return ranges;
+    }
+
     private Preference getPreferenceFromMenuInfo(ContextMenuInfo menuInfo) {
         if (menuInfo != null) {
             if (menuInfo instanceof AdapterContextMenuInfo) {
@@ -34,18 +34,19 @@ import org.peterbaldwin.vlcremote.fragment.VolumeFragment;
 import org.peterbaldwin.vlcremote.intent.Intents;
 import org.peterbaldwin.vlcremote.model.Preferences;
 import org.peterbaldwin.vlcremote.model.Status;
+import org.peterbaldwin.vlcremote.model.StatusDelta;
 import org.peterbaldwin.vlcremote.net.MediaServer;
 import org.peterbaldwin.vlcremote.net.PasswordManager;
+import org.peterbaldwin.vlcremote.service.StatusConnection;
+import org.peterbaldwin.vlcremote.service.StatusListener;
 import org.peterbaldwin.vlcremote.widget.VolumePanel;
 
 import android.app.AlertDialog;
 import android.app.Dialog;
 import android.app.SearchManager;
-import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.DialogInterface;
 import android.content.Intent;
-import android.content.IntentFilter;
 import android.media.AudioManager;
 import android.net.Uri;
 import android.os.Build;
@@ -125,7 +126,7 @@ public class PlaybackActivity extends FragmentActivity implements TabHost.OnTabC
 
     private VolumePanel mVolumePanel;
 
-    private BroadcastReceiver mStatusReceiver;
+    private StatusConnection mStatusConnection;
 
     private int mVolumeLevel = VOLUME_LEVEL_UNKNOWN;
 
@@ -365,6 +366,15 @@ public class PlaybackActivity extends FragmentActivity implements TabHost.OnTabC
         ArrayList<String> remembered = preferences.getRememberedServers();
         Intent intent = new Intent(this, PickServerActivity.class);
         intent.putExtra(PickServerActivity.EXTRA_PORT, 8080);
+        try {
+            intent.putExtra(PickServerActivity.EXTRA_PORTS,
+                    PickServerActivity.parsePorts(preferences.getSweepPorts()));
+            intent.putExtra(PickServerActivity.EXTRA_RANGES,
+                    PickServerActivity.parseRanges(preferences.getSweepRanges()));
+        } catch (IllegalArgumentException e) {
+            // The values are checked when they are entered
+            Log.w(TAG, "Invalid sweep setting: " + e.getMessage());
+        }
         intent.putExtra(PickServerActivity.EXTRA_FILE, "/requests/status.xml");
         intent.putStringArrayListExtra(PickServerActivity.EXTRA_REMEMBERED, remembered);
         startActivityForResult(intent, REQUEST_PICK_SERVER);
@@ -405,6 +415,10 @@ public class PlaybackActivity extends FragmentActivity implements TabHost.OnTabC
 
     private void changeServer(String authority) {
         Context context = this;
+        if (mMediaServer != null && !authority.equals(mMediaServer.getAuthority())) {
+            // Don't send delayed commands to the old server
+            mMediaServer.cancelDelayedCommands();
+        }
         mMediaServer = new MediaServer(context, authority);
         mPlayback.setMediaServer(mMediaServer);
         mButtons.setMediaServer(mMediaServer);
@@ -477,11 +491,8 @@ public class PlaybackActivity extends FragmentActivity implements TabHost.OnTabC
     @Override
     public void onResume() {
         super.onResume();
-        mStatusReceiver = new StatusReceiver();
-        IntentFilter filter = new IntentFilter();
-        filter.addAction(Intents.ACTION_STATUS);
-        filter.addAction(Intents.ACTION_ERROR);
-        registerReceiver(mStatusReceiver, filter);
+        mStatusConnection = new StatusConnection(this, new StatusCallback(), StatusDelta.VOLUME);
+        mStatusConnection.bind();
         if (mMediaServer == null) {
             pickServer();
         }
@@ -489,8 +500,8 @@ public class PlaybackActivity extends FragmentActivity implements TabHost.OnTabC
 
     @Override
     public void onPause() {
-        unregisterReceiver(mStatusReceiver);
-        mStatusReceiver = null;
+        mStatusConnection.unbind();
+        mStatusConnection = null;
         super.onPause();
     }
 
@@ -629,27 +640,25 @@ public class PlaybackActivity extends FragmentActivity implements TabHost.OnTabC
         }
     }
 
-    private class StatusReceiver extends BroadcastReceiver {
-        @Override
-        public void onReceive(Context context, Intent intent) {
-            String action = intent.getAction();
-            if (Intents.ACTION_STATUS.equals(action)) {
-                Status status = (Status) intent.getSerializableExtra(Intents.EXTRA_STATUS);
-                onVolumeChanged(status.getVolume());
-            } else if (Intents.ACTION_ERROR.equals(action)) {
-                Throwable error = (Throwable) intent.getSerializableExtra(Intents.EXTRA_THROWABLE);
-                try {
-                    throw error;
-                } catch (HttpResponseException e) {
-                    switch (e.getStatusCode()) {
-                        case HttpURLConnection.HTTP_UNAUTHORIZED:
-                            if (mPasswordDialog == null || !mPasswordDialog.isShowing()) {
-                                enterPassword();
-                            }
-                            break;
-                    }
-                } catch (Throwable t) {
+    private class StatusCallback implements StatusListener {
+        /** {@inheritDoc} */
+        public void onStatusChanged(Status status, StatusDelta delta) {
+            onVolumeChanged(status.getVolume());
+        }
+
+        /** {@inheritDoc} */
+        public void onError(Throwable error) {
+            try {
+                throw error;
+            } catch (HttpResponseException e) {
+                switch (e.getStatusCode()) {
+                    case HttpURLConnection.HTTP_UNAUTHORIZED:
+                        if (mPasswordDialog == null || !mPasswordDialog.isShowing()) {
+                            enterPassword();
+                        }
+                        break;
                 }
+            } catch (Throwable t) {
             }
         }
     }
@@ -52,7 +52,7 @@ public class MediaAppWidgetProvider extends AppWidgetProvider {
     public void onReceive(Context context, Intent intent) {
         String action = intent.getAction();
         if (Intents.ACTION_STATUS.equals(action)) {
-            Status status = (Status) intent.getSerializableExtra(Intents.EXTRA_STATUS);
+            Status status = intent.getParcelableExtra(Intents.EXTRA_STATUS);
             String noMedia = context.getString(R.string.no_media);
 
             String text1;
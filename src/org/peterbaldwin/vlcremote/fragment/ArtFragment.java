@@ -18,16 +18,15 @@
 package org.peterbaldwin.vlcremote.fragment;
 
 import org.peterbaldwin.client.android.vlcremote.R;
-import org.peterbaldwin.vlcremote.intent.Intents;
 import org.peterbaldwin.vlcremote.loader.ImageLoader;
 import org.peterbaldwin.vlcremote.model.Status;
+import org.peterbaldwin.vlcremote.model.StatusDelta;
 import org.peterbaldwin.vlcremote.model.Track;
 import org.peterbaldwin.vlcremote.net.MediaServer;
+import org.peterbaldwin.vlcremote.service.StatusConnection;
+import org.peterbaldwin.vlcremote.service.StatusListener;
 
-import android.content.BroadcastReceiver;
 import android.content.Context;
-import android.content.Intent;
-import android.content.IntentFilter;
 import android.graphics.drawable.Drawable;
 import android.net.Uri;
 import android.os.Bundle;
@@ -43,7 +42,7 @@ public class ArtFragment extends Fragment implements LoaderCallbacks<Drawable> {
 
     private static final int LOADER_IMAGE = 1;
 
-    private BroadcastReceiver mStatusReceiver;
+    private StatusConnection mStatusConnection;
 
     private MediaServer mMediaServer;
 
@@ -69,16 +68,15 @@ public class ArtFragment extends Fragment implements LoaderCallbacks<Drawable> {
     @Override
     public void onResume() {
         super.onResume();
-        mStatusReceiver = new StatusReceiver();
-        IntentFilter filter = new IntentFilter();
-        filter.addAction(Intents.ACTION_STATUS);
-        getActivity().registerReceiver(mStatusReceiver, filter);
+        mStatusConnection = new StatusConnection(getActivity(), new StatusCallback(),
+                StatusDelta.ART);
+        mStatusConnection.bind();
     }
 
     @Override
     public void onPause() {
-        getActivity().unregisterReceiver(mStatusReceiver);
-        mStatusReceiver = null;
+        mStatusConnection.unbind();
+        mStatusConnection = null;
         super.onPause();
     }
 
@@ -109,11 +107,10 @@ public class ArtFragment extends Fragment implements LoaderCallbacks<Drawable> {
         }
     }
 
-    private void onStatusChanged(Status status) {
-        Track track = status.getTrack();
-        String artUrl = track.getArtUrl();
-        if (mArtUrl == null || !mArtUrl.equals(artUrl)) {
-            mArtUrl = artUrl;
+    private void onStatusChanged(Status status, StatusDelta delta) {
+        if (delta.hasChanges(StatusDelta.ART)) {
+            Track track = status.getTrack();
+            mArtUrl = track.getArtUrl();
             getLoaderManager().restartLoader(LOADER_IMAGE, null, this);
         }
     }
@@ -137,18 +134,14 @@ public class ArtFragment extends Fragment implements LoaderCallbacks<Drawable> {
         return uri.buildUpon().path(path).build();
     }
 
-    private class StatusReceiver extends BroadcastReceiver {
-        @Override
-        public void onReceive(Context context, Intent intent) {
-            if (this != mStatusReceiver) {
-                // TODO: Determine why this receiver is not unregistered
-                return;
-            }
-            String action = intent.getAction();
-            if (Intents.ACTION_STATUS.equals(action)) {
-                Status status = (Status) intent.getSerializableExtra(Intents.EXTRA_STATUS);
-                onStatusChanged(status);
-            }
+    private class StatusCallback implements StatusListener {
+        /** {@inheritDoc} */
+        public void onStatusChanged(Status status, StatusDelta delta) {
+            ArtFragment.this.onStatusChanged(status, delta);
+        }
+
+        /** {@inheritDoc} */
+        public void onError(Throwable error) {
         }
     }
 }
@@ -18,8 +18,11 @@
 package org.peterbaldwin.vlcremote.fragment;
 
 import org.peterbaldwin.client.android.vlcremote.R;
+import org.peterbaldwin.vlcremote.loader.DirectoryCache;
 import org.peterbaldwin.vlcremote.loader.DirectoryLoader;
+import org.peterbaldwin.vlcremote.loader.DirectoryPrefetcher;
 import org.peterbaldwin.vlcremote.model.Directory;
+import org.peterbaldwin.vlcremote.model.DirectorySort;
 import org.peterbaldwin.vlcremote.model.File;
 import org.peterbaldwin.vlcremote.model.Preferences;
 import org.peterbaldwin.vlcremote.model.Remote;
@@ -62,8 +65,17 @@ public class BrowseFragment extends ListFragment implements
 
     private String mDirectory = "~";
 
+    /**
+     * The directory that was shown before {@link #mDirectory}, if any.
+     */
+    private String mPreviousDirectory;
+
+    private DirectoryPrefetcher mPrefetcher;
+
     private Preferences mPreferences;
 
+    private DirectorySort mSort;
+
     private TextView mTitle;
 
     private TextView mEmpty;
@@ -74,6 +86,8 @@ public class BrowseFragment extends ListFragment implements
         setHasOptionsMenu(true);
         Context context = getActivity();
         mPreferences = Preferences.get(context);
+        mPrefetcher = new DirectoryPrefetcher(context);
+        mSort = mPreferences.getBrowseSort();
         if (savedInstanceState == null) {
             mDirectory = mPreferences.getBrowseDirectory();
         } else {
@@ -89,6 +103,12 @@ public class BrowseFragment extends ListFragment implements
         return view;
     }
 
+    @Override
+    public void onDestroy() {
+        mPrefetcher.cancel();
+        super.onDestroy();
+    }
+
     @Override
     public void onSaveInstanceState(Bundle outState) {
         super.onSaveInstanceState(outState);
@@ -131,11 +151,20 @@ public class BrowseFragment extends ListFragment implements
     }
 
     public void openDirectory(String path) {
+        mPrefetcher.cancel();
+        mPreviousDirectory = mDirectory;
         mDirectory = path;
+        clearTextFilter();
         mAdapter.clear();
         getLoaderManager().restartLoader(Data.DIRECTORY, null, this);
     }
 
+    private void clearTextFilter() {
+        if (getView() != null) {
+            getListView().clearTextFilter();
+        }
+    }
+
     private boolean isDirectory(ContextMenuInfo menuInfo) {
         if (menuInfo instanceof AdapterContextMenuInfo) {
             AdapterContextMenuInfo info = (AdapterContextMenuInfo) menuInfo;
@@ -153,28 +182,84 @@ public class BrowseFragment extends ListFragment implements
         inflater.inflate(R.menu.browse_options, menu);
     }
 
+    @Override
+    public void onPrepareOptionsMenu(Menu menu) {
+        super.onPrepareOptionsMenu(menu);
+        MenuItem sortItem = menu.findItem(getSortItemId(mSort.getKey()));
+        if (sortItem != null) {
+            sortItem.setChecked(true);
+        }
+        MenuItem directoriesFirstItem = menu.findItem(R.id.menu_sort_directories_first);
+        if (directoriesFirstItem != null) {
+            directoriesFirstItem.setChecked(mSort.isDirectoriesFirst());
+        }
+    }
+
+    private static int getSortItemId(int key) {
+        switch (key) {
+            case DirectorySort.BY_SIZE:
+                return R.id.menu_sort_size;
+            case DirectorySort.BY_DATE:
+                return R.id.menu_sort_date;
+            case DirectorySort.BY_TYPE:
+                return R.id.menu_sort_type;
+            default:
+                return R.id.menu_sort_name;
+        }
+    }
+
     @Override
     public boolean onOptionsItemSelected(MenuItem item) {
         switch (item.getItemId()) {
             case R.id.menu_refresh:
-                getLoaderManager().restartLoader(Data.DIRECTORY, Bundle.EMPTY, this);
+                reload();
                 return true;
             case R.id.menu_parent:
                 openParentDirectory();
                 return true;
             case R.id.menu_home:
+                mPrefetcher.cancel();
+                mPreviousDirectory = mDirectory;
                 mDirectory = mPreferences.getHomeDirectory();
+                clearTextFilter();
                 getLoaderManager().restartLoader(Data.DIRECTORY, Bundle.EMPTY, this);
                 return true;
             case R.id.menu_set_home:
                 mPreferences.setHomeDirectory(mDirectory);
                 showSetHomeToast();
                 return true;
+            case R.id.menu_sort_name:
+                setSort(new DirectorySort(DirectorySort.BY_NAME, mSort.isDirectoriesFirst()));
+                return true;
+            case R.id.menu_sort_size:
+                setSort(new DirectorySort(DirectorySort.BY_SIZE, mSort.isDirectoriesFirst()));
+                return true;
+            case R.id.menu_sort_date:
+                setSort(new DirectorySort(DirectorySort.BY_DATE, mSort.isDirectoriesFirst()));
+                return true;
+            case R.id.menu_sort_type:
+                setSort(new DirectorySort(DirectorySort.BY_TYPE, mSort.isDirectoriesFirst()));
+                return true;
+            case R.id.menu_sort_directories_first:
+                setSort(new DirectorySort(mSort.getKey(), !mSort.isDirectoriesFirst()));
+                return true;
             default:
                 return super.onOptionsItemSelected(item);
         }
     }
 
+    private void setSort(DirectorySort sort) {
+        if (!sort.equals(mSort)) {
+            mSort = sort;
+            mPreferences.setBrowseSort(sort);
+            mPrefetcher.cancel();
+            if (mMediaServer != null) {
+                // The cached listing is sorted again without loading it
+                getLoaderManager().restartLoader(Data.DIRECTORY, Bundle.EMPTY, this);
+            }
+        }
+    }
+
     private void openParentDirectory() {
         for (int position = 0, n = mAdapter.getCount(); position < n; position++) {
             File file = mAdapter.getItem(position);
@@ -239,7 +324,7 @@ public class BrowseFragment extends ListFragment implements
         Context context = getActivity();
         mPreferences.setBrowseDirectory(mDirectory);
         setEmptyText(getText(R.string.loading));
-        return new DirectoryLoader(context, mMediaServer, mDirectory);
+        return new DirectoryLoader(context, mMediaServer, mDirectory, mSort);
     }
 
     /** {@inheritDoc} */
@@ -249,6 +334,9 @@ public class BrowseFragment extends ListFragment implements
         setTitle(result.data != null ? result.data.getPath() : null);
         if (isEmptyDirectory(result.data)) {
             handleEmptyDirectory();
+        } else if (result.data != null) {
+            // Hide the latency of the next tap
+            mPrefetcher.prefetch(mMediaServer, result.data, mPreviousDirectory, mSort);
         }
     }
 
@@ -287,6 +375,8 @@ public class BrowseFragment extends ListFragment implements
 
     public void reload() {
         if (mMediaServer != null) {
+            // Don't show the cached listing
+            DirectoryCache.get().remove(mMediaServer.getAuthority(), mDirectory);
             getLoaderManager().restartLoader(Data.DIRECTORY, Bundle.EMPTY, this);
         }
     }
@@ -18,14 +18,12 @@
 package org.peterbaldwin.vlcremote.fragment;
 
 import org.peterbaldwin.client.android.vlcremote.R;
-import org.peterbaldwin.vlcremote.intent.Intents;
 import org.peterbaldwin.vlcremote.model.Status;
+import org.peterbaldwin.vlcremote.model.StatusDelta;
 import org.peterbaldwin.vlcremote.net.MediaServer;
+import org.peterbaldwin.vlcremote.service.StatusConnection;
+import org.peterbaldwin.vlcremote.service.StatusListener;
 
-import android.content.BroadcastReceiver;
-import android.content.Context;
-import android.content.Intent;
-import android.content.IntentFilter;
 import android.os.Bundle;
 import android.support.v4.app.DialogFragment;
 import android.support.v4.app.Fragment;
@@ -40,7 +38,7 @@ public final class ButtonsFragment extends Fragment implements View.OnClickListe
 
     private MediaServer mMediaServer;
 
-    private BroadcastReceiver mStatusReceiver;
+    private StatusConnection mStatusConnection;
 
     private ImageButton mButtonShuffle;
     private ImageButton mButtonRepeat;
@@ -78,16 +76,15 @@ public final class ButtonsFragment extends Fragment implements View.OnClickListe
     @Override
     public void onResume() {
         super.onResume();
-        mStatusReceiver = new StatusReceiver();
-        IntentFilter filter = new IntentFilter();
-        filter.addAction(Intents.ACTION_STATUS);
-        getActivity().registerReceiver(mStatusReceiver, filter);
+        mStatusConnection = new StatusConnection(getActivity(), new StatusCallback(),
+                StatusDelta.FLAGS);
+        mStatusConnection.bind();
     }
 
     @Override
     public void onPause() {
-        getActivity().unregisterReceiver(mStatusReceiver);
-        mStatusReceiver = null;
+        mStatusConnection.unbind();
+        mStatusConnection = null;
         super.onPause();
     }
 
@@ -154,11 +151,14 @@ public final class ButtonsFragment extends Fragment implements View.OnClickListe
         updateButtons();
     }
 
-    private class StatusReceiver extends BroadcastReceiver {
-        @Override
-        public void onReceive(Context context, Intent intent) {
-            Status status = (Status) intent.getSerializableExtra(Intents.EXTRA_STATUS);
-            onStatusChanged(status);
+    private class StatusCallback implements StatusListener {
+        /** {@inheritDoc} */
+        public void onStatusChanged(Status status, StatusDelta delta) {
+            ButtonsFragment.this.onStatusChanged(status);
+        }
+
+        /** {@inheritDoc} */
+        public void onError(Throwable error) {
         }
     }
 }
@@ -18,13 +18,11 @@
 package org.peterbaldwin.vlcremote.fragment;
 
 import org.peterbaldwin.client.android.vlcremote.R;
-import org.peterbaldwin.vlcremote.intent.Intents;
 import org.peterbaldwin.vlcremote.model.Status;
+import org.peterbaldwin.vlcremote.model.StatusDelta;
+import org.peterbaldwin.vlcremote.service.StatusConnection;
+import org.peterbaldwin.vlcremote.service.StatusListener;
 
-import android.content.BroadcastReceiver;
-import android.content.Context;
-import android.content.Intent;
-import android.content.IntentFilter;
 import android.os.Bundle;
 import android.support.v4.app.Fragment;
 import android.view.LayoutInflater;
@@ -34,7 +32,7 @@ import android.widget.TextView;
 
 public class InfoFragment extends Fragment {
 
-    private BroadcastReceiver mStatusReceiver;
+    private StatusConnection mStatusConnection;
     private TextView mArtist;
     private TextView mAlbum;
     private TextView mTrack;
@@ -53,16 +51,15 @@ public class InfoFragment extends Fragment {
     @Override
     public void onResume() {
         super.onResume();
-        mStatusReceiver = new StatusReceiver();
-        IntentFilter filter = new IntentFilter();
-        filter.addAction(Intents.ACTION_STATUS);
-        getActivity().registerReceiver(mStatusReceiver, filter);
+        mStatusConnection = new StatusConnection(getActivity(), new StatusCallback(),
+                StatusDelta.TRACK);
+        mStatusConnection.bind();
     }
 
     @Override
     public void onPause() {
-        getActivity().unregisterReceiver(mStatusReceiver);
-        mStatusReceiver = null;
+        mStatusConnection.unbind();
+        mStatusConnection = null;
         super.onPause();
     }
 
@@ -76,15 +73,14 @@ public class InfoFragment extends Fragment {
         textView.setText(value);
     }
 
-    private class StatusReceiver extends BroadcastReceiver {
-        @Override
-        public void onReceive(Context context, Intent intent) {
-            String action = intent.getAction();
-            if (Intents.ACTION_STATUS.equals(action)) {
-                // TODO: Filter by authority
-                Status status = (Status) intent.getSerializableExtra(Intents.EXTRA_STATUS);
-                onStatusChanged(status);
-            }
+    private class StatusCallback implements StatusListener {
+        /** {@inheritDoc} */
+        public void onStatusChanged(Status status, StatusDelta delta) {
+            InfoFragment.this.onStatusChanged(status);
+        }
+
+        /** {@inheritDoc} */
+        public void onError(Throwable error) {
         }
     }
 }
@@ -18,17 +18,15 @@
 package org.peterbaldwin.vlcremote.fragment;
 
 import org.peterbaldwin.client.android.vlcremote.R;
-import org.peterbaldwin.vlcremote.intent.Intents;
 import org.peterbaldwin.vlcremote.model.Status;
+import org.peterbaldwin.vlcremote.model.StatusDelta;
 import org.peterbaldwin.vlcremote.net.MediaServer;
 import org.peterbaldwin.vlcremote.net.MediaServer.StatusRequest;
 import org.peterbaldwin.vlcremote.net.MediaServer.StatusRequest.CommandInterface;
 import org.peterbaldwin.vlcremote.net.MediaServer.StatusRequest.CommandInterface.PlaybackInterface;
+import org.peterbaldwin.vlcremote.service.StatusConnection;
+import org.peterbaldwin.vlcremote.service.StatusListener;
 
-import android.content.BroadcastReceiver;
-import android.content.Context;
-import android.content.Intent;
-import android.content.IntentFilter;
 import android.net.Uri;
 import android.os.Bundle;
 import android.support.v4.app.Fragment;
@@ -46,7 +44,7 @@ import android.widget.TextView;
 public class PlaybackFragment extends Fragment implements View.OnClickListener,
         OnSeekBarChangeListener {
 
-    private BroadcastReceiver mStatusReceiver;
+    private StatusConnection mStatusConnection;
 
     private ImageButton mButtonPlaylistPause;
 
@@ -156,16 +154,15 @@ public class PlaybackFragment extends Fragment implements View.OnClickListener,
     @Override
     public void onResume() {
         super.onResume();
-        mStatusReceiver = new StatusReceiver();
-        IntentFilter filter = new IntentFilter();
-        filter.addAction(Intents.ACTION_STATUS);
-        getActivity().registerReceiver(mStatusReceiver, filter);
+        mStatusConnection = new StatusConnection(getActivity(), new StatusCallback(),
+                StatusDelta.STATE | StatusDelta.TIME);
+        mStatusConnection.bind();
     }
 
     @Override
     public void onPause() {
-        getActivity().unregisterReceiver(mStatusReceiver);
-        mStatusReceiver = null;
+        mStatusConnection.unbind();
+        mStatusConnection = null;
         super.onPause();
     }
 
@@ -222,14 +219,14 @@ public class PlaybackFragment extends Fragment implements View.OnClickListener,
         return builder.toString();
     }
 
-    private class StatusReceiver extends BroadcastReceiver {
-        @Override
-        public void onReceive(Context context, Intent intent) {
-            String action = intent.getAction();
-            if (Intents.ACTION_STATUS.equals(action)) {
-                Status status = (Status) intent.getSerializableExtra(Intents.EXTRA_STATUS);
-                onStatusChanged(status);
-            }
+    private class StatusCallback implements StatusListener {
+        /** {@inheritDoc} */
+        public void onStatusChanged(Status status, StatusDelta delta) {
+            PlaybackFragment.this.onStatusChanged(status);
+        }
+
+        /** {@inheritDoc} */
+        public void onError(Throwable error) {
         }
     }
 }
@@ -18,22 +18,23 @@
 package org.peterbaldwin.vlcremote.fragment;
 
 import org.peterbaldwin.client.android.vlcremote.R;
-import org.peterbaldwin.vlcremote.intent.Intents;
 import org.peterbaldwin.vlcremote.loader.PlaylistLoader;
 import org.peterbaldwin.vlcremote.model.Playlist;
+import org.peterbaldwin.vlcremote.model.PlaylistIndex;
 import org.peterbaldwin.vlcremote.model.PlaylistItem;
 import org.peterbaldwin.vlcremote.model.Remote;
 import org.peterbaldwin.vlcremote.model.Status;
+import org.peterbaldwin.vlcremote.model.StatusDelta;
 import org.peterbaldwin.vlcremote.model.Track;
 import org.peterbaldwin.vlcremote.net.MediaServer;
+import org.peterbaldwin.vlcremote.service.StatusConnection;
+import org.peterbaldwin.vlcremote.service.StatusListener;
 import org.peterbaldwin.vlcremote.widget.PlaylistAdapter;
 
 import android.app.Activity;
 import android.app.SearchManager;
-import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
-import android.content.IntentFilter;
 import android.os.Bundle;
 import android.provider.MediaStore;
 import android.support.v4.app.ListFragment;
@@ -65,9 +66,11 @@ public class PlaylistFragment extends ListFragment implements
 
     private PlaylistAdapter mAdapter;
 
-    private BroadcastReceiver mStatusReceiver;
+    private StatusConnection mStatusConnection;
 
-    private String mCurrent;
+    private boolean mSelectCurrentTrack;
+
+    private final PlaylistIndex mIndex = new PlaylistIndex();
 
     @Override
     public void onAttach(Activity activity) {
@@ -108,16 +111,15 @@ public class PlaylistFragment extends ListFragment implements
     @Override
     public void onResume() {
         super.onResume();
-        mStatusReceiver = new StatusReceiver();
-        IntentFilter filter = new IntentFilter();
-        filter.addAction(Intents.ACTION_STATUS);
-        getActivity().registerReceiver(mStatusReceiver, filter);
+        mStatusConnection = new StatusConnection(getActivity(), new StatusCallback(),
+                StatusDelta.ITEM);
+        mStatusConnection.bind();
     }
 
     @Override
     public void onPause() {
-        getActivity().unregisterReceiver(mStatusReceiver);
-        mStatusReceiver = null;
+        mStatusConnection.unbind();
+        mStatusConnection = null;
         super.onPause();
     }
 
@@ -192,6 +194,8 @@ public class PlaylistFragment extends ListFragment implements
 
     public void setMediaServer(MediaServer mediaServer) {
         mMediaServer = mediaServer;
+        // Item ids are only meaningful for the server they came from
+        mIndex.clear();
         reload();
     }
 
@@ -231,20 +235,20 @@ public class PlaylistFragment extends ListFragment implements
         selectItem(item);
     }
 
-    public void selectCurrentTrack() {
-        final int count = mAdapter.getCount();
-        for (int position = 0; position < count; position++) {
-            PlaylistItem item = mAdapter.getItem(position);
-            if (item instanceof Track) {
-                Track track = (Track) item;
-                if (track.isCurrent()) {
-                    // Scroll to current track
-                    ListView listView = getListView();
-                    listView.setSelection(position);
-                    break;
-                }
-            }
+    /**
+     * Scrolls to the current track.
+     *
+     * @return {@code true} if the current track was found.
+     */
+    public boolean selectCurrentTrack() {
+        int position = mIndex.getCurrentPosition();
+        if (position != -1 && position < mAdapter.getCount()) {
+            // Scroll to current track
+            ListView listView = getListView();
+            listView.setSelection(position);
+            return true;
         }
+        return false;
     }
 
     @Override
@@ -256,7 +260,9 @@ public class PlaylistFragment extends ListFragment implements
     public Loader<Remote<Playlist>> onCreateLoader(int id, Bundle args) {
         setEmptyText(getText(R.string.loading));
         String search = "";
-        return new PlaylistLoader(mContext, mMediaServer, search);
+        // Show the saved playlist if nothing has been loaded from this server
+        boolean revalidate = (mIndex.getPlaylist() != null);
+        return new PlaylistLoader(mContext, mMediaServer, search, revalidate);
     }
 
     /** {@inheritDoc} */
@@ -264,30 +270,57 @@ public class PlaylistFragment extends ListFragment implements
         boolean wasEmpty = mAdapter.isEmpty();
         boolean hasError = (remote.error != null);
 
-        mAdapter.setItems(remote.data);
+        if (remote.data != null) {
+            // Partial results are the next chunk of tracks
+            boolean changed = remote.partial ? mIndex.append(remote.data) : mIndex
+                    .update(remote.data);
+            if (changed || wasEmpty) {
+                mAdapter.setPlaylist(mIndex.getPlaylist());
+            }
+        } else if (!hasError) {
+            mIndex.clear();
+            mAdapter.setPlaylist(null);
+        }
 
         if (hasError) {
             setEmptyText(getText(R.string.connection_error));
-        } else {
+        } else if (!remote.partial) {
             setEmptyText(getText(R.string.emptyplaylist));
         }
 
         if (wasEmpty) {
-            selectCurrentTrack();
+            // Large playlists arrive in chunks, so keep looking for the
+            // current track until the playlist is complete.
+            mSelectCurrentTrack = true;
+        }
+        if (mSelectCurrentTrack && (selectCurrentTrack() || !remote.partial)) {
+            mSelectCurrentTrack = false;
         }
     }
 
     /** {@inheritDoc} */
     public void onLoaderReset(Loader<Remote<Playlist>> loader) {
-        mAdapter.setItems(null);
+        mIndex.clear();
+        mAdapter.setPlaylist(null);
     }
 
-    void onStatusChanged(Status status) {
-        String title = status.getTrack().getTitle();
-        if (!TextUtils.equals(title, mCurrent)) {
-            // Reload the playlist and scroll to the new current track
-            mCurrent = title;
-            reload();
+    void onStatusChanged(Status status, StatusDelta delta) {
+        if (delta.hasChanges(StatusDelta.ITEM)) {
+            // VLC 2.0 and later report the playlist id of the current track
+            int id = status.getTrack().getId();
+            if (mIndex.contains(id)) {
+                // Just move the marker; the playlist is already loaded
+                if (mIndex.setCurrent(id)) {
+                    mAdapter.notifyDataSetChanged();
+                }
+            } else if (!delta.isInitial() && mIndex.getPlaylist() != null) {
+                // The item was enqueued after the playlist was loaded, or
+                // the server doesn't report item ids. The reloaded playlist
+                // is merged into the list by item id. The first status needs
+                // no request, because the playlist is loaded when the
+                // fragment is created.
+                reload();
+            }
         }
     }
 
@@ -297,11 +330,14 @@ public class PlaylistFragment extends ListFragment implements
         }
     }
 
-    private class StatusReceiver extends BroadcastReceiver {
-        @Override
-        public void onReceive(Context context, Intent intent) {
-            Status status = (Status) intent.getSerializableExtra(Intents.EXTRA_STATUS);
-            onStatusChanged(status);
+    private class StatusCallback implements StatusListener {
+        /** {@inheritDoc} */
+        public void onStatusChanged(Status status, StatusDelta delta) {
+            PlaylistFragment.this.onStatusChanged(status, delta);
+        }
+
+        /** {@inheritDoc} */
+        public void onError(Throwable error) {
         }
     }
 }
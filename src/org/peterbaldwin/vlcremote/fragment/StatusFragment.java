@@ -17,29 +17,67 @@
 
 package org.peterbaldwin.vlcremote.fragment;
 
+import org.peterbaldwin.vlcremote.model.Status;
+import org.peterbaldwin.vlcremote.model.StatusDelta;
 import org.peterbaldwin.vlcremote.net.MediaServer;
+import org.peterbaldwin.vlcremote.net.MediaServer.StatusRequest;
+import org.peterbaldwin.vlcremote.service.StatusConnection;
+import org.peterbaldwin.vlcremote.service.StatusListener;
 
 import android.os.Bundle;
 import android.os.Handler;
 import android.os.Message;
+import android.os.SystemClock;
 import android.support.v4.app.Fragment;
 import android.text.format.DateUtils;
 
 /**
  * Polls the server for status updates.
+ * <p>
+ * After the first request, the server is only asked to broadcast the status
+ * when it changes, and the polling interval adapts to the playback state.
  */
 public class StatusFragment extends Fragment implements Handler.Callback {
 
     private static final int TIMER = 1;
 
+    /**
+     * Polling interval while media is playing.
+     */
     private static final long INTERVAL = DateUtils.SECOND_IN_MILLIS;
 
+    /**
+     * Polling interval shortly after the status changes and near the end of a
+     * track.
+     */
+    private static final long FAST_INTERVAL = DateUtils.SECOND_IN_MILLIS / 2;
+
+    /**
+     * Polling interval while media is paused or stopped.
+     */
+    private static final long IDLE_INTERVAL = 5 * DateUtils.SECOND_IN_MILLIS;
+
+    /**
+     * How long to use {@link #FAST_INTERVAL} after the status changes.
+     */
+    private static final long ACTIVE_PERIOD = 3 * DateUtils.SECOND_IN_MILLIS;
+
     private Handler mHandler;
 
     private MediaServer mMediaServer;
 
+    private StatusConnection mStatusConnection;
+
+    private Status mStatus;
+
+    private long mLastChange;
+
+    private boolean mSubscribed;
+
     public void setMediaServer(MediaServer server) {
         mMediaServer = server;
+        mStatus = null;
+        mSubscribed = false;
     }
 
     @Override
@@ -51,12 +89,21 @@ public class StatusFragment extends Fragment implements Handler.Callback {
     @Override
     public void onResume() {
         super.onResume();
+        mStatusConnection = new StatusConnection(getActivity(), new StatusCallback(),
+                StatusDelta.ALL);
+        mStatusConnection.bind();
+
+        // Listeners that were registered while the fragment was paused need
+        // the full status, even if it has not changed.
+        mSubscribed = false;
         startTimer();
     }
 
     @Override
     public void onPause() {
         stopTimer();
+        mStatusConnection.unbind();
+        mStatusConnection = null;
         super.onPause();
     }
 
@@ -81,10 +128,62 @@ public class StatusFragment extends Fragment implements Handler.Callback {
 
     private void onTimerEvent() {
         if (mMediaServer != null) {
-            mMediaServer.status().programmatic().get();
+            StatusRequest request = mMediaServer.status().programmatic();
+            if (mSubscribed) {
+                request.onlyIfChanged();
+            }
+            request.get();
+            mSubscribed = true;
         }
 
         // Schedule the next timer event
-        mHandler.sendEmptyMessageDelayed(TIMER, INTERVAL);
+        mHandler.sendEmptyMessageDelayed(TIMER, getInterval());
+    }
+
+    private long getInterval() {
+        Status status = mStatus;
+        if (status == null) {
+            return INTERVAL;
+        }
+        if (SystemClock.uptimeMillis() - mLastChange < ACTIVE_PERIOD) {
+            // Commands usually cause a burst of changes
+            return FAST_INTERVAL;
+        }
+        if (status.isPlaying()) {
+            long remaining = (status.getLength() - status.getTime()) * DateUtils.SECOND_IN_MILLIS;
+            if (status.getLength() > 0 && remaining <= INTERVAL) {
+                // Pick up the next track as soon as possible
+                return FAST_INTERVAL;
+            }
+            return INTERVAL;
+        }
+        return IDLE_INTERVAL;
+    }
+
+    void onStatusChanged(Status status, StatusDelta delta) {
+        mStatus = status;
+        boolean active = !status.isPlaying()
+                || delta.hasChanges(StatusDelta.STATE | StatusDelta.TRACK);
+        if (active) {
+            // The status changes every second while media is playing, so only
+            // treat it as activity if the state or the track changed.
+            mLastChange = SystemClock.uptimeMillis();
+            if (isResumed() && mHandler.hasMessages(TIMER)) {
+                // Don't wait for the idle interval to elapse
+                stopTimer();
+                mHandler.sendEmptyMessageDelayed(TIMER, FAST_INTERVAL);
+            }
+        }
+    }
+
+    private class StatusCallback implements StatusListener {
+        /** {@inheritDoc} */
+        public void onStatusChanged(Status status, StatusDelta delta) {
+            StatusFragment.this.onStatusChanged(status, delta);
+        }
+
+        /** {@inheritDoc} */
+        public void onError(Throwable error) {
+        }
     }
 }
@@ -21,6 +21,7 @@ import org.peterbaldwin.vlcremote.model.Status;
 
 import android.content.Intent;
 import android.graphics.Bitmap;
+import android.os.Parcelable;
 
 public final class Intents {
 
@@ -59,6 +60,11 @@ public final class Intents {
     public static final String ACTION_ART = "org.peterbaldwin.vlcremote.intent.action.ART";
     public static final String ACTION_ERROR = "org.peterbaldwin.vlcremote.intent.action.ERROR";
 
+    /**
+     * Cancels all delayed commands for the server in the intent data.
+     */
+    public static final String ACTION_CANCEL = "org.peterbaldwin.vlcremote.intent.action.CANCEL";
+
     public static final String EXTRA_STATUS = "org.peterbaldwin.vlcremote.intent.extra.STATUS";
     public static final String EXTRA_PLAYLIST = "org.peterbaldwin.vlcremote.intent.extra.PLAYLIST";
     public static final String EXTRA_BITMAP = "org.peterbaldwin.vlcremote.intent.extra.BITMAP";
@@ -95,9 +101,22 @@ public final class Intents {
      */
     public static final int FLAG_SET_RESUME_ON_IDLE = 1 << 3;
 
+    /**
+     * Instructs the service to only broadcast the status if it is different
+     * from the last status that was broadcast.
+     */
+    public static final int FLAG_ONLY_IF_CHANGED = 1 << 4;
+
+    /**
+     * Instructs the service to send the command after the previous command
+     * has completed, instead of treating the previous command as stale.
+     */
+    public static final int FLAG_AFTER_PREVIOUS = 1 << 5;
+
     public static Intent status(Status status) {
         Intent intent = new Intent(ACTION_STATUS);
-        intent.putExtra(EXTRA_STATUS, status);
+        // Parcel the status instead of using Java serialization
+        intent.putExtra(EXTRA_STATUS, (Parcelable) status);
         return intent;
     }
 
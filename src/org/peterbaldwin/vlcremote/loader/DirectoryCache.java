@@ -0,0 +1,151 @@
+/*-
+ *  Copyright (C) 2011 Peter Baldwin
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.peterbaldwin.vlcremote.loader;
+
+import org.peterbaldwin.vlcremote.model.Directory;
+
+import android.os.SystemClock;
+import android.support.v4.util.LruCache;
+
+/**
+ * Recently loaded directory listings, shared by all screens.
+ * <p>
+ * Entries are evicted by the total number of files they hold, least recently
+ * used first. An entry is fresh for {@link #MAX_AGE} after it was loaded;
+ * older entries can still be shown, but should be loaded again.
+ */
+public final class DirectoryCache {
+
+    /**
+     * Maximum total number of files in all cached directories.
+     */
+    private static final int MAX_FILES = 4000;
+
+    /**
+     * How long a listing can be used without loading it again.
+     */
+    static final long MAX_AGE = 60 * 1000;
+
+    private static final DirectoryCache sInstance = new DirectoryCache(MAX_FILES);
+
+    public static DirectoryCache get() {
+        return sInstance;
+    }
+
+    public static final class Entry {
+        public final Directory directory;
+
+        private final long mTime;
+
+        Entry(Directory directory, long time) {
+            this.directory = directory;
+            mTime = time;
+        }
+
+        /**
+         * Returns {@code true} if the listing should be loaded again.
+         */
+        public boolean isStale() {
+            return SystemClock.elapsedRealtime() - mTime > MAX_AGE;
+        }
+    }
+
+    private final LruCache<String, Entry> mCache;
+
+    DirectoryCache(int maxFiles) {
+        mCache = new LruCache<String, Entry>(maxFiles) {
+            @Override
+            protected int sizeOf(String key, Entry entry) {
+                // Count the entry itself so that empty listings have a cost
+                return entry.directory.size() + 1;
+            }
+        };
+    }
+
+    /**
+     * Returns the cached listing of a directory, or {@code null}.
+     */
+    public Entry get(String authority, String path) {
+        return mCache.get(key(authority, path));
+    }
+
+    /**
+     * Caches the listing of a directory.
+     *
+     * @param path the path that was requested.
+     */
+    public void put(String authority, String path, Directory directory) {
+        Entry entry = new Entry(directory, SystemClock.elapsedRealtime());
+        mCache.put(key(authority, path), entry);
+
+        // The same directory can be requested with a different path (e.g.
+        // "~" or "dir/sub/.."), so also cache it by the path that the server
+        // reports.
+        String actualPath = directory.getPath();
+        if (actualPath != null) {
+            String actualKey = key(authority, actualPath);
+            if (!actualKey.equals(key(authority, path))) {
+                mCache.put(actualKey, entry);
+            }
+        }
+    }
+
+    /**
+     * Removes the listing of a directory so that it is loaded again.
+     */
+    public void remove(String authority, String path) {
+        mCache.remove(key(authority, path));
+    }
+
+    public void clear() {
+        mCache.evictAll();
+    }
+
+    private static String key(String authority, String path) {
+        return authority + '|' + normalize(path);
+    }
+
+    /**
+     * Converts a path to a form that is the same for every way of writing
+     * the same directory.
+     * <p>
+     * Separators are converted to {@code /}, trailing separators are removed,
+     * and a trailing {@code ..} segment is resolved. The result is only used
+     * as a key; requests use the original path.
+     */
+    static String normalize(String path) {
+        String normalized = path.replace('\\', '/');
+        normalized = removeTrailingSeparators(normalized);
+        if (normalized.equals("..") || normalized.endsWith("/..")) {
+            normalized = normalized.substring(0, normalized.length() - "..".length());
+            normalized = removeTrailingSeparators(normalized);
+            int separator = normalized.lastIndexOf('/');
+            normalized = (separator != -1) ? normalized.substring(0, separator) : "";
+            normalized = removeTrailingSeparators(normalized);
+        }
+        return normalized;
+    }
+
+    private static String removeTrailingSeparators(String path) {
+        int end = path.length();
+        while (end > 0 && path.charAt(end - 1) == '/') {
+            end--;
+        }
+        return path.substring(0, end);
+    }
+}
@@ -17,26 +17,133 @@
 
 package org.peterbaldwin.vlcremote.loader;
 
+import org.peterbaldwin.client.android.vlcremote.R;
 import org.peterbaldwin.vlcremote.model.Directory;
+import org.peterbaldwin.vlcremote.model.DirectorySort;
 import org.peterbaldwin.vlcremote.model.Remote;
 import org.peterbaldwin.vlcremote.net.MediaServer;
 
 import android.content.Context;
 
+/**
+ * Loads a directory listing.
+ * <p>
+ * A cached listing is delivered immediately. If it is stale, it is loaded
+ * again in the background and replaced when the new listing arrives. A cached
+ * listing in a different order is sorted again in the background instead of
+ * being delivered.
+ */
 public class DirectoryLoader extends ModelLoader<Remote<Directory>> {
 
     private final MediaServer mMediaServer;
 
     private final String mDir;
 
-    public DirectoryLoader(Context context, MediaServer mediaServer, String dir) {
+    private final DirectorySort mSort;
+
+    private final DirectoryCache mCache;
+
+    /**
+     * The listing that was delivered from the cache, if any.
+     */
+    private Directory mCached;
+
+    /**
+     * The cached listing in a different order, if any.
+     */
+    private Directory mUnsorted;
+
+    private boolean mCacheChecked;
+
+    /**
+     * {@code true} until a listing has been loaded from the server.
+     */
+    private volatile boolean mNeedsLoad = true;
+
+    public DirectoryLoader(Context context, MediaServer mediaServer, String dir,
+            DirectorySort sort) {
         super(context);
         mMediaServer = mediaServer;
         mDir = dir;
+        mSort = sort;
+        mCache = DirectoryCache.get();
+    }
+
+    @Override
+    protected void onStartLoading() {
+        if (mCacheChecked) {
+            super.onStartLoading();
+            if (mNeedsLoad && (mCached != null || mUnsorted != null)) {
+                // Finish revalidating a stale listing
+                forceLoad();
+            }
+            return;
+        }
+        mCacheChecked = true;
+        DirectoryCache.Entry entry = mCache.get(mMediaServer.getAuthority(), mDir);
+        if (entry != null && !mSort.equals(entry.directory.getSort())) {
+            mUnsorted = entry.directory;
+            mNeedsLoad = entry.isStale();
+            forceLoad();
+        } else if (entry != null) {
+            mCached = entry.directory;
+            mNeedsLoad = entry.isStale();
+            deliverResult(Remote.data(entry.directory));
+            if (mNeedsLoad) {
+                forceLoad();
+            }
+        } else {
+            forceLoad();
+        }
     }
 
     @Override
     public Remote<Directory> loadInBackground() {
-        return mMediaServer.browse(mDir).load();
+        if (mUnsorted != null && !mNeedsLoad) {
+            // The order changed, but the listing didn't
+            return Remote.data(prepare(copyOf(mUnsorted)));
+        }
+        Remote<Directory> result = mMediaServer.browse(mDir).load();
+        Directory directory = result.data;
+        if (result.error == null) {
+            mNeedsLoad = false;
+        }
+        if (directory != null && !directory.isEmpty()) {
+            prepare(directory);
+        } else if (result.error != null && mCached != null) {
+            // Keep showing the stale listing rather than an error. It stays
+            // stale, so it is loaded again when the loader is restarted.
+            return Remote.data(mCached);
+        } else if (result.error != null && mUnsorted != null) {
+            // Not cached, so that the stale listing doesn't look fresh
+            return Remote.data(sort(copyOf(mUnsorted)));
+        }
+        return result;
+    }
+
+    /**
+     * Sorts and indexes a listing, and caches it.
+     * <p>
+     * This keeps work that is proportional to the number of files off the
+     * main thread.
+     */
+    private Directory prepare(Directory directory) {
+        sort(directory);
+        mCache.put(mMediaServer.getAuthority(), mDir, directory);
+        return directory;
+    }
+
+    private Directory sort(Directory directory) {
+        mSort.sort(directory);
+        directory.buildSectionIndex(getContext().getString(R.string.section_parent));
+        return directory;
+    }
+
+    private static Directory copyOf(Directory directory) {
+        // Cached listings may be shown by other screens, so never sort them in
+        // place
+        Directory copy = new Directory(directory.size());
+        copy.addAll(directory);
+        return copy;
     }
 }
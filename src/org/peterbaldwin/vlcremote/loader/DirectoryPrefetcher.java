@@ -0,0 +1,202 @@
+/*-
+ *  Copyright (C) 2011 Peter Baldwin
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.peterbaldwin.vlcremote.loader;
+
+import org.peterbaldwin.client.android.vlcremote.R;
+import org.peterbaldwin.vlcremote.model.Directory;
+import org.peterbaldwin.vlcremote.model.DirectorySort;
+import org.peterbaldwin.vlcremote.model.File;
+import org.peterbaldwin.vlcremote.net.MediaServer;
+
+import android.content.Context;
+import android.os.Process;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loads the directories that are likely to be opened next into the
+ * {@link DirectoryCache}.
+ * <p>
+ * The candidates are the child directory that was just left, the parent
+ * directory and the first few subdirectories. Requests run one at a time on a
+ * low-priority thread, and requests that have not started are dropped as
+ * soon as the user opens another directory.
+ */
+public final class DirectoryPrefetcher {
+
+    /**
+     * Number of subdirectories (in list order) to load.
+     */
+    private static final int MAX_SUBDIRECTORIES = 3;
+
+    /**
+     * Room for every candidate of one directory, plus a few stragglers.
+     */
+    private static final int QUEUE_CAPACITY = 8;
+
+    private static final ThreadFactory sThreadFactory = new ThreadFactory() {
+        /** {@inheritDoc} */
+        public Thread newThread(final Runnable r) {
+            return new Thread(new Runnable() {
+                /** {@inheritDoc} */
+                public void run() {
+                    Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                    r.run();
+                }
+            }, "DirectoryPrefetcher");
+        }
+    };
+
+    /**
+     * Shared by all prefetchers so that there is never more than one
+     * speculative request at a time. Requests that don't fit in the queue
+     * are dropped.
+     * <p>
+     * The thread is a core thread: before Gingerbread, a pool with no core
+     * threads only starts a thread once its queue is full, and core threads
+     * can't time out before Gingerbread either, so the idle thread is kept.
+     */
+    private static final ThreadPoolExecutor sExecutor = new ThreadPoolExecutor(1, 1, 0L,
+            TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(QUEUE_CAPACITY),
+            sThreadFactory, new ThreadPoolExecutor.DiscardPolicy());
+
+    private final DirectoryCache mCache = DirectoryCache.get();
+
+    private final List<Future<?>> mPending = new ArrayList<Future<?>>();
+
+    private final String mParentSection;
+
+    public DirectoryPrefetcher(Context context) {
+        mParentSection = context.getString(R.string.section_parent);
+    }
+
+    /**
+     * Replaces any pending requests with requests for the directories that
+     * are likely to be opened from {@code directory}.
+     *
+     * @param previousPath the path of the directory that was shown before
+     *            {@code directory}, or {@code null}.
+     * @param sort the order to sort the listings in.
+     */
+    public void prefetch(MediaServer server, Directory directory, String previousPath,
+            DirectorySort sort) {
+        cancel();
+        String authority = server.getAuthority();
+        for (String path : getCandidates(directory, previousPath)) {
+            if (!isFresh(mCache.get(authority, path), sort)) {
+                mPending.add(sExecutor.submit(new Prefetch(server, path, sort)));
+            }
+        }
+    }
+
+    private static boolean isFresh(DirectoryCache.Entry entry, DirectorySort sort) {
+        return entry != null && !entry.isStale() && sort.equals(entry.directory.getSort());
+    }
+
+    /**
+     * Drops any requests that have not started.
+     */
+    public void cancel() {
+        for (Future<?> future : mPending) {
+            // A request that has started is allowed to finish; its result is
+            // still useful.
+            future.cancel(false);
+        }
+        mPending.clear();
+        sExecutor.purge();
+    }
+
+    /**
+     * Returns the paths to load, most likely first.
+     */
+    static List<String> getCandidates(Directory directory, String previousPath) {
+        String previous = (previousPath != null) ? DirectoryCache.normalize(previousPath) : null;
+        String child = null;
+        String parent = null;
+        List<String> subdirectories = new ArrayList<String>(MAX_SUBDIRECTORIES);
+        for (File file : directory) {
+            String path = file.getPath();
+            if (!file.isDirectory() || path == null) {
+                continue;
+            }
+            if ("..".equals(file.getName())) {
+                parent = path;
+            } else if (child == null && previous != null
+                    && previous.equals(DirectoryCache.normalize(path))) {
+                child = path;
+            } else if (subdirectories.size() < MAX_SUBDIRECTORIES) {
+                subdirectories.add(path);
+            }
+        }
+        List<String> paths = new ArrayList<String>(MAX_SUBDIRECTORIES + 2);
+        if (child != null) {
+            // Going back down to where we came from is most likely
+            paths.add(child);
+        }
+        if (parent != null) {
+            paths.add(parent);
+        }
+        paths.addAll(subdirectories);
+        return paths;
+    }
+
+    private final class Prefetch implements Runnable {
+
+        private final MediaServer mMediaServer;
+
+        private final String mPath;
+
+        private final DirectorySort mSort;
+
+        public Prefetch(MediaServer mediaServer, String path, DirectorySort sort) {
+            mMediaServer = mediaServer;
+            mPath = path;
+            mSort = sort;
+        }
+
+        /** {@inheritDoc} */
+        public void run() {
+            String authority = mMediaServer.getAuthority();
+            DirectoryCache.Entry entry = mCache.get(authority, mPath);
+            if (isFresh(entry, mSort)) {
+                // Loaded since the request was queued
+                return;
+            }
+            Directory directory;
+            if (entry != null && !entry.isStale()) {
+                // Only the order changed; don't sort the cached listing in
+                // place because it may be showing.
+                directory = new Directory(entry.directory.size());
+                directory.addAll(entry.directory);
+            } else {
+                directory = mMediaServer.browse(mPath).load().data;
+            }
+            if (directory != null && !directory.isEmpty()) {
+                mSort.sort(directory);
+                directory.buildSectionIndex(mParentSection);
+                mCache.put(authority, mPath, directory);
+            }
+        }
+    }
+}
@@ -18,16 +18,38 @@
 package org.peterbaldwin.vlcremote.loader;
 
 import android.content.Context;
+import android.os.Handler;
 import android.support.v4.content.AsyncTaskLoader;
 
 abstract class ModelLoader<D> extends AsyncTaskLoader<D> {
 
+    private final Handler mHandler = new Handler();
+
     private D mModel;
 
     protected ModelLoader(Context context) {
         super(context);
     }
 
+    /**
+     * Delivers an intermediate result while {@link #loadInBackground()} is
+     * still running.
+     * <p>
+     * May be called from any thread. Intermediate results are not cached, so
+     * a loader that is stopped before it finishes will load again when it is
+     * restarted.
+     */
+    protected final void publishProgress(final D model) {
+        mHandler.post(new Runnable() {
+            /** {@inheritDoc} */
+            public void run() {
+                if (isStarted() && !isAbandoned() && !isReset()) {
+                    ModelLoader.super.deliverResult(model);
+                }
+            }
+        });
+    }
+
     @Override
     protected void onStartLoading() {
         if (mModel != null) {
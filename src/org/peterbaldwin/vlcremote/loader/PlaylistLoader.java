@@ -20,24 +20,63 @@ package org.peterbaldwin.vlcremote.loader;
 import org.peterbaldwin.vlcremote.model.Playlist;
 import org.peterbaldwin.vlcremote.model.Remote;
 import org.peterbaldwin.vlcremote.net.MediaServer;
+import org.peterbaldwin.vlcremote.net.MediaServer.PlaylistRequest;
 
 import android.content.Context;
 
+/**
+ * Loads a playlist.
+ * <p>
+ * Partial results only hold the tracks that follow those of the previous
+ * partial result, so large playlists can be shown as they arrive without
+ * copying the whole playlist for each chunk. The final result holds the
+ * whole playlist.
+ */
 public class PlaylistLoader extends ModelLoader<Remote<Playlist>> {
 
     private final MediaServer mMediaServer;
 
     private final String mSearch;
 
-    public PlaylistLoader(Context context, MediaServer mediaServer, String search) {
+    private final boolean mRevalidate;
+
+    /**
+     * @param revalidate {@code true} if a complete playlist is already shown,
+     *            so only the result should be delivered; {@code false} to
+     *            deliver the playlist that was saved the last time, or the
+     *            first chunks of the playlist, while it is loaded.
+     */
+    public PlaylistLoader(Context context, MediaServer mediaServer, String search,
+            boolean revalidate) {
         super(context);
         mMediaServer = mediaServer;
         mSearch = search;
+        mRevalidate = revalidate;
     }
 
     @Override
     public Remote<Playlist> loadInBackground() {
-        return mMediaServer.playlist(mSearch).load();
+        PlaylistRequest request = mMediaServer.playlist(mSearch);
+        if (mRevalidate) {
+            // The first chunks would look like the end of the playlist had
+            // been removed
+            return request.load((PlaylistRequest.ProgressListener) null);
+        }
+        Playlist cached = request.readCached();
+        if (cached != null) {
+            // Show the saved playlist while it is revalidated. It is
+            // complete, so don't replace it with the first chunks of the
+            // new playlist.
+            publishProgress(Remote.partial(cached));
+            return request.load((PlaylistRequest.ProgressListener) null);
+        }
+        return request.load(new PlaylistRequest.ProgressListener() {
+            /** {@inheritDoc} */
+            public void onProgress(Playlist tracks) {
+                // Show the first tracks of a large playlist while the rest of
+                // the playlist is being read.
+                publishProgress(Remote.partial(tracks));
+            }
+        });
     }
-
 }
@@ -22,6 +22,10 @@ import java.util.ArrayList;
 @SuppressWarnings("serial")
 public final class Directory extends ArrayList<File> {
 
+    private SectionIndex mSectionIndex;
+
+    private DirectorySort mSort;
+
     public Directory() {
     }
 
@@ -29,6 +33,46 @@ public final class Directory extends ArrayList<File> {
         super(capacity);
     }
 
+    /**
+     * Returns the index built by {@link #buildSectionIndex(String)}, or
+     * {@code null}.
+     */
+    public SectionIndex getSectionIndex() {
+        return mSectionIndex;
+    }
+
+    /**
+     * Builds the fast-scroll index for the files in their current order.
+     * <p>
+     * Letter sections only make sense when the files are sorted by name, so
+     * the index is empty for any other order.
+     * <p>
+     * Call this on the thread that loaded the directory, before the
+     * directory is shown.
+     *
+     * @param parentSection the name of the section for the {@code ..} entry.
+     */
+    public void buildSectionIndex(String parentSection) {
+        DirectorySort sort = mSort;
+        if (sort != null && sort.getKey() == DirectorySort.BY_NAME) {
+            mSectionIndex = SectionIndex.build(this, parentSection, sort.isDirectoriesFirst());
+        } else {
+            mSectionIndex = SectionIndex.EMPTY;
+        }
+    }
+
+    /**
+     * Returns the order the files were last sorted in, or {@code null} if
+     * they are in the order the server sent them.
+     */
+    public DirectorySort getSort() {
+        return mSort;
+    }
+
+    void setSort(DirectorySort sort) {
+        mSort = sort;
+    }
+
     public String getPath() {
         // Compute the path from the .. entry
         for (File file : this) {
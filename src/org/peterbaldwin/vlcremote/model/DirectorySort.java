@@ -0,0 +1,304 @@
+/*-
+ *  Copyright (C) 2011 Peter Baldwin
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.peterbaldwin.vlcremote.model;
+
+import java.text.DateFormat;
+import java.text.ParsePosition;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * The order in which to show the files in a directory.
+ * <p>
+ * The parent directory entry ({@code ..}) always comes first.
+ */
+public final class DirectorySort {
+
+    /**
+     * By name, ignoring case and comparing runs of digits by value, so that
+     * "Track 2" comes before "Track 10".
+     */
+    public static final int BY_NAME = 0;
+
+    /**
+     * By size, largest first.
+     */
+    public static final int BY_SIZE = 1;
+
+    /**
+     * By date, newest first.
+     */
+    public static final int BY_DATE = 2;
+
+    /**
+     * By kind of media (audio, video, images, then everything else), and by
+     * MIME type within each kind.
+     */
+    public static final int BY_TYPE = 3;
+
+    public static final DirectorySort DEFAULT = new DirectorySort(BY_NAME, true);
+
+    private final int mKey;
+
+    private final boolean mDirectoriesFirst;
+
+    public DirectorySort(int key, boolean directoriesFirst) {
+        if (key < BY_NAME || key > BY_TYPE) {
+            throw new IllegalArgumentException("Invalid key: " + key);
+        }
+        mKey = key;
+        mDirectoriesFirst = directoriesFirst;
+    }
+
+    public int getKey() {
+        return mKey;
+    }
+
+    public boolean isDirectoriesFirst() {
+        return mDirectoriesFirst;
+    }
+
+    /**
+     * Sorts {@code directory} in place.
+     */
+    public void sort(Directory directory) {
+        int count = directory.size();
+        // Compute the sort keys once per file instead of once per comparison
+        DateParser dateParser = (mKey == BY_DATE) ? new DateParser() : null;
+        List<Entry> entries = new ArrayList<Entry>(count);
+        for (int i = 0; i < count; i++) {
+            entries.add(new Entry(directory.get(i), mKey, dateParser));
+        }
+        Collections.sort(entries, mComparator);
+        for (int i = 0; i < count; i++) {
+            directory.set(i, entries.get(i).file);
+        }
+        directory.setSort(this);
+    }
+
+    private final Comparator<Entry> mComparator = new Comparator<Entry>() {
+        /** {@inheritDoc} */
+        public int compare(Entry a, Entry b) {
+            if (a.parent != b.parent) {
+                return a.parent ? -1 : 1;
+            }
+            if (mDirectoriesFirst && a.directory != b.directory) {
+                return a.directory ? -1 : 1;
+            }
+            int result;
+            switch (mKey) {
+                case BY_SIZE:
+                    // Largest first
+                    result = compareNullsLast(a.size, b.size, true);
+                    break;
+                case BY_DATE:
+                    // Newest first
+                    result = compareNullsLast(a.time, b.time, true);
+                    break;
+                case BY_TYPE:
+                    result = a.mediaRank - b.mediaRank;
+                    if (result == 0) {
+                        result = compareNullsLast(a.type, b.type, false);
+                    }
+                    break;
+                default:
+                    result = 0;
+                    break;
+            }
+            return result != 0 ? result : compareNatural(a.name, b.name);
+        }
+    };
+
+    private static <T extends Comparable<T>> int compareNullsLast(T a, T b,
+            boolean descending) {
+        if (a == null || b == null) {
+            return (a == b) ? 0 : (a == null) ? 1 : -1;
+        }
+        return descending ? b.compareTo(a) : a.compareTo(b);
+    }
+
+    /**
+     * Compares lower-case names, comparing runs of digits by value.
+     */
+    static int compareNatural(String a, String b) {
+        int i = 0;
+        int j = 0;
+        int lengthA = a.length();
+        int lengthB = b.length();
+        while (i < lengthA && j < lengthB) {
+            char c = a.charAt(i);
+            char d = b.charAt(j);
+            if (isDigit(c) && isDigit(d)) {
+                // Skip leading zeros
+                int startA = i;
+                int startB = j;
+                while (startA < lengthA - 1 && a.charAt(startA) == '0'
+                        && isDigit(a.charAt(startA + 1))) {
+                    startA++;
+                }
+                while (startB < lengthB - 1 && b.charAt(startB) == '0'
+                        && isDigit(b.charAt(startB + 1))) {
+                    startB++;
+                }
+                int endA = startA;
+                int endB = startB;
+                while (endA < lengthA && isDigit(a.charAt(endA))) {
+                    endA++;
+                }
+                while (endB < lengthB && isDigit(b.charAt(endB))) {
+                    endB++;
+                }
+                // A longer run without leading zeros is a larger number
+                int digitsA = endA - startA;
+                int digitsB = endB - startB;
+                if (digitsA != digitsB) {
+                    return digitsA - digitsB;
+                }
+                for (int k = 0; k < digitsA; k++) {
+                    int result = a.charAt(startA + k) - b.charAt(startB + k);
+                    if (result != 0) {
+                        return result;
+                    }
+                }
+                i = endA;
+                j = endB;
+            } else {
+                if (c != d) {
+                    return c - d;
+                }
+                i++;
+                j++;
+            }
+        }
+        return (lengthA - i) - (lengthB - j);
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o == this) {
+            return true;
+        }
+        if (!(o instanceof DirectorySort)) {
+            return false;
+        }
+        DirectorySort other = (DirectorySort) o;
+        return mKey == other.mKey && mDirectoriesFirst == other.mDirectoriesFirst;
+    }
+
+    @Override
+    public int hashCode() {
+        return mKey * 2 + (mDirectoriesFirst ? 1 : 0);
+    }
+
+    /**
+     * Returns where files of a media class go when sorting by type.
+     */
+    private static int getMediaRank(int mediaClass) {
+        switch (mediaClass) {
+            case File.MEDIA_DIRECTORY:
+                return 0;
+            case File.MEDIA_AUDIO:
+                return 1;
+            case File.MEDIA_VIDEO:
+                return 2;
+            case File.MEDIA_IMAGE:
+                return 3;
+            default:
+                return 4;
+        }
+    }
+
+    /**
+     * Reads the {@code date} attribute of servers that don't send a
+     * modification time. The legacy HTTP interface formats it with
+     * {@code ctime()} and the Lua interface with {@code os.date("%c")}, which
+     * for the C locale is, for example, "Thu Jun 30 21:49:08 2011" (or
+     * "06/30/11 21:49:08" on Windows). Dates in other formats are not
+     * recognized.
+     */
+    static final class DateParser {
+        private final DateFormat[] mFormats = {
+                new SimpleDateFormat("EEE MMM d HH:mm:ss yyyy", Locale.US),
+                new SimpleDateFormat("MM/dd/yy HH:mm:ss", Locale.US)
+        };
+
+        /**
+         * Returns the time in milliseconds since the epoch, or {@code null}.
+         */
+        public Long parse(String date) {
+            if (date == null) {
+                return null;
+            }
+            // ctime() pads the day of the month with a space
+            String text = date.trim().replaceAll("\\s+", " ");
+            for (DateFormat format : mFormats) {
+                ParsePosition position = new ParsePosition(0);
+                Date parsed = format.parse(text, position);
+                if (parsed != null && position.getIndex() == text.length()) {
+                    return Long.valueOf(parsed.getTime());
+                }
+            }
+            return null;
+        }
+    }
+
+    private static final class Entry {
+        final File file;
+
+        final boolean parent;
+
+        final boolean directory;
+
+        final String name;
+
+        final Long size;
+
+        final Long time;
+
+        final int mediaRank;
+
+        final String type;
+
+        Entry(File file, int key, DateParser dateParser) {
+            this.file = file;
+            String fileName = file.getName();
+            parent = "..".equals(fileName);
+            directory = file.isDirectory();
+            name = (fileName != null) ? fileName.toLowerCase(Locale.US) : "";
+            size = file.getSize();
+            if (key == BY_DATE) {
+                Long modificationTime = file.getModificationTime();
+                time = (modificationTime != null) ? modificationTime : dateParser.parse(
+                        file.getDate());
+            } else {
+                time = null;
+            }
+            mediaRank = getMediaRank(file.getMediaClass());
+            type = (key == BY_TYPE) ? file.getMimeType() : null;
+        }
+    }
+}
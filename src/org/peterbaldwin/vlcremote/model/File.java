@@ -23,13 +23,61 @@ import android.webkit.MimeTypeMap;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 
 public final class File {
 
+    public static final int MEDIA_OTHER = 0;
+
+    public static final int MEDIA_DIRECTORY = 1;
+
+    public static final int MEDIA_AUDIO = 2;
+
+    public static final int MEDIA_VIDEO = 3;
+
+    public static final int MEDIA_IMAGE = 4;
+
     private static final MimeTypeMap sMimeTypeMap = MimeTypeMap.getSingleton();
 
+    /**
+     * The media class of each extension seen so far, shared by all files so
+     * that each extension is only looked up once.
+     */
+    private static final Map<String, Integer> sMediaClasses = new HashMap<String, Integer>();
+
+    private static int getMediaClass(String extension) {
+        synchronized (sMediaClasses) {
+            Integer mediaClass = sMediaClasses.get(extension);
+            if (mediaClass != null) {
+                return mediaClass.intValue();
+            }
+        }
+        int mediaClass = MEDIA_OTHER;
+        String mimeType = getMimeType(extension);
+        if (mimeType != null) {
+            mimeType = mimeType.toLowerCase(Locale.US);
+            if (mimeType.startsWith("audio/")) {
+                mediaClass = MEDIA_AUDIO;
+            } else if (mimeType.startsWith("video/")) {
+                mediaClass = MEDIA_VIDEO;
+            } else if (mimeType.startsWith("image/")) {
+                mediaClass = MEDIA_IMAGE;
+            }
+        }
+        synchronized (sMediaClasses) {
+            sMediaClasses.put(extension, Integer.valueOf(mediaClass));
+        }
+        return mediaClass;
+    }
+
+    private static String getMimeType(String extension) {
+        // See http://code.google.com/p/android/issues/detail?id=8806
+        return sMimeTypeMap.getMimeTypeFromExtension(extension.toLowerCase(Locale.US));
+    }
+
     private static String parseExtension(String path) {
         int index = path.lastIndexOf('.');
         if (index != -1) {
@@ -42,9 +90,11 @@ public final class File {
     private String mType;
     private Long mSize;
     private String mDate;
+    private Long mModificationTime;
     private String mPath;
     private String mName;
     private String mExtension;
+    private int mMediaClass;
 
     public File(String type, Long size, String date, String path, String name, String extension) {
         mType = type;
@@ -53,6 +103,17 @@ public final class File {
         mPath = path;
         mName = name;
         mExtension = extension != null ? extension : path != null ? parseExtension(path) : null;
+        updateMediaClass();
+    }
+
+    private void updateMediaClass() {
+        if (isDirectory()) {
+            mMediaClass = MEDIA_DIRECTORY;
+        } else if (mExtension != null) {
+            mMediaClass = getMediaClass(mExtension);
+        } else {
+            mMediaClass = MEDIA_OTHER;
+        }
     }
 
     public String getType() {
@@ -61,6 +122,7 @@ public final class File {
 
     public void setType(String type) {
         mType = type;
+        updateMediaClass();
     }
 
     public boolean isDirectory() {
@@ -69,8 +131,19 @@ public final class File {
     }
 
     public boolean isImage() {
-        String mimeType = getMimeType();
-        return mimeType != null && mimeType.startsWith("image/");
+        return mMediaClass == MEDIA_IMAGE;
+    }
+
+    /**
+     * Returns what kind of media the file holds: {@link #MEDIA_DIRECTORY},
+     * {@link #MEDIA_AUDIO}, {@link #MEDIA_VIDEO}, {@link #MEDIA_IMAGE} or
+     * {@link #MEDIA_OTHER}.
+     * <p>
+     * This is computed when the file is created, so it is cheap enough to
+     * call while binding list items.
+     */
+    public int getMediaClass() {
+        return mMediaClass;
     }
 
     public Long getSize() {
@@ -89,6 +162,18 @@ public final class File {
         mDate = date;
     }
 
+    /**
+     * Returns when the file was last modified, in milliseconds since the
+     * epoch, or {@code null} if the server did not say.
+     */
+    public Long getModificationTime() {
+        return mModificationTime;
+    }
+
+    public void setModificationTime(Long modificationTime) {
+        mModificationTime = modificationTime;
+    }
+
     public String getPath() {
         return mPath;
     }
@@ -113,8 +198,7 @@ public final class File {
 
     public List<String> getStreamingOptions() {
         List<String> options = new ArrayList<String>(getOptions());
-        String mimeType = getMimeType();
-        if (mimeType != null && mimeType.startsWith("audio/")) {
+        if (mMediaClass == MEDIA_AUDIO) {
             options.add(":sout=#transcode{acodec=vorb,ab=128}:standard{access=http,mux=ogg,dst=0.0.0.0:8000}");
         } else {
             options.add(":sout=#transcode{vcodec=mp4v,vb=384,acodec=mp4a,ab=64,channels=2,fps=25,venc=x264{profile=baseline,keyint=50,bframes=0,no-cabac,ref=1,vbv-maxrate=4096,vbv-bufsize=1024,aq-mode=0,no-mbtree,partitions=none,no-weightb,weightp=0,me=dia,subme=0,no-mixed-refs,no-8x8dct,trellis=0,level1.3},vfilter=canvas{width=320,height=180,aspect=320:180,padd},senc,soverlay}:rtp{sdp=rtsp://0.0.0.0:5554/stream.sdp,caching=4000}}");
@@ -124,8 +208,7 @@ public final class File {
 
     public Intent getIntentForStreaming(String authority) {
         Intent intent = new Intent(Intent.ACTION_VIEW);
-        String mimeType = getMimeType();
-        if (mimeType != null && mimeType.startsWith("audio/")) {
+        if (mMediaClass == MEDIA_AUDIO) {
             Uri.Builder builder = new Uri.Builder();
             builder.scheme("rtsp");
             builder.encodedAuthority(swapPortNumber(authority, 5554));
@@ -146,6 +229,7 @@ public final class File {
         mPath = path;
         if (mExtension == null && path != null) {
             mExtension = parseExtension(path);
+            updateMediaClass();
         }
     }
 
@@ -163,13 +247,12 @@ public final class File {
 
     public void setExtension(String extension) {
         mExtension = extension;
+        updateMediaClass();
     }
 
     public String getMimeType() {
         if (mExtension != null) {
-            // See http://code.google.com/p/android/issues/detail?id=8806
-            String extension = mExtension.toLowerCase(Locale.US);
-            return sMimeTypeMap.getMimeTypeFromExtension(extension);
+            return getMimeType(mExtension);
         } else {
             return null;
         }
@@ -0,0 +1,107 @@
+/*-
+ *  Copyright (C) 2011 Peter Baldwin
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.peterbaldwin.vlcremote.model;
+
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Finds the files whose names contain some text, for type-ahead filtering.
+ * <p>
+ * The lower-case names are computed once. When the text is extended (as it
+ * is with each key press), only the previous matches are searched again.
+ * <p>
+ * This class is not thread-safe.
+ */
+public final class NameIndex {
+
+    private final List<File> mFiles;
+
+    /**
+     * Lower-case names, or {@code null} for files that always match (the
+     * {@code ..} entry).
+     */
+    private final String[] mKeys;
+
+    private String mQuery;
+
+    private int[] mMatches;
+
+    private int mMatchCount;
+
+    public NameIndex(List<File> files) {
+        mFiles = files;
+        int count = files.size();
+        mKeys = new String[count];
+        for (int position = 0; position < count; position++) {
+            String name = files.get(position).getName();
+            if (name == null) {
+                mKeys[position] = "";
+            } else if (!name.equals("..")) {
+                mKeys[position] = name.toLowerCase(Locale.US);
+            }
+        }
+    }
+
+    /**
+     * Returns the files this index was built for.
+     */
+    public List<File> getFiles() {
+        return mFiles;
+    }
+
+    /**
+     * Returns the files whose names contain {@code constraint}, ignoring case,
+     * in their original order.
+     */
+    public Directory filter(CharSequence constraint) {
+        String query = (constraint != null) ? constraint.toString().toLowerCase(Locale.US) : "";
+        int[] candidates;
+        int candidateCount;
+        if (mQuery != null && query.startsWith(mQuery)) {
+            // Every name that contains the new text also contains the old text
+            candidates = mMatches;
+            candidateCount = mMatchCount;
+        } else {
+            candidates = null;
+            candidateCount = mKeys.length;
+        }
+        int[] matches = new int[candidateCount];
+        int matchCount = 0;
+        for (int i = 0; i < candidateCount; i++) {
+            int position = (candidates != null) ? candidates[i] : i;
+            String key = mKeys[position];
+            if (key == null || key.indexOf(query) != -1) {
+                matches[matchCount++] = position;
+            }
+        }
+        mQuery = query;
+        mMatches = matches;
+        mMatchCount = matchCount;
+
+        Directory directory = new Directory(matchCount);
+        for (int i = 0; i < matchCount; i++) {
+            directory.add(mFiles.get(matches[i]));
+        }
+        if (mFiles instanceof Directory) {
+            // The matches keep the order of the files they came from
+            directory.setSort(((Directory) mFiles).getSort());
+        }
+        return directory;
+    }
+}
@@ -17,19 +17,192 @@
 
 package org.peterbaldwin.vlcremote.model;
 
-import java.util.ArrayList;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.BitSet;
+import java.util.RandomAccess;
 
-public final class Playlist extends ArrayList<PlaylistItem> implements PlaylistItem {
+/**
+ * A flat list of tracks, stored by column.
+ * <p>
+ * Playlists can have tens of thousands of tracks, so instead of keeping a
+ * {@link Track} object per row, each field is kept in its own array. Fields
+ * that repeat across rows (artist, album, genre, etc.) are
+ * dictionary-encoded.
+ * <p>
+ * The column accessors (e.g. {@link #getTitle(int)}) read a field without
+ * allocating. {@link #get(int)} returns a new {@link Track} that is a copy
+ * of the row; changes to it are not written back.
+ */
+public final class Playlist extends AbstractList<PlaylistItem> implements PlaylistItem,
+        RandomAccess, Serializable {
+
+    private static final long serialVersionUID = 2L;
+
+    private static final int MIN_CAPACITY = 16;
+
+    /**
+     * Version of the format written by {@link #write(DataOutput)}.
+     */
+    private static final int FORMAT_VERSION = 1;
+
+    private static final int COLUMN_URI = 0;
+    private static final int COLUMN_NAME = 1;
+    private static final int COLUMN_TITLE = 2;
+    private static final int COLUMN_ARTIST = 3;
+    private static final int COLUMN_GENRE = 4;
+    private static final int COLUMN_COPYRIGHT = 5;
+    private static final int COLUMN_ALBUM = 6;
+    private static final int COLUMN_TRACK = 7;
+    private static final int COLUMN_DESCRIPTION = 8;
+    private static final int COLUMN_RATING = 9;
+    private static final int COLUMN_DATE = 10;
+    private static final int COLUMN_URL = 11;
+    private static final int COLUMN_LANGUAGE = 12;
+    private static final int COLUMN_NOW_PLAYING = 13;
+    private static final int COLUMN_PUBLISHER = 14;
+    private static final int COLUMN_ENCODED_BY = 15;
+    private static final int COLUMN_ART_URL = 16;
+    private static final int COLUMN_TRACK_ID = 17;
 
-    private static final long serialVersionUID = 1L;
+    /**
+     * Whether each column is dictionary-encoded, indexed by column.
+     */
+    private static final boolean[] DICTIONARY = {
+            false, false, false, true, true, true, true, true, false, true, true, false, true,
+            false, true, true, true, false
+    };
 
     private final int mId;
 
     private final String mName;
 
+    private int mSize;
+
+    private int[] mIds;
+
+    /**
+     * Durations are kept as {@code long}s because older versions of VLC
+     * report them in microseconds.
+     */
+    private long[] mDurations;
+
+    private final BitSet mCurrent;
+
+    private final StringColumn[] mColumns;
+
     public Playlist(int id, String name) {
         mId = id;
         mName = name;
+        mIds = new int[0];
+        mDurations = new long[0];
+        mCurrent = new BitSet();
+        mColumns = new StringColumn[DICTIONARY.length];
+        for (int column = 0; column < mColumns.length; column++) {
+            mColumns[column] = new StringColumn(DICTIONARY[column]);
+        }
+    }
+
+    /**
+     * Creates a copy of {@code playlist}.
+     * <p>
+     * The copy does not share any mutable state with the original, so it can
+     * be handed to another thread while rows are still being added to the
+     * original.
+     */
+    public Playlist(Playlist playlist) {
+        mId = playlist.mId;
+        mName = playlist.mName;
+        mSize = playlist.mSize;
+        mIds = StringColumn.copyOf(playlist.mIds, mSize);
+        mDurations = new long[mSize];
+        System.arraycopy(playlist.mDurations, 0, mDurations, 0, mSize);
+        mCurrent = (BitSet) playlist.mCurrent.clone();
+        mColumns = new StringColumn[DICTIONARY.length];
+        for (int column = 0; column < mColumns.length; column++) {
+            mColumns[column] = new StringColumn(playlist.mColumns[column], mSize);
+        }
+    }
+
+    private Playlist(int id, String name, int size, int[] ids, long[] durations,
+            BitSet current, StringColumn[] columns) {
+        mId = id;
+        mName = name;
+        mSize = size;
+        mIds = ids;
+        mDurations = durations;
+        mCurrent = current;
+        mColumns = columns;
+    }
+
+    /**
+     * Writes the playlist in a compact binary format.
+     *
+     * @see #read(DataInput)
+     */
+    public void write(DataOutput out) throws IOException {
+        out.writeInt(FORMAT_VERSION);
+        out.writeInt(mId);
+        StringColumn.writeString(out, mName);
+        out.writeInt(mSize);
+        for (int position = 0; position < mSize; position++) {
+            out.writeInt(mIds[position]);
+        }
+        for (int position = 0; position < mSize; position++) {
+            out.writeLong(mDurations[position]);
+        }
+        out.writeInt(mCurrent.cardinality());
+        for (int position = mCurrent.nextSetBit(0); position >= 0; position = mCurrent
+                .nextSetBit(position + 1)) {
+            out.writeInt(position);
+        }
+        for (int column = 0; column < mColumns.length; column++) {
+            mColumns[column].write(out, mSize);
+        }
+    }
+
+    /**
+     * Reads a playlist written by {@link #write(DataOutput)}.
+     *
+     * @throws IOException if the input is truncated or was written in a
+     *             different format.
+     */
+    public static Playlist read(DataInput in) throws IOException {
+        int version = in.readInt();
+        if (version != FORMAT_VERSION) {
+            throw new IOException("Unsupported version: " + version);
+        }
+        int id = in.readInt();
+        String name = StringColumn.readString(in);
+        int size = in.readInt();
+        if (size < 0) {
+            throw new IOException("Invalid size: " + size);
+        }
+        int[] ids = new int[size];
+        for (int position = 0; position < size; position++) {
+            ids[position] = in.readInt();
+        }
+        long[] durations = new long[size];
+        for (int position = 0; position < size; position++) {
+            durations[position] = in.readLong();
+        }
+        BitSet current = new BitSet();
+        int currentCount = in.readInt();
+        for (int i = 0; i < currentCount; i++) {
+            int position = in.readInt();
+            if (position < 0 || position >= size) {
+                throw new IOException("Invalid position: " + position);
+            }
+            current.set(position);
+        }
+        StringColumn[] columns = new StringColumn[DICTIONARY.length];
+        for (int column = 0; column < columns.length; column++) {
+            columns[column] = StringColumn.read(in, DICTIONARY[column], size);
+        }
+        return new Playlist(id, name, size, ids, durations, current, columns);
     }
 
     public int getId() {
@@ -54,4 +227,310 @@ public final class Playlist extends ArrayList<PlaylistItem> implements PlaylistI
     public CharSequence getText2() {
         return "";
     }
+
+    @Override
+    public int size() {
+        return mSize;
+    }
+
+    /**
+     * Returns a copy of the track at {@code position}.
+     */
+    @Override
+    public Track get(int position) {
+        checkPosition(position);
+        Track track = new Track();
+        track.setId(mIds[position]);
+        track.setCurrent(mCurrent.get(position));
+        track.setDuration(mDurations[position]);
+        track.setUri(getString(position, COLUMN_URI));
+        track.setName(getString(position, COLUMN_NAME));
+        // The title and track setters don't accept null
+        String title = getString(position, COLUMN_TITLE);
+        if (title != null) {
+            track.setTitle(title);
+        }
+        track.setArtist(getString(position, COLUMN_ARTIST));
+        track.setGenre(getString(position, COLUMN_GENRE));
+        track.setCopyright(getString(position, COLUMN_COPYRIGHT));
+        track.setAlbum(getString(position, COLUMN_ALBUM));
+        String number = getString(position, COLUMN_TRACK);
+        if (number != null) {
+            track.setTrack(number);
+        }
+        track.setDescription(getString(position, COLUMN_DESCRIPTION));
+        track.setRating(getString(position, COLUMN_RATING));
+        track.setDate(getString(position, COLUMN_DATE));
+        track.setUrl(getString(position, COLUMN_URL));
+        track.setLanguage(getString(position, COLUMN_LANGUAGE));
+        track.setNowPlaying(getString(position, COLUMN_NOW_PLAYING));
+        track.setPublisher(getString(position, COLUMN_PUBLISHER));
+        track.setEncodedBy(getString(position, COLUMN_ENCODED_BY));
+        track.setArtUrl(getString(position, COLUMN_ART_URL));
+        track.setTrackId(getString(position, COLUMN_TRACK_ID));
+        return track;
+    }
+
+    /**
+     * Appends a copy of a {@link Track}.
+     *
+     * @throws IllegalArgumentException if {@code item} is not a
+     *             {@link Track}; nested playlists are not supported.
+     */
+    @Override
+    public boolean add(PlaylistItem item) {
+        if (!(item instanceof Track)) {
+            throw new IllegalArgumentException("Not a track: " + item);
+        }
+        Track track = (Track) item;
+        ensureCapacity(mSize + 1);
+        int position = mSize;
+        mIds[position] = track.getId();
+        mDurations[position] = track.getDuration();
+        mCurrent.set(position, track.isCurrent());
+        setString(position, COLUMN_URI, track.getUri());
+        setString(position, COLUMN_NAME, track.getName());
+        setString(position, COLUMN_TITLE, track.getTitle());
+        setString(position, COLUMN_ARTIST, track.getArtist());
+        setString(position, COLUMN_GENRE, track.getGenre());
+        setString(position, COLUMN_COPYRIGHT, track.getCopyright());
+        setString(position, COLUMN_ALBUM, track.getAlbum());
+        setString(position, COLUMN_TRACK, track.getTrack());
+        setString(position, COLUMN_DESCRIPTION, track.getDescription());
+        setString(position, COLUMN_RATING, track.getRating());
+        setString(position, COLUMN_DATE, track.getDate());
+        setString(position, COLUMN_URL, track.getUrl());
+        setString(position, COLUMN_LANGUAGE, track.getLanguage());
+        setString(position, COLUMN_NOW_PLAYING, track.getNowPlaying());
+        setString(position, COLUMN_PUBLISHER, track.getPublisher());
+        setString(position, COLUMN_ENCODED_BY, track.getEncodedBy());
+        setString(position, COLUMN_ART_URL, track.getArtUrl());
+        setString(position, COLUMN_TRACK_ID, track.getTrackId());
+        mSize++;
+        modCount++;
+        return true;
+    }
+
+    /**
+     * Returns a copy of the rows from {@code start} (inclusive) to
+     * {@code end} (exclusive).
+     * <p>
+     * Only the values of those rows are copied, so the cost does not depend
+     * on the size of the rest of the playlist.
+     */
+    public Playlist copyOfRange(int start, int end) {
+        if (start < 0 || start > end || end > mSize) {
+            throw new IndexOutOfBoundsException("Range: " + start + "-" + end + ", Size: "
+                    + mSize);
+        }
+        Playlist copy = new Playlist(mId, mName);
+        copy.addRows(this, start, end);
+        return copy;
+    }
+
+    /**
+     * Appends copies of the rows of another playlist.
+     */
+    public void addRows(Playlist source) {
+        addRows(source, 0, source.mSize);
+    }
+
+    private void addRows(Playlist source, int start, int end) {
+        int size = mSize + (end - start);
+        ensureCapacity(size);
+        for (int position = start; position < end; position++) {
+            copyRow(source, position, mSize + position - start);
+        }
+        mSize = size;
+        modCount++;
+    }
+
+    /**
+     * Removes rows, keeping the order of the remaining rows.
+     *
+     * @param positions the positions of the rows to remove.
+     */
+    public void removeRows(BitSet positions) {
+        int size = 0;
+        for (int position = 0; position < mSize; position++) {
+            if (!positions.get(position)) {
+                if (size != position) {
+                    copyRow(position, size);
+                }
+                size++;
+            }
+        }
+        for (int position = size; position < mSize; position++) {
+            // Release the strings of the removed rows
+            mCurrent.clear(position);
+            for (int column = 0; column < mColumns.length; column++) {
+                mColumns[column].replace(position, null, mIds.length);
+            }
+        }
+        if (size != mSize) {
+            mSize = size;
+            modCount++;
+        }
+    }
+
+    /**
+     * Inserts copies of rows from another playlist.
+     *
+     * @param positions the positions of the inserted rows once they are all
+     *            inserted, in ascending order.
+     * @param sourcePositions the positions of the rows in {@code source}.
+     * @param count the number of rows to insert.
+     */
+    public void insertRows(int[] positions, Playlist source, int[] sourcePositions, int count) {
+        if (count == 0) {
+            return;
+        }
+        int size = mSize + count;
+        ensureCapacity(size);
+        // Fill from the end, so each existing row moves at most once and
+        // rows before the first insertion don't move at all
+        int remaining = count;
+        for (int position = size - 1; remaining > 0; position--) {
+            if (positions[remaining - 1] == position) {
+                remaining--;
+                copyRow(source, sourcePositions[remaining], position);
+            } else {
+                copyRow(position - remaining, position);
+            }
+        }
+        mSize = size;
+        modCount++;
+    }
+
+    /**
+     * Replaces a row with a copy of a row from another playlist.
+     */
+    public void setRow(int position, Playlist source, int sourcePosition) {
+        checkPosition(position);
+        source.checkPosition(sourcePosition);
+        copyRow(source, sourcePosition, position);
+    }
+
+    /**
+     * Releases memory that is only needed while rows are being added or
+     * changed: the values that no row uses after
+     * {@link #removeRows(BitSet)} or {@link #setRow(int, Playlist, int)},
+     * and the tables used to share values between rows.
+     * <p>
+     * Call this once after a batch of changes, not after each change.
+     */
+    public void compact() {
+        for (int column = 0; column < mColumns.length; column++) {
+            mColumns[column].compact(mSize);
+        }
+    }
+
+    private void copyRow(int from, int to) {
+        mIds[to] = mIds[from];
+        mDurations[to] = mDurations[from];
+        mCurrent.set(to, mCurrent.get(from));
+        for (int column = 0; column < mColumns.length; column++) {
+            mColumns[column].copy(from, to, mIds.length);
+        }
+    }
+
+    private void copyRow(Playlist source, int from, int to) {
+        mIds[to] = source.mIds[from];
+        mDurations[to] = source.mDurations[from];
+        mCurrent.set(to, source.mCurrent.get(from));
+        for (int column = 0; column < mColumns.length; column++) {
+            mColumns[column].replace(to, source.mColumns[column].get(from), mIds.length);
+        }
+    }
+
+    private void ensureCapacity(int size) {
+        if (size > mIds.length) {
+            int capacity = Math.max(MIN_CAPACITY, Math.max(size, mSize + (mSize >> 1)));
+            mIds = StringColumn.copyOf(mIds, capacity);
+            long[] durations = new long[capacity];
+            System.arraycopy(mDurations, 0, durations, 0, mSize);
+            mDurations = durations;
+        }
+    }
+
+    public int getId(int position) {
+        checkPosition(position);
+        return mIds[position];
+    }
+
+    public long getDuration(int position) {
+        checkPosition(position);
+        return mDurations[position];
+    }
+
+    public boolean isCurrent(int position) {
+        checkPosition(position);
+        return mCurrent.get(position);
+    }
+
+    public void setCurrent(int position, boolean current) {
+        checkPosition(position);
+        mCurrent.set(position, current);
+    }
+
+    public String getUri(int position) {
+        return getString(position, COLUMN_URI);
+    }
+
+    public String getName(int position) {
+        return getString(position, COLUMN_NAME);
+    }
+
+    public String getTitle(int position) {
+        return getString(position, COLUMN_TITLE);
+    }
+
+    public String getArtist(int position) {
+        return getString(position, COLUMN_ARTIST);
+    }
+
+    public String getAlbum(int position) {
+        return getString(position, COLUMN_ALBUM);
+    }
+
+    public String getGenre(int position) {
+        return getString(position, COLUMN_GENRE);
+    }
+
+    /**
+     * Returns {@code true} if the row at {@code position} has the same values
+     * as the row at {@code otherPosition} in {@code other}.
+     */
+    public boolean rowEquals(int position, Playlist other, int otherPosition) {
+        checkPosition(position);
+        other.checkPosition(otherPosition);
+        if (mIds[position] != other.mIds[otherPosition]
+                || mDurations[position] != other.mDurations[otherPosition]
+                || mCurrent.get(position) != other.mCurrent.get(otherPosition)) {
+            return false;
+        }
+        for (int column = 0; column < mColumns.length; column++) {
+            String value = mColumns[column].get(position);
+            String otherValue = other.mColumns[column].get(otherPosition);
+            if (value != otherValue && (value == null || !value.equals(otherValue))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private String getString(int position, int column) {
+        checkPosition(position);
+        return mColumns[column].get(position);
+    }
+
+    private void setString(int position, int column, String value) {
+        mColumns[column].set(position, value, mIds.length);
+    }
+
+    private void checkPosition(int position) {
+        if (position < 0 || position >= mSize) {
+            throw new IndexOutOfBoundsException("Position: " + position + ", Size: " + mSize);
+        }
+    }
 }
@@ -0,0 +1,208 @@
+/*-
+ *  Copyright (C) 2011 Peter Baldwin
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.peterbaldwin.vlcremote.model;
+
+import android.util.SparseIntArray;
+
+import java.util.BitSet;
+
+/**
+ * The last known contents of a playlist, indexed by VLC item id.
+ * <p>
+ * Moving the current track marker only needs the id of the new current track,
+ * and a reloaded playlist is applied as a diff by id, so rows that did not
+ * change are kept.
+ */
+public final class PlaylistIndex {
+
+    private static final int NOT_FOUND = -1;
+
+    private Playlist mPlaylist;
+
+    /**
+     * Maps item ids to positions in {@link #mPlaylist}.
+     */
+    private SparseIntArray mPositions = new SparseIntArray();
+
+    private int mCurrentPosition = NOT_FOUND;
+
+    /**
+     * Returns the playlist, or {@code null} if nothing has been loaded.
+     */
+    public Playlist getPlaylist() {
+        return mPlaylist;
+    }
+
+    /**
+     * Returns the position of the current track, or {@code -1}.
+     */
+    public int getCurrentPosition() {
+        return mCurrentPosition;
+    }
+
+    public boolean contains(int id) {
+        return mPositions.get(id, NOT_FOUND) != NOT_FOUND;
+    }
+
+    public void clear() {
+        mPlaylist = null;
+        mPositions = new SparseIntArray();
+        mCurrentPosition = NOT_FOUND;
+    }
+
+    /**
+     * Marks the track with the given id as the current track.
+     *
+     * @return {@code true} if the current track changed.
+     */
+    public boolean setCurrent(int id) {
+        int position = mPositions.get(id, NOT_FOUND);
+        if (position == mCurrentPosition) {
+            return false;
+        }
+        if (mCurrentPosition != NOT_FOUND) {
+            mPlaylist.setCurrent(mCurrentPosition, false);
+        }
+        if (position != NOT_FOUND) {
+            mPlaylist.setCurrent(position, true);
+        }
+        mCurrentPosition = position;
+        return true;
+    }
+
+    /**
+     * Appends the next rows of a playlist that is being loaded. Only the new
+     * rows are indexed.
+     * <p>
+     * Item ids are unique, so if the first row is already in the index, the
+     * load must have started over (for example, because the loader was
+     * stopped), and the index starts over from these rows.
+     *
+     * @return {@code true} if any rows were appended.
+     */
+    public boolean append(Playlist rows) {
+        if (mPlaylist == null || (rows.size() != 0 && contains(rows.getId(0)))) {
+            replace(rows);
+            return true;
+        }
+        int start = mPlaylist.size();
+        mPlaylist.addRows(rows);
+        for (int position = start, count = mPlaylist.size(); position < count; position++) {
+            mPositions.put(mPlaylist.getId(position), position);
+            if (mPlaylist.isCurrent(position)) {
+                mCurrentPosition = position;
+            }
+        }
+        return rows.size() != 0;
+    }
+
+    /**
+     * Brings the index up to date with a newly loaded playlist.
+     * <p>
+     * The new playlist is compared with the previous contents by item id.
+     * Items that were removed are deleted, new items are inserted and items
+     * whose fields changed are overwritten, all in the previous
+     * {@link Playlist}, so its unchanged rows are kept. Only if items were
+     * moved is the previous playlist replaced.
+     *
+     * @return {@code true} if any item was inserted, removed, moved or
+     *         changed.
+     */
+    public boolean update(Playlist playlist) {
+        if (mPlaylist == null) {
+            replace(playlist);
+            return true;
+        }
+        int oldSize = mPlaylist.size();
+        int newSize = playlist.size();
+        BitSet deleted = new BitSet(oldSize);
+        deleted.set(0, oldSize);
+        int[] inserted = new int[newSize];
+        int insertedCount = 0;
+        int previousPosition = NOT_FOUND;
+        for (int position = 0; position < newSize; position++) {
+            int oldPosition = mPositions.get(playlist.getId(position), NOT_FOUND);
+            if (oldPosition == NOT_FOUND) {
+                inserted[insertedCount++] = position;
+            } else if (oldPosition > previousPosition) {
+                deleted.clear(oldPosition);
+                previousPosition = oldPosition;
+            } else {
+                // Moved or duplicated
+                replace(playlist);
+                return true;
+            }
+        }
+        boolean changed = false;
+        for (int position = 0; position < newSize; position++) {
+            int oldPosition = mPositions.get(playlist.getId(position), NOT_FOUND);
+            if (oldPosition != NOT_FOUND && !mPlaylist.rowEquals(oldPosition, playlist, position)) {
+                mPlaylist.setRow(oldPosition, playlist, position);
+                changed = true;
+            }
+        }
+        int firstMoved = oldSize;
+        if (!deleted.isEmpty()) {
+            firstMoved = deleted.nextSetBit(0);
+            for (int position = firstMoved; position >= 0; position = deleted
+                    .nextSetBit(position + 1)) {
+                mPositions.delete(mPlaylist.getId(position));
+            }
+            // The kept items are in the same order as in the new playlist, so
+            // once the deleted items are gone the inserted items can be put
+            // at their new positions
+            mPlaylist.removeRows(deleted);
+            changed = true;
+        }
+        if (insertedCount != 0) {
+            firstMoved = Math.min(firstMoved, inserted[0]);
+            mPlaylist.insertRows(inserted, playlist, inserted, insertedCount);
+            changed = true;
+        }
+        for (int position = firstMoved; position < newSize; position++) {
+            mPositions.put(mPlaylist.getId(position), position);
+        }
+        if (changed) {
+            mCurrentPosition = findCurrent(mPlaylist);
+        }
+        // Drop the values of rows that were replaced or removed, and the
+        // tables used while rows were appended
+        mPlaylist.compact();
+        return changed;
+    }
+
+    private void replace(Playlist playlist) {
+        int count = playlist.size();
+        SparseIntArray positions = new SparseIntArray(count);
+        for (int position = 0; position < count; position++) {
+            positions.put(playlist.getId(position), position);
+        }
+        mPlaylist = playlist;
+        mPositions = positions;
+        mCurrentPosition = findCurrent(playlist);
+    }
+
+    private static int findCurrent(Playlist playlist) {
+        for (int position = 0, count = playlist.size(); position < count; position++) {
+            if (playlist.isCurrent(position)) {
+                return position;
+            }
+        }
+        return NOT_FOUND;
+    }
+}
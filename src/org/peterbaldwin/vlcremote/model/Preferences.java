@@ -42,8 +42,16 @@ public final class Preferences {
 
     private static final String PREFERENCE_HOME_DIRECTORY = "home_directory";
 
+    private static final String PREFERENCE_BROWSE_SORT = "browse_sort";
+
+    private static final String PREFERENCE_BROWSE_DIRECTORIES_FIRST = "browse_directories_first";
+
     private static final String PREFERENCE_RESUME_ON_IDLE = "resume_on_idle";
 
+    private static final String PREFERENCE_SWEEP_PORTS = "sweep_ports";
+
+    private static final String PREFERENCE_SWEEP_RANGES = "sweep_ranges";
+
     private SharedPreferences mPreferences;
 
     public Preferences(SharedPreferences preferences) {
@@ -88,6 +96,18 @@ public final class Preferences {
         return mPreferences.getString(PREFERENCE_BROWSE_DIRECTORY, "~");
     }
 
+    public DirectorySort getBrowseSort() {
+        DirectorySort sort = DirectorySort.DEFAULT;
+        int key = mPreferences.getInt(PREFERENCE_BROWSE_SORT, sort.getKey());
+        boolean directoriesFirst = mPreferences.getBoolean(PREFERENCE_BROWSE_DIRECTORIES_FIRST,
+                sort.isDirectoriesFirst());
+        try {
+            return new DirectorySort(key, directoriesFirst);
+        } catch (IllegalArgumentException e) {
+            return sort;
+        }
+    }
+
     public boolean setAuthority(String authority) {
         return mPreferences.edit().putString(PREFERENCE_SERVER, authority).commit();
     }
@@ -100,6 +120,37 @@ public final class Preferences {
         return mPreferences.edit().putString(PREFERENCE_BROWSE_DIRECTORY, dir).commit();
     }
 
+    public boolean setBrowseSort(DirectorySort sort) {
+        SharedPreferences.Editor editor = mPreferences.edit();
+        editor.putInt(PREFERENCE_BROWSE_SORT, sort.getKey());
+        editor.putBoolean(PREFERENCE_BROWSE_DIRECTORIES_FIRST, sort.isDirectoriesFirst());
+        return editor.commit();
+    }
+
+    /**
+     * Returns the ports to scan for servers besides the default port, as
+     * entered by the user (for example, {@code "8081, 9090"}).
+     */
+    public String getSweepPorts() {
+        return mPreferences.getString(PREFERENCE_SWEEP_PORTS, "");
+    }
+
+    /**
+     * Returns the address ranges to scan for servers besides the Wi-Fi
+     * network, as entered by the user (for example, {@code "10.0.0.0/23"}).
+     */
+    public String getSweepRanges() {
+        return mPreferences.getString(PREFERENCE_SWEEP_RANGES, "");
+    }
+
+    public boolean setSweepPorts(String ports) {
+        return mPreferences.edit().putString(PREFERENCE_SWEEP_PORTS, ports).commit();
+    }
+
+    public boolean setSweepRanges(String ranges) {
+        return mPreferences.edit().putString(PREFERENCE_SWEEP_RANGES, ranges).commit();
+    }
+
     public ArrayList<String> getRememberedServers() {
         return fromJSONArray(mPreferences.getString(PREFERENCE_REMEMBERED_SERVERS, "[]"));
     }
@@ -27,16 +27,26 @@ public final class Remote<T> {
 
     public final Throwable error;
 
-    private Remote(T data, Throwable error) {
+    /**
+     * {@code true} if the data is incomplete and more is still being loaded.
+     */
+    public final boolean partial;
+
+    private Remote(T data, Throwable error, boolean partial) {
         this.data = data;
         this.error = error;
+        this.partial = partial;
     }
 
     public static <T> Remote<T> data(T data) {
-        return new Remote<T>(data, null);
+        return new Remote<T>(data, null, false);
+    }
+
+    public static <T> Remote<T> partial(T data) {
+        return new Remote<T>(data, null, true);
     }
 
     public static <T> Remote<T> error(Throwable t) {
-        return new Remote<T>(null, t);
+        return new Remote<T>(null, t, false);
     }
 }
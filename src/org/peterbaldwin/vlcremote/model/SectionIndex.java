@@ -0,0 +1,159 @@
+/*-
+ *  Copyright (C) 2011 Peter Baldwin
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.peterbaldwin.vlcremote.model;
+
+import android.util.SparseIntArray;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Fast-scroll sections for a list of files, by the first letter of each name.
+ * <p>
+ * The index is immutable, so it can be built on a background thread and
+ * handed to an adapter.
+ */
+public final class SectionIndex {
+
+    public static final SectionIndex EMPTY = new SectionIndex(new Object[0], new int[0],
+            new int[0]);
+
+    /**
+     * Key of the section for the parent directory entry.
+     */
+    private static final int KEY_PARENT = -1;
+
+    /**
+     * Key of the section for files without a name.
+     */
+    private static final int KEY_EMPTY = -2;
+
+    /**
+     * Added to the key of a directory when directories are sorted before
+     * files, so that each group gets its own letter sections.
+     */
+    private static final int KEY_DIRECTORY = 0x10000;
+
+    private static final int NOT_FOUND = Integer.MIN_VALUE;
+
+    private final Object[] mSections;
+
+    private final int[] mPositionForSection;
+
+    private final int[] mSectionForPosition;
+
+    private SectionIndex(Object[] sections, int[] positionForSection, int[] sectionForPosition) {
+        mSections = sections;
+        mPositionForSection = positionForSection;
+        mSectionForPosition = sectionForPosition;
+    }
+
+    /**
+     * Builds the index for {@code files}, which must be sorted by name.
+     *
+     * @param parentSection the name of the section for the {@code ..} entry.
+     * @param directoriesFirst whether the directories are sorted before the
+     *            files rather than among them.
+     */
+    public static SectionIndex build(List<File> files, String parentSection,
+            boolean directoriesFirst) {
+        int count = files.size();
+        // Space for every letter and digit, plus a couple symbols
+        int capacity = 48;
+        List<String> sections = new ArrayList<String>(capacity);
+        int[] positionForSection = new int[capacity];
+        int[] sectionForPosition = new int[count];
+        SparseIntArray sectionForKey = new SparseIntArray(capacity);
+        for (int position = 0; position < count; position++) {
+            File file = files.get(position);
+            int key = getKey(file.getName());
+            if (directoriesFirst && key >= 0 && file.isDirectory()) {
+                key += KEY_DIRECTORY;
+            }
+            int section = sectionForKey.get(key, NOT_FOUND);
+            if (section == NOT_FOUND) {
+                section = sections.size();
+                sectionForKey.put(key, section);
+                sections.add(getSection(key, parentSection));
+                if (section == positionForSection.length) {
+                    int[] array = new int[section * 2];
+                    System.arraycopy(positionForSection, 0, array, 0, section);
+                    positionForSection = array;
+                }
+                positionForSection[section] = position;
+            }
+            sectionForPosition[position] = section;
+        }
+        int sectionCount = sections.size();
+        int[] trimmed = new int[sectionCount];
+        System.arraycopy(positionForSection, 0, trimmed, 0, sectionCount);
+        return new SectionIndex(sections.toArray(), trimmed, sectionForPosition);
+    }
+
+    private static int getKey(String name) {
+        if (name == null || name.length() == 0) {
+            // This shouldn't happen
+            return KEY_EMPTY;
+        } else if (name.equals("..")) {
+            return KEY_PARENT;
+        } else {
+            return Character.toUpperCase(name.charAt(0));
+        }
+    }
+
+    private static String getSection(int key, String parentSection) {
+        switch (key) {
+            case KEY_EMPTY:
+                return "";
+            case KEY_PARENT:
+                return parentSection;
+            default:
+                return String.valueOf((char) key);
+        }
+    }
+
+    public Object[] getSections() {
+        return mSections;
+    }
+
+    public int getPositionForSection(int section) {
+        if (mPositionForSection.length == 0) {
+            return 0;
+        }
+        if (section < 0) {
+            section = 0;
+        }
+        if (section >= mPositionForSection.length) {
+            section = mPositionForSection.length - 1;
+        }
+        return mPositionForSection[section];
+    }
+
+    public int getSectionForPosition(int position) {
+        if (mSectionForPosition.length == 0) {
+            return 0;
+        }
+        if (position < 0) {
+            position = 0;
+        }
+        if (position >= mSectionForPosition.length) {
+            position = mSectionForPosition.length - 1;
+        }
+        return mSectionForPosition[position];
+    }
+}
@@ -17,12 +17,20 @@
 
 package org.peterbaldwin.vlcremote.model;
 
+import android.os.Parcel;
+import android.os.Parcelable;
+
 import java.io.Serializable;
 
-public final class Status implements Serializable {
+public final class Status implements Parcelable, Serializable {
 
     private static final long serialVersionUID = 1L;
 
+    private static final int FLAG_FULLSCREEN = 1 << 0;
+    private static final int FLAG_RANDOM = 1 << 1;
+    private static final int FLAG_LOOP = 1 << 2;
+    private static final int FLAG_REPEAT = 1 << 3;
+
     private int mVolume;
     private int mLength;
     private int mTime;
@@ -35,6 +43,23 @@ public final class Status implements Serializable {
 
     private final Track mTrack = new Track();
 
+    public Status() {
+    }
+
+    private Status(Parcel in) {
+        mVolume = in.readInt();
+        mLength = in.readInt();
+        mTime = in.readInt();
+        mState = in.readString();
+        mPosition = in.readDouble();
+        int flags = in.readInt();
+        mFullscreen = (flags & FLAG_FULLSCREEN) != 0;
+        mRandom = (flags & FLAG_RANDOM) != 0;
+        mLoop = (flags & FLAG_LOOP) != 0;
+        mRepeat = (flags & FLAG_REPEAT) != 0;
+        mTrack.readFromParcel(in);
+    }
+
     public int getVolume() {
         return mVolume;
     }
@@ -128,4 +153,66 @@ public final class Status implements Serializable {
     public Track getTrack() {
         return mTrack;
     }
+
+    /** {@inheritDoc} */
+    public int describeContents() {
+        return 0;
+    }
+
+    /** {@inheritDoc} */
+    public void writeToParcel(Parcel dest, int flags) {
+        dest.writeInt(mVolume);
+        dest.writeInt(mLength);
+        dest.writeInt(mTime);
+        dest.writeString(mState);
+        dest.writeDouble(mPosition);
+        int booleans = 0;
+        booleans |= mFullscreen ? FLAG_FULLSCREEN : 0;
+        booleans |= mRandom ? FLAG_RANDOM : 0;
+        booleans |= mLoop ? FLAG_LOOP : 0;
+        booleans |= mRepeat ? FLAG_REPEAT : 0;
+        dest.writeInt(booleans);
+        // Write the track inline; it is always present.
+        mTrack.writeToParcel(dest, flags);
+    }
+
+    public static final Parcelable.Creator<Status> CREATOR = new Parcelable.Creator<Status>() {
+        /** {@inheritDoc} */
+        public Status createFromParcel(Parcel in) {
+            return new Status(in);
+        }
+
+        /** {@inheritDoc} */
+        public Status[] newArray(int size) {
+            return new Status[size];
+        }
+    };
+
+    @Override
+    public boolean equals(Object o) {
+        if (o == this) {
+            return true;
+        }
+        if (!(o instanceof Status)) {
+            return false;
+        }
+        Status other = (Status) o;
+        return mVolume == other.mVolume && mLength == other.mLength && mTime == other.mTime
+                && Double.compare(mPosition, other.mPosition) == 0
+                && mFullscreen == other.mFullscreen && mRandom == other.mRandom
+                && mLoop == other.mLoop && mRepeat == other.mRepeat
+                && (mState != null ? mState.equals(other.mState) : other.mState == null)
+                && mTrack.equals(other.mTrack);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = 17;
+        result = 31 * result + mVolume;
+        result = 31 * result + mLength;
+        result = 31 * result + mTime;
+        result = 31 * result + (mState != null ? mState.hashCode() : 0);
+        result = 31 * result + mTrack.hashCode();
+        return result;
+    }
 }
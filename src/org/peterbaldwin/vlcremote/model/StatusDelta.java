@@ -0,0 +1,167 @@
+/*-
+ *  Copyright (C) 2011 Peter Baldwin
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.peterbaldwin.vlcremote.model;
+
+import android.text.TextUtils;
+
+/**
+ * The categories of fields that differ between two consecutive
+ * {@link Status} objects.
+ */
+public final class StatusDelta {
+
+    /**
+     * The volume changed.
+     */
+    public static final int VOLUME = 1 << 0;
+
+    /**
+     * The playback time or the length of the media changed.
+     */
+    public static final int TIME = 1 << 1;
+
+    /**
+     * The playback state changed (for example, from playing to paused).
+     */
+    public static final int STATE = 1 << 2;
+
+    /**
+     * The playback position changed.
+     */
+    public static final int POSITION = 1 << 3;
+
+    /**
+     * The fullscreen, random, loop or repeat flags changed.
+     */
+    public static final int FLAGS = 1 << 4;
+
+    /**
+     * The current track or its metadata changed.
+     */
+    public static final int TRACK = 1 << 5;
+
+    /**
+     * A different playlist item became current. Unlike {@link #TRACK}, this
+     * does not include changes to the metadata of the same item, such as
+     * the "now playing" text of a stream.
+     */
+    public static final int ITEM = 1 << 6;
+
+    /**
+     * The art URL of the current track changed.
+     */
+    public static final int ART = 1 << 7;
+
+    public static final int ALL = VOLUME | TIME | STATE | POSITION | FLAGS | TRACK | ITEM | ART;
+
+    /**
+     * Delta for a status that has nothing to be compared with, such as the
+     * first status delivered to a listener.
+     *
+     * @see #isInitial()
+     */
+    public static final StatusDelta EVERYTHING = new StatusDelta(ALL);
+
+    private final int mChanges;
+
+    private StatusDelta(int changes) {
+        mChanges = changes;
+    }
+
+    /**
+     * Computes the changes from {@code previous} to {@code current}.
+     *
+     * @param previous the previous status, or {@code null}.
+     * @param current the new status.
+     */
+    public static StatusDelta compute(Status previous, Status current) {
+        if (previous == null) {
+            return EVERYTHING;
+        }
+        int changes = 0;
+        if (previous.getVolume() != current.getVolume()) {
+            changes |= VOLUME;
+        }
+        if (previous.getTime() != current.getTime()
+                || previous.getLength() != current.getLength()) {
+            changes |= TIME;
+        }
+        if (!TextUtils.equals(previous.getState(), current.getState())) {
+            changes |= STATE;
+        }
+        if (Double.compare(previous.getPosition(), current.getPosition()) != 0) {
+            changes |= POSITION;
+        }
+        if (previous.isFullscreen() != current.isFullscreen()
+                || previous.isRandom() != current.isRandom()
+                || previous.isLoop() != current.isLoop()
+                || previous.isRepeat() != current.isRepeat()) {
+            changes |= FLAGS;
+        }
+        Track previousTrack = previous.getTrack();
+        Track currentTrack = current.getTrack();
+        if (!previousTrack.equals(currentTrack)) {
+            changes |= TRACK;
+            if (!isSameItem(previousTrack, currentTrack)) {
+                changes |= ITEM;
+            }
+            if (!TextUtils.equals(previousTrack.getArtUrl(), currentTrack.getArtUrl())) {
+                changes |= ART;
+            }
+        }
+        return new StatusDelta(changes);
+    }
+
+    private static boolean isSameItem(Track previous, Track current) {
+        if (previous.getId() != 0 || current.getId() != 0) {
+            // VLC 2.0 and later report the playlist id of the current item
+            return previous.getId() == current.getId();
+        }
+        if (previous.getName() != null || current.getName() != null) {
+            return TextUtils.equals(previous.getName(), current.getName());
+        }
+        return TextUtils.equals(previous.getTitle(), current.getTitle());
+    }
+
+    /**
+     * Returns the bitwise OR of the categories that changed.
+     */
+    public int getChanges() {
+        return mChanges;
+    }
+
+    /**
+     * Returns {@code true} if any of the given categories changed.
+     */
+    public boolean hasChanges(int categories) {
+        return (mChanges & categories) != 0;
+    }
+
+    public boolean isEmpty() {
+        return mChanges == 0;
+    }
+
+    /**
+     * Returns {@code true} if there was no previous status to compare with,
+     * so every category is marked as changed without anything having
+     * actually changed.
+     */
+    public boolean isInitial() {
+        return this == EVERYTHING;
+    }
+}
@@ -0,0 +1,334 @@
+/*-
+ *  Copyright (C) 2011 Peter Baldwin
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.peterbaldwin.vlcremote.model;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * One column of string values in a {@link Playlist}.
+ * <p>
+ * Storage is not allocated until the first non-{@code null} value is added,
+ * so fields that the server never sends cost nothing. Dictionary-encoded
+ * columns store each distinct value once and keep an {@code int} code per
+ * row, which suits fields like artist and album that repeat across many
+ * rows.
+ */
+final class StringColumn implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Code for {@code null} in a dictionary-encoded column.
+     */
+    private static final int NULL_CODE = 0;
+
+    private final boolean mDictionary;
+
+    /**
+     * Values by row, for plain columns.
+     */
+    private String[] mValues;
+
+    /**
+     * Codes by row, for dictionary-encoded columns. Code {@code n} refers to
+     * {@code mDictionaryValues.get(n - 1)}.
+     */
+    private int[] mCodes;
+
+    private ArrayList<String> mDictionaryValues;
+
+    /**
+     * Maps values to codes. Only needed while rows are being added, so it is
+     * dropped by {@link #compact(int)} and rebuilt on demand.
+     */
+    private transient HashMap<String, Integer> mLookup;
+
+    public StringColumn(boolean dictionary) {
+        mDictionary = dictionary;
+    }
+
+    /**
+     * Creates a copy of the first {@code size} rows of {@code column}.
+     */
+    public StringColumn(StringColumn column, int size) {
+        mDictionary = column.mDictionary;
+        if (column.mValues != null) {
+            mValues = copyOf(column.mValues, size);
+        }
+        if (column.mCodes != null) {
+            mCodes = copyOf(column.mCodes, size);
+            mDictionaryValues = new ArrayList<String>(column.mDictionaryValues);
+        }
+    }
+
+    public String get(int row) {
+        if (mDictionary) {
+            int code = (mCodes != null && row < mCodes.length) ? mCodes[row] : NULL_CODE;
+            return code != NULL_CODE ? mDictionaryValues.get(code - 1) : null;
+        } else {
+            return (mValues != null && row < mValues.length) ? mValues[row] : null;
+        }
+    }
+
+    /**
+     * Sets the value of a row that has not been set before.
+     *
+     * @param capacity the number of rows to make room for if the column needs
+     *            to grow.
+     */
+    public void set(int row, String value, int capacity) {
+        if (value == null) {
+            // Rows that are not set are null
+            return;
+        }
+        if (mDictionary) {
+            if (mCodes == null || row >= mCodes.length) {
+                mCodes = copyOf(mCodes, capacity);
+            }
+            mCodes[row] = encode(value);
+        } else {
+            if (mValues == null || row >= mValues.length) {
+                mValues = copyOf(mValues, capacity);
+            }
+            mValues[row] = value;
+        }
+    }
+
+    /**
+     * Replaces the value of a row, which may be {@code null}.
+     *
+     * @param capacity the number of rows to make room for if the column needs
+     *            to grow.
+     */
+    public void replace(int row, String value, int capacity) {
+        if (value != null) {
+            set(row, value, capacity);
+        } else if (mDictionary) {
+            if (mCodes != null && row < mCodes.length) {
+                mCodes[row] = NULL_CODE;
+            }
+        } else {
+            if (mValues != null && row < mValues.length) {
+                mValues[row] = null;
+            }
+        }
+    }
+
+    /**
+     * Copies the value of row {@code from} to row {@code to}.
+     */
+    public void copy(int from, int to, int capacity) {
+        if (mDictionary) {
+            int code = (mCodes != null && from < mCodes.length) ? mCodes[from] : NULL_CODE;
+            if (code != NULL_CODE && to >= mCodes.length) {
+                mCodes = copyOf(mCodes, capacity);
+            }
+            if (mCodes != null && to < mCodes.length) {
+                mCodes[to] = code;
+            }
+        } else {
+            String value = (mValues != null && from < mValues.length) ? mValues[from] : null;
+            if (value != null && to >= mValues.length) {
+                mValues = copyOf(mValues, capacity);
+            }
+            if (mValues != null && to < mValues.length) {
+                mValues[to] = value;
+            }
+        }
+    }
+
+    private int encode(String value) {
+        if (mDictionaryValues == null) {
+            mDictionaryValues = new ArrayList<String>();
+        }
+        if (mLookup == null) {
+            mLookup = new HashMap<String, Integer>();
+            for (int i = 0, n = mDictionaryValues.size(); i < n; i++) {
+                mLookup.put(mDictionaryValues.get(i), Integer.valueOf(i + 1));
+            }
+        }
+        Integer code = mLookup.get(value);
+        if (code == null) {
+            mDictionaryValues.add(value);
+            code = Integer.valueOf(mDictionaryValues.size());
+            mLookup.put(value, code);
+        }
+        return code.intValue();
+    }
+
+    /**
+     * Drops the dictionary values that none of the first {@code size} rows
+     * use, and the lookup table that is only needed to add values.
+     */
+    public void compact(int size) {
+        mLookup = null;
+        if (mCodes == null) {
+            return;
+        }
+        int rows = Math.min(size, mCodes.length);
+        for (int row = rows; row < mCodes.length; row++) {
+            mCodes[row] = NULL_CODE;
+        }
+        int count = mDictionaryValues.size();
+        boolean[] used = new boolean[count + 1];
+        int usedCount = 0;
+        for (int row = 0; row < rows; row++) {
+            int code = mCodes[row];
+            if (code != NULL_CODE && !used[code]) {
+                used[code] = true;
+                usedCount++;
+            }
+        }
+        if (usedCount == count) {
+            return;
+        }
+        // Keep the used values in the same order, so codes only move down
+        int[] codes = new int[count + 1];
+        ArrayList<String> values = new ArrayList<String>(usedCount);
+        for (int code = 1; code <= count; code++) {
+            if (used[code]) {
+                values.add(mDictionaryValues.get(code - 1));
+                codes[code] = values.size();
+            }
+        }
+        for (int row = 0; row < rows; row++) {
+            mCodes[row] = codes[mCodes[row]];
+        }
+        mDictionaryValues = values;
+    }
+
+    /**
+     * Returns the number of distinct values in a dictionary-encoded column.
+     */
+    public int getDictionarySize() {
+        return mDictionaryValues != null ? mDictionaryValues.size() : 0;
+    }
+
+    /**
+     * Writes the first {@code size} rows.
+     */
+    public void write(DataOutput out, int size) throws IOException {
+        if (mDictionary) {
+            if (mCodes == null) {
+                out.writeBoolean(false);
+                return;
+            }
+            out.writeBoolean(true);
+            int count = mDictionaryValues.size();
+            out.writeInt(count);
+            for (int i = 0; i < count; i++) {
+                writeString(out, mDictionaryValues.get(i));
+            }
+            for (int row = 0; row < size; row++) {
+                out.writeInt(row < mCodes.length ? mCodes[row] : NULL_CODE);
+            }
+        } else {
+            if (mValues == null) {
+                out.writeBoolean(false);
+                return;
+            }
+            out.writeBoolean(true);
+            for (int row = 0; row < size; row++) {
+                writeString(out, row < mValues.length ? mValues[row] : null);
+            }
+        }
+    }
+
+    /**
+     * Reads {@code size} rows written by {@link #write(DataOutput, int)}.
+     */
+    public static StringColumn read(DataInput in, boolean dictionary, int size)
+            throws IOException {
+        StringColumn column = new StringColumn(dictionary);
+        if (!in.readBoolean()) {
+            return column;
+        }
+        if (dictionary) {
+            int count = in.readInt();
+            if (count < 0) {
+                throw new IOException("Invalid dictionary size: " + count);
+            }
+            column.mDictionaryValues = new ArrayList<String>(count);
+            for (int i = 0; i < count; i++) {
+                column.mDictionaryValues.add(readString(in));
+            }
+            column.mCodes = new int[size];
+            for (int row = 0; row < size; row++) {
+                int code = in.readInt();
+                if (code < NULL_CODE || code > count) {
+                    throw new IOException("Invalid code: " + code);
+                }
+                column.mCodes[row] = code;
+            }
+        } else {
+            column.mValues = new String[size];
+            for (int row = 0; row < size; row++) {
+                column.mValues[row] = readString(in);
+            }
+        }
+        return column;
+    }
+
+    /**
+     * Writes a string that may be {@code null} or longer than
+     * {@link DataOutput#writeUTF(String)} allows.
+     */
+    static void writeString(DataOutput out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+        } else {
+            byte[] bytes = value.getBytes("UTF-8");
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    static String readString(DataInput in) throws IOException {
+        int length = in.readInt();
+        if (length == -1) {
+            return null;
+        }
+        if (length < 0) {
+            throw new IOException("Invalid string length: " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, "UTF-8");
+    }
+
+    static String[] copyOf(String[] array, int length) {
+        String[] copy = new String[length];
+        if (array != null) {
+            System.arraycopy(array, 0, copy, 0, Math.min(array.length, length));
+        }
+        return copy;
+    }
+
+    static int[] copyOf(int[] array, int length) {
+        int[] copy = new int[length];
+        if (array != null) {
+            System.arraycopy(array, 0, copy, 0, Math.min(array.length, length));
+        }
+        return copy;
+    }
+}
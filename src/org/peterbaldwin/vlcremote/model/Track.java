@@ -17,14 +17,37 @@
 
 package org.peterbaldwin.vlcremote.model;
 
+import android.os.Parcel;
+import android.os.Parcelable;
 import android.text.TextUtils;
 
 import java.io.Serializable;
 
-public final class Track implements PlaylistItem, Serializable {
+public final class Track implements PlaylistItem, Parcelable, Serializable {
 
     private static final long serialVersionUID = 1L;
 
+    // Bits that identify the string fields written to a Parcel. Most tracks
+    // only have a few tags, so only the fields that are set are written.
+    private static final int FIELD_URI = 1 << 0;
+    private static final int FIELD_NAME = 1 << 1;
+    private static final int FIELD_TITLE = 1 << 2;
+    private static final int FIELD_ARTIST = 1 << 3;
+    private static final int FIELD_GENRE = 1 << 4;
+    private static final int FIELD_COPYRIGHT = 1 << 5;
+    private static final int FIELD_ALBUM = 1 << 6;
+    private static final int FIELD_TRACK = 1 << 7;
+    private static final int FIELD_DESCRIPTION = 1 << 8;
+    private static final int FIELD_RATING = 1 << 9;
+    private static final int FIELD_DATE = 1 << 10;
+    private static final int FIELD_URL = 1 << 11;
+    private static final int FIELD_LANGUAGE = 1 << 12;
+    private static final int FIELD_NOW_PLAYING = 1 << 13;
+    private static final int FIELD_PUBLISHER = 1 << 14;
+    private static final int FIELD_ENCODED_BY = 1 << 15;
+    private static final int FIELD_ART_URL = 1 << 16;
+    private static final int FIELD_TRACK_ID = 1 << 17;
+
     private int mId;
 
     private boolean mCurrent;
@@ -67,6 +90,13 @@ public final class Track implements PlaylistItem, Serializable {
 
     private String mTrackId;
 
+    public Track() {
+    }
+
+    private Track(Parcel in) {
+        readFromParcel(in);
+    }
+
     public int getId() {
         return mId;
     }
@@ -249,6 +279,142 @@ public final class Track implements PlaylistItem, Serializable {
         this.mTrackId = trackId;
     }
 
+    @Override
+    public boolean equals(Object o) {
+        if (o == this) {
+            return true;
+        }
+        if (!(o instanceof Track)) {
+            return false;
+        }
+        Track other = (Track) o;
+        return mId == other.mId && mCurrent == other.mCurrent && mDuration == other.mDuration
+                && TextUtils.equals(mUri, other.mUri) && TextUtils.equals(mName, other.mName)
+                && TextUtils.equals(mTitle, other.mTitle)
+                && TextUtils.equals(mArtist, other.mArtist)
+                && TextUtils.equals(mGenre, other.mGenre)
+                && TextUtils.equals(mCopyright, other.mCopyright)
+                && TextUtils.equals(mAlbum, other.mAlbum)
+                && TextUtils.equals(mTrack, other.mTrack)
+                && TextUtils.equals(mDescription, other.mDescription)
+                && TextUtils.equals(mRating, other.mRating)
+                && TextUtils.equals(mDate, other.mDate) && TextUtils.equals(mUrl, other.mUrl)
+                && TextUtils.equals(mLanguage, other.mLanguage)
+                && TextUtils.equals(mNowPlaying, other.mNowPlaying)
+                && TextUtils.equals(mPublisher, other.mPublisher)
+                && TextUtils.equals(mEncodedBy, other.mEncodedBy)
+                && TextUtils.equals(mArtUrl, other.mArtUrl)
+                && TextUtils.equals(mTrackId, other.mTrackId);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = 17;
+        result = 31 * result + mId;
+        result = 31 * result + (mUri != null ? mUri.hashCode() : 0);
+        result = 31 * result + (mName != null ? mName.hashCode() : 0);
+        result = 31 * result + (mTitle != null ? mTitle.hashCode() : 0);
+        result = 31 * result + (mArtist != null ? mArtist.hashCode() : 0);
+        return result;
+    }
+
+    /** {@inheritDoc} */
+    public int describeContents() {
+        return 0;
+    }
+
+    /** {@inheritDoc} */
+    public void writeToParcel(Parcel dest, int flags) {
+        dest.writeInt(mId);
+        dest.writeInt(mCurrent ? 1 : 0);
+        dest.writeLong(mDuration);
+        int mask = 0;
+        mask |= (mUri != null) ? FIELD_URI : 0;
+        mask |= (mName != null) ? FIELD_NAME : 0;
+        mask |= (mTitle != null) ? FIELD_TITLE : 0;
+        mask |= (mArtist != null) ? FIELD_ARTIST : 0;
+        mask |= (mGenre != null) ? FIELD_GENRE : 0;
+        mask |= (mCopyright != null) ? FIELD_COPYRIGHT : 0;
+        mask |= (mAlbum != null) ? FIELD_ALBUM : 0;
+        mask |= (mTrack != null) ? FIELD_TRACK : 0;
+        mask |= (mDescription != null) ? FIELD_DESCRIPTION : 0;
+        mask |= (mRating != null) ? FIELD_RATING : 0;
+        mask |= (mDate != null) ? FIELD_DATE : 0;
+        mask |= (mUrl != null) ? FIELD_URL : 0;
+        mask |= (mLanguage != null) ? FIELD_LANGUAGE : 0;
+        mask |= (mNowPlaying != null) ? FIELD_NOW_PLAYING : 0;
+        mask |= (mPublisher != null) ? FIELD_PUBLISHER : 0;
+        mask |= (mEncodedBy != null) ? FIELD_ENCODED_BY : 0;
+        mask |= (mArtUrl != null) ? FIELD_ART_URL : 0;
+        mask |= (mTrackId != null) ? FIELD_TRACK_ID : 0;
+        dest.writeInt(mask);
+        writeIfSet(dest, mUri);
+        writeIfSet(dest, mName);
+        writeIfSet(dest, mTitle);
+        writeIfSet(dest, mArtist);
+        writeIfSet(dest, mGenre);
+        writeIfSet(dest, mCopyright);
+        writeIfSet(dest, mAlbum);
+        writeIfSet(dest, mTrack);
+        writeIfSet(dest, mDescription);
+        writeIfSet(dest, mRating);
+        writeIfSet(dest, mDate);
+        writeIfSet(dest, mUrl);
+        writeIfSet(dest, mLanguage);
+        writeIfSet(dest, mNowPlaying);
+        writeIfSet(dest, mPublisher);
+        writeIfSet(dest, mEncodedBy);
+        writeIfSet(dest, mArtUrl);
+        writeIfSet(dest, mTrackId);
+    }
+
+    void readFromParcel(Parcel in) {
+        mId = in.readInt();
+        mCurrent = (in.readInt() != 0);
+        mDuration = in.readLong();
+        int mask = in.readInt();
+        mUri = readIfSet(in, mask, FIELD_URI);
+        mName = readIfSet(in, mask, FIELD_NAME);
+        mTitle = readIfSet(in, mask, FIELD_TITLE);
+        mArtist = readIfSet(in, mask, FIELD_ARTIST);
+        mGenre = readIfSet(in, mask, FIELD_GENRE);
+        mCopyright = readIfSet(in, mask, FIELD_COPYRIGHT);
+        mAlbum = readIfSet(in, mask, FIELD_ALBUM);
+        mTrack = readIfSet(in, mask, FIELD_TRACK);
+        mDescription = readIfSet(in, mask, FIELD_DESCRIPTION);
+        mRating = readIfSet(in, mask, FIELD_RATING);
+        mDate = readIfSet(in, mask, FIELD_DATE);
+        mUrl = readIfSet(in, mask, FIELD_URL);
+        mLanguage = readIfSet(in, mask, FIELD_LANGUAGE);
+        mNowPlaying = readIfSet(in, mask, FIELD_NOW_PLAYING);
+        mPublisher = readIfSet(in, mask, FIELD_PUBLISHER);
+        mEncodedBy = readIfSet(in, mask, FIELD_ENCODED_BY);
+        mArtUrl = readIfSet(in, mask, FIELD_ART_URL);
+        mTrackId = readIfSet(in, mask, FIELD_TRACK_ID);
+    }
+
+    private static void writeIfSet(Parcel dest, String value) {
+        if (value != null) {
+            dest.writeString(value);
+        }
+    }
+
+    private static String readIfSet(Parcel in, int mask, int field) {
+        return ((mask & field) != 0) ? in.readString() : null;
+    }
+
+    public static final Parcelable.Creator<Track> CREATOR = new Parcelable.Creator<Track>() {
+        /** {@inheritDoc} */
+        public Track createFromParcel(Parcel in) {
+            return new Track(in);
+        }
+
+        /** {@inheritDoc} */
+        public Track[] newArray(int size) {
+            return new Track[size];
+        }
+    };
+
     @Override
     public String toString() {
         // XSPF playlists set the title, but use a URL for the name.
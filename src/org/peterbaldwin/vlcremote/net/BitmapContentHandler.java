@@ -36,7 +36,7 @@ final class BitmapContentHandler extends ContentHandler {
         connection.setConnectTimeout(TIMEOUT);
         connection.setReadTimeout(TIMEOUT);
 
-        InputStream input = connection.getInputStream();
+        InputStream input = new KeepAliveInputStream(connection.getInputStream());
         try {
             input = new BlockingFilterInputStream(input);
             Bitmap bitmap = BitmapFactory.decodeStream(input);
@@ -0,0 +1,79 @@
+/*-
+ *  Copyright (C) 2011 Peter Baldwin
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.peterbaldwin.vlcremote.net;
+
+import android.os.Build;
+import android.text.format.DateUtils;
+
+import java.net.HttpURLConnection;
+
+/**
+ * Configures the pool of keep-alive connections shared by all
+ * {@link MediaServer} requests.
+ * <p>
+ * {@link HttpURLConnection} keeps idle sockets in a pool keyed by host and
+ * port, so consecutive requests to the same authority (status, playlist,
+ * browse and album art) skip the TCP handshake. A connection is only returned
+ * to the pool if its response body was read to the end and it was not
+ * disconnected.
+ * <p>
+ * The pool reads its configuration once, when the first connection is opened,
+ * so {@link MediaServer} calls {@link #ensureConfigured()} before each
+ * request. The limits are fixed: a remote control talks to one or two servers
+ * at a time, so a few idle connections per host are plenty.
+ */
+final class ConnectionPool {
+
+    /**
+     * The maximum number of idle connections to keep per host.
+     */
+    private static final int MAX_CONNECTIONS_PER_HOST = 4;
+
+    /**
+     * The time after which an idle connection is evicted.
+     */
+    private static final long IDLE_TIMEOUT = 30 * DateUtils.SECOND_IN_MILLIS;
+
+    private static boolean sConfigured;
+
+    /**
+     * Configures the pool unless it was already configured.
+     */
+    static synchronized void ensureConfigured() {
+        if (sConfigured) {
+            return;
+        }
+        if (isKeepAliveSupported()) {
+            System.setProperty("http.keepAlive", "true");
+            System.setProperty("http.maxConnections", Integer.toString(MAX_CONNECTIONS_PER_HOST));
+            System.setProperty("http.keepAliveDuration", Long.toString(IDLE_TIMEOUT));
+        } else {
+            // Reusing a pooled connection can corrupt the next response
+            // prior to Froyo (see http://code.google.com/p/android/issues/detail?id=2939)
+            System.setProperty("http.keepAlive", "false");
+        }
+        sConfigured = true;
+    }
+
+    static boolean isKeepAliveSupported() {
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.FROYO;
+    }
+
+    private ConnectionPool() {
+    }
+}
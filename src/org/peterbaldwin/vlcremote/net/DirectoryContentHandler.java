@@ -30,8 +30,9 @@ import java.net.URLConnection;
 
 final class DirectoryContentHandler extends XmlContentHandler<Directory> {
 
-    private File createFile(Attributes attributes) {
-        String type = attributes.getValue("", "type");
+    private File createFile(Attributes attributes, StringPool pool) {
+        // Type, extension and date repeat across files, so share their values
+        String type = pool.get(attributes.getValue("", "type"));
         String sizeString = attributes.getValue("", "size");
         Long size = null;
         try {
@@ -41,27 +42,42 @@ final class DirectoryContentHandler extends XmlContentHandler<Directory> {
         } catch (NumberFormatException e) {
             // Ignore unexpected value
         }
-        String date = attributes.getValue("", "date");
+        String date = pool.get(attributes.getValue("", "date"));
+        // Only sent by newer servers, in seconds since the epoch
+        String modificationTimeString = attributes.getValue("", "modification_time");
+        Long modificationTime = null;
+        try {
+            if (modificationTimeString != null) {
+                modificationTime = Long.valueOf(Long.parseLong(modificationTimeString) * 1000);
+            }
+        } catch (NumberFormatException e) {
+            // Ignore unexpected value
+        }
         String path = attributes.getValue("", "path");
         String name = attributes.getValue("", "name");
-        String extension = attributes.getValue("", "extension");
+        String extension = pool.get(attributes.getValue("", "extension"));
         if (path != null && !path.startsWith("/")) { // Windows path
             // Work-around: Replace front-slash
             // appended by server with back-slash.
             path = path.replace('/', '\\');
         }
-        return new File(type, size, date, path, name, extension);
+        // The file classifies itself by extension here, on the loading thread,
+        // rather than each time it is shown
+        File file = new File(type, size, date, path, name, extension);
+        file.setModificationTime(modificationTime);
+        return file;
     }
 
     @Override
     public Object getContent(URLConnection connection) throws IOException {
         final Directory directory = new Directory();
+        final StringPool pool = new StringPool();
         RootElement root = new RootElement("", "root");
         Element element = root.getChild("", "element");
         element.setStartElementListener(new StartElementListener() {
             /** {@inheritDoc} */
             public void start(Attributes attributes) {
-                File file = createFile(attributes);
+                File file = createFile(attributes, pool);
                 directory.add(file);
             }
         });
@@ -0,0 +1,165 @@
+/*-
+ *  Copyright (C) 2011 Peter Baldwin
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.peterbaldwin.vlcremote.net;
+
+/**
+ * Decodes the character references in text from the VLC web interface.
+ * <p>
+ * VLC escapes metadata twice so that it can be embedded in HTML. The XML
+ * parser removes the first level of escaping, and this class removes the
+ * second in a single pass. It understands the entities that VLC emits (
+ * {@code &amp;}, {@code &lt;}, {@code &gt;}, {@code &quot;}, {@code &apos;} and
+ * {@code &nbsp;}) and decimal and hexadecimal numeric references. Anything
+ * else is copied unchanged.
+ */
+public final class EntityDecoder {
+
+    /**
+     * Longest reference that is recognized, not including the {@code &}.
+     */
+    private static final int MAX_REFERENCE_LENGTH = 10;
+
+    private EntityDecoder() {
+    }
+
+    /**
+     * Decodes the character references in {@code text}.
+     *
+     * @return the decoded text, or {@code text} itself (as a {@link String})
+     *         if it does not contain any ampersands.
+     */
+    public static String decode(CharSequence text) {
+        int length = text.length();
+        int i = indexOf(text, '&', 0, length);
+        if (i == -1) {
+            return text.toString();
+        }
+        StringBuilder builder = new StringBuilder(length);
+        builder.append(text, 0, i);
+        while (i < length) {
+            char c = text.charAt(i);
+            if (c == '&') {
+                int end = appendReference(text, i, length, builder);
+                if (end != -1) {
+                    i = end;
+                    continue;
+                }
+            }
+            builder.append(c);
+            i++;
+        }
+        return builder.toString();
+    }
+
+    private static int indexOf(CharSequence text, char c, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (text.charAt(i) == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Decodes the reference that starts at {@code start}.
+     *
+     * @return the index after the reference, or -1 if it is not a valid
+     *         reference.
+     */
+    private static int appendReference(CharSequence text, int start, int length,
+            StringBuilder builder) {
+        int limit = Math.min(length, start + MAX_REFERENCE_LENGTH + 2);
+        int semicolon = indexOf(text, ';', start + 1, limit);
+        if (semicolon == -1 || semicolon == start + 1) {
+            return -1;
+        }
+        if (text.charAt(start + 1) == '#') {
+            int codePoint = parseCodePoint(text, start + 2, semicolon);
+            if (codePoint == -1) {
+                return -1;
+            }
+            builder.appendCodePoint(codePoint);
+        } else {
+            char c = lookup(text, start + 1, semicolon);
+            if (c == 0) {
+                return -1;
+            }
+            builder.append(c);
+        }
+        return semicolon + 1;
+    }
+
+    private static int parseCodePoint(CharSequence text, int start, int end) {
+        int radix = 10;
+        if (start < end && (text.charAt(start) == 'x' || text.charAt(start) == 'X')) {
+            radix = 16;
+            start++;
+        }
+        if (start == end) {
+            return -1;
+        }
+        int codePoint = 0;
+        for (int i = start; i < end; i++) {
+            int digit = Character.digit(text.charAt(i), radix);
+            if (digit == -1) {
+                return -1;
+            }
+            codePoint = codePoint * radix + digit;
+            if (codePoint > Character.MAX_CODE_POINT) {
+                return -1;
+            }
+        }
+        return codePoint != 0 ? codePoint : -1;
+    }
+
+    private static char lookup(CharSequence text, int start, int end) {
+        switch (end - start) {
+            case 2:
+                if (matches(text, start, "lt")) {
+                    return '<';
+                } else if (matches(text, start, "gt")) {
+                    return '>';
+                }
+                break;
+            case 3:
+                if (matches(text, start, "amp")) {
+                    return '&';
+                }
+                break;
+            case 4:
+                if (matches(text, start, "quot")) {
+                    return '"';
+                } else if (matches(text, start, "apos")) {
+                    return '\'';
+                } else if (matches(text, start, "nbsp")) {
+                    return '\u00a0';
+                }
+                break;
+        }
+        return 0;
+    }
+
+    private static boolean matches(CharSequence text, int start, String name) {
+        for (int i = 0, n = name.length(); i < n; i++) {
+            if (text.charAt(start + i) != name.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
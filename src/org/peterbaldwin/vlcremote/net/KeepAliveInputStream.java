@@ -0,0 +1,63 @@
+/*-
+ *  Copyright (C) 2011 Peter Baldwin
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.peterbaldwin.vlcremote.net;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Consumes any unread bytes before closing the response body so that the
+ * underlying connection can be returned to the {@link ConnectionPool}.
+ * <p>
+ * A connection whose response body is closed before the end of the stream is
+ * discarded instead of being reused.
+ */
+final class KeepAliveInputStream extends FilterInputStream {
+
+    /**
+     * The maximum number of unread bytes to consume when closing the stream.
+     * <p>
+     * It is cheaper to open a new connection than to download a large amount
+     * of unwanted data.
+     */
+    private static final int MAX_DRAIN = 16 * 1024;
+
+    public KeepAliveInputStream(InputStream input) {
+        super(input);
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            byte[] buffer = new byte[1024];
+            int total = 0;
+            while (total < MAX_DRAIN) {
+                int read = super.read(buffer, 0, buffer.length);
+                if (read == -1) {
+                    break;
+                }
+                total += read;
+            }
+        } catch (IOException e) {
+            // The connection will not be reused
+        } finally {
+            super.close();
+        }
+    }
+}
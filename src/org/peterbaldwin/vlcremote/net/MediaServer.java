@@ -30,13 +30,11 @@ import org.peterbaldwin.vlcremote.model.Remote;
 import org.peterbaldwin.vlcremote.model.Status;
 import org.peterbaldwin.vlcremote.service.StatusService;
 
-import android.app.AlarmManager;
 import android.app.PendingIntent;
 import android.content.Context;
 import android.content.Intent;
 import android.graphics.Bitmap;
 import android.net.Uri;
-import android.os.SystemClock;
 import android.util.Log;
 
 import java.io.IOException;
@@ -93,12 +91,17 @@ public final class MediaServer {
         return new ImageRequest(mContext, mAuthority);
     }
 
-    static class Request {
+    /**
+     * Cancels any delayed commands that have not been sent to this server.
+     */
+    public void cancelDelayedCommands() {
+        Intent intent = new Intent(Intents.ACTION_CANCEL);
+        intent.setClass(mContext, StatusService.class);
+        intent.setData(Uri.parse("http://" + mAuthority));
+        mContext.startService(intent);
+    }
 
-        /**
-         * Time to wait between network requests when sending multiple commands.
-         */
-        protected static final int DELAY = 500;
+    static class Request {
 
         private final Context mContext;
 
@@ -108,8 +111,6 @@ public final class MediaServer {
 
         protected boolean mNotifyPlaylist;
 
-        protected long mDelay;
-
         protected Request(Context context, String authority, String path) {
             mContext = context;
             mUri = Uri.parse("http://" + authority + path);
@@ -129,28 +130,35 @@ public final class MediaServer {
             return intent;
         }
 
+        protected final Context getContext() {
+            return mContext;
+        }
+
+        protected final Uri getUri() {
+            return mUri;
+        }
+
         protected final PendingIntent pending(Intent intent) {
             return PendingIntent.getService(mContext, 0, intent, 0);
         }
 
         protected final void start(Intent intent) {
-            if (mDelay == 0L) {
-                mContext.startService(intent);
-            } else {
-                Object service = mContext.getSystemService(Context.ALARM_SERVICE);
-                AlarmManager manager = (AlarmManager) service;
-                long triggerAtTime = SystemClock.elapsedRealtime() + mDelay;
-                int requestCode = (int) triggerAtTime;
-                int flags = 0;
-                PendingIntent op = PendingIntent.getService(mContext, requestCode, intent, flags);
-                manager.set(AlarmManager.ELAPSED_REALTIME, triggerAtTime, op);
-            }
+            // Chained commands are queued by the service
+            mContext.startService(intent);
         }
 
         protected final void execute(String encodedQuery) {
             start(intent(encodedQuery));
         }
 
+        /**
+         * Sends any further commands made with this request after the
+         * previous command has completed.
+         */
+        protected final void chain() {
+            mFlags |= Intents.FLAG_AFTER_PREVIOUS;
+        }
+
         protected final <T> Remote<T> load(ContentHandler handler) {
             String spec = mUri.toString();
             try {
@@ -162,11 +170,19 @@ public final class MediaServer {
             }
         }
 
+        /**
+         * Sets any additional request headers before the request is sent.
+         */
+        protected void addRequestProperties(HttpURLConnection http) {
+        }
+
         @SuppressWarnings("unchecked")
         protected final <T> T read(ContentHandler handler) throws IOException {
+            ConnectionPool.ensureConfigured();
             String spec = mUri.toString();
             URL url = new URL(spec);
             HttpURLConnection http = (HttpURLConnection) url.openConnection();
+            boolean reusable = false;
             try {
                 String password = PasswordManager.get(mContext).getPassword(mUri.getAuthority());
                 if (password != null) {
@@ -174,14 +190,25 @@ public final class MediaServer {
                     Header authorization = BasicScheme.authenticate(credentials, HTTP.UTF_8, false);
                     http.setRequestProperty(authorization.getName(), authorization.getValue());
                 }
+                addRequestProperties(http);
                 int responseCode = http.getResponseCode();
                 String responseMessage = http.getResponseMessage();
-                if (responseCode != HttpURLConnection.HTTP_OK) {
+                // Only conditional requests get a 304 response, and their
+                // content handlers expect it
+                if (responseCode != HttpURLConnection.HTTP_OK
+                        && responseCode != HttpURLConnection.HTTP_NOT_MODIFIED) {
                     throw new HttpResponseException(responseCode, responseMessage);
                 }
-                return (T) handler.getContent(http);
+                T content = (T) handler.getContent(http);
+                reusable = true;
+                return content;
             } finally {
-                http.disconnect();
+                if (!reusable) {
+                    // Don't return a connection in an unknown state to the
+                    // pool. Otherwise, leave it open so that the next request
+                    // to this server can reuse it.
+                    http.disconnect();
+                }
             }
         }
     }
@@ -235,6 +262,15 @@ public final class MediaServer {
             return this;
         }
 
+        /**
+         * Suppresses the status broadcast if nothing has changed since the
+         * last broadcast.
+         */
+        public StatusRequest onlyIfChanged() {
+            mFlags |= Intents.FLAG_ONLY_IF_CHANGED;
+            return this;
+        }
+
         public StatusRequest setResumeOnIdle() {
             mFlags |= Intents.FLAG_SET_RESUME_ON_IDLE;
             return this;
@@ -338,13 +374,13 @@ public final class MediaServer {
 
                 public PlaybackInterface loop() {
                     execute("command=pl_loop");
-                    mDelay += DELAY;
+                    chain();
                     return this;
                 }
 
                 public PlaybackInterface repeat() {
                     execute("command=pl_repeat");
-                    mDelay += DELAY;
+                    chain();
                     return this;
                 }
 
@@ -396,12 +432,105 @@ public final class MediaServer {
 
     public static final class PlaylistRequest extends Request {
 
+        /**
+         * Only the full playlist is cached, not search results.
+         */
+        private final boolean mCacheable;
+
+        /**
+         * Validators of the cached playlist, sent with the request so that
+         * the server can reply that the playlist has not changed.
+         */
+        private PlaylistCache.Validators mCachedValidators;
+
         PlaylistRequest(Context context, String authority, String search) {
             super(context, authority, "/requests/playlist.xml?search=" + Uri.encode(search));
+            mCacheable = (search.length() == 0);
+        }
+
+        /**
+         * Reads the playlist that was saved the last time the playlist was
+         * loaded from this server.
+         *
+         * @return the saved playlist, or {@code null} if there isn't one.
+         */
+        public Playlist readCached() {
+            if (mCacheable) {
+                PlaylistCache cache = new PlaylistCache(getContext());
+                return cache.read(getUri().getAuthority());
+            } else {
+                return null;
+            }
         }
 
         public Remote<Playlist> load() {
-            return load(new PlaylistContentHandler());
+            return load((ProgressListener) null);
+        }
+
+        /**
+         * Loads the playlist, passing the tracks that have been read so far
+         * to {@code listener} at regular intervals.
+         * <p>
+         * The full playlist is saved so that it can be shown by
+         * {@link #readCached()} the next time, and is only downloaded again
+         * if the server reports that it has changed.
+         */
+        public Remote<Playlist> load(ProgressListener listener) {
+            if (mCacheable) {
+                PlaylistCache cache = new PlaylistCache(getContext());
+                String authority = getUri().getAuthority();
+                return load(listener, cache, cache.readValidators(authority));
+            } else {
+                return load(new PlaylistContentHandler(listener));
+            }
+        }
+
+        private Remote<Playlist> load(ProgressListener listener, PlaylistCache cache,
+                PlaylistCache.Validators cachedValidators) {
+            String authority = getUri().getAuthority();
+            mCachedValidators = cachedValidators;
+            PlaylistContentHandler handler = new PlaylistContentHandler(listener);
+            Remote<Playlist> remote = load(handler);
+            if (remote.error != null) {
+                return remote;
+            }
+            if (handler.isNotModified()) {
+                Playlist playlist = cache.read(authority);
+                if (playlist != null) {
+                    return Remote.data(playlist);
+                } else {
+                    // The cached playlist has gone; load it unconditionally
+                    return load(listener, cache, null);
+                }
+            }
+            PlaylistCache.Validators validators = handler.getValidators();
+            if (cachedValidators == null || !cachedValidators.isSameContent(validators)) {
+                cache.write(authority, validators, remote.data);
+            }
+            return remote;
+        }
+
+        @Override
+        protected void addRequestProperties(HttpURLConnection http) {
+            if (mCachedValidators != null) {
+                if (mCachedValidators.etag != null) {
+                    http.setRequestProperty("If-None-Match", mCachedValidators.etag);
+                }
+                if (mCachedValidators.lastModified != null) {
+                    http.setRequestProperty("If-Modified-Since", mCachedValidators.lastModified);
+                }
+            }
+        }
+
+        /**
+         * Receives partial playlists while a playlist is being read.
+         */
+        public interface ProgressListener {
+            /**
+             * Called on the loading thread with a copy of the tracks that have
+             * been read since the previous call.
+             */
+            void onProgress(Playlist playlist);
         }
     }
 
@@ -0,0 +1,214 @@
+/*-
+ *  Copyright (C) 2011 Peter Baldwin
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.peterbaldwin.vlcremote.net;
+
+import org.peterbaldwin.vlcremote.model.Playlist;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Keeps the last playlist read from each server on disk, so that it can be
+ * shown immediately the next time the app starts.
+ * <p>
+ * Each entry also records how to tell whether the playlist has changed: the
+ * {@code ETag} and {@code Last-Modified} headers, if the server sent them,
+ * and a hash of the response body.
+ */
+final class PlaylistCache {
+
+    private static final String TAG = "PlaylistCache";
+
+    private static final String DIRECTORY = "playlists";
+
+    private static final int MAGIC = 0x564c4350; // "VLCP"
+
+    private static final int BUFFER_SIZE = 8 * 1024;
+
+    /**
+     * How to tell whether a playlist has changed since it was cached.
+     */
+    static final class Validators {
+        public final String etag;
+
+        public final String lastModified;
+
+        /**
+         * Hash of the response body, or {@code null}.
+         */
+        public final byte[] hash;
+
+        public Validators(String etag, String lastModified, byte[] hash) {
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.hash = hash;
+        }
+
+        /**
+         * Returns {@code true} if a response with these validators has the same
+         * content as a response with {@code other}.
+         */
+        public boolean isSameContent(Validators other) {
+            return hash != null && Arrays.equals(hash, other.hash);
+        }
+    }
+
+    private final File mDirectory;
+
+    public PlaylistCache(Context context) {
+        mDirectory = new File(context.getCacheDir(), DIRECTORY);
+    }
+
+    private File getFile(String authority) {
+        // Authorities are host:port, which is safe apart from the colon
+        return new File(mDirectory, authority.replace(':', '_'));
+    }
+
+    /**
+     * Reads the validators of the cached playlist.
+     *
+     * @return the validators, or {@code null} if there is no cached playlist.
+     */
+    public Validators readValidators(String authority) {
+        DataInputStream in = open(authority);
+        if (in == null) {
+            return null;
+        }
+        try {
+            return readHeader(in);
+        } catch (IOException e) {
+            Log.w(TAG, "Unable to read cached playlist", e);
+            return null;
+        } finally {
+            close(in);
+        }
+    }
+
+    /**
+     * Reads the cached playlist.
+     *
+     * @return the playlist, or {@code null} if there is no cached playlist.
+     */
+    public Playlist read(String authority) {
+        DataInputStream in = open(authority);
+        if (in == null) {
+            return null;
+        }
+        try {
+            readHeader(in);
+            return Playlist.read(in);
+        } catch (IOException e) {
+            Log.w(TAG, "Unable to read cached playlist", e);
+            return null;
+        } finally {
+            close(in);
+        }
+    }
+
+    /**
+     * Replaces the cached playlist.
+     */
+    public void write(String authority, Validators validators, Playlist playlist) {
+        if (!mDirectory.isDirectory() && !mDirectory.mkdirs()) {
+            Log.w(TAG, "Unable to create " + mDirectory);
+            return;
+        }
+        File file = getFile(authority);
+        // Write to a temporary file so that a reader never sees a partial
+        // playlist.
+        File temp = new File(mDirectory, file.getName() + ".tmp");
+        try {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                    new FileOutputStream(temp), BUFFER_SIZE));
+            try {
+                out.writeInt(MAGIC);
+                writeString(out, validators.etag);
+                writeString(out, validators.lastModified);
+                if (validators.hash != null) {
+                    out.writeInt(validators.hash.length);
+                    out.write(validators.hash);
+                } else {
+                    out.writeInt(-1);
+                }
+                playlist.write(out);
+            } finally {
+                out.close();
+            }
+            if (!temp.renameTo(file)) {
+                throw new IOException("Unable to rename " + temp);
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Unable to write cached playlist", e);
+            temp.delete();
+        }
+    }
+
+    private DataInputStream open(String authority) {
+        try {
+            return new DataInputStream(new BufferedInputStream(new FileInputStream(
+                    getFile(authority)), BUFFER_SIZE));
+        } catch (FileNotFoundException e) {
+            return null;
+        }
+    }
+
+    private static Validators readHeader(DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a cached playlist");
+        }
+        String etag = readString(in);
+        String lastModified = readString(in);
+        byte[] hash = null;
+        int hashLength = in.readInt();
+        if (hashLength >= 0) {
+            hash = new byte[hashLength];
+            in.readFully(hash);
+        }
+        return new Validators(etag, lastModified, hash);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static void close(DataInputStream in) {
+        try {
+            in.close();
+        } catch (IOException e) {
+            // Ignore
+        }
+    }
+}
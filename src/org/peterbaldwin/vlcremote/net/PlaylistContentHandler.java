@@ -19,16 +19,19 @@ package org.peterbaldwin.vlcremote.net;
 
 import org.peterbaldwin.vlcremote.model.Playlist;
 import org.peterbaldwin.vlcremote.model.Track;
+import org.peterbaldwin.vlcremote.net.MediaServer.PlaylistRequest.ProgressListener;
 import org.xml.sax.Attributes;
 import org.xml.sax.ContentHandler;
 import org.xml.sax.Locator;
 import org.xml.sax.SAXException;
 
-import android.text.Html;
-
 import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
 import java.net.URLConnection;
-import java.util.Stack;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 
 final class PlaylistContentHandler extends XmlContentHandler<Playlist> implements ContentHandler {
 
@@ -38,23 +41,50 @@ final class PlaylistContentHandler extends XmlContentHandler<Playlist> implement
             "track_id"
     };
 
-    private static final Playlist EMPTY_PLAYLIST = new Playlist(1, "Undefined");
+    /**
+     * Number of tracks to read between progress updates.
+     */
+    private static final int CHUNK_SIZE = 500;
 
-    private final Stack<Playlist> mNodeStack;
+    /**
+     * Number of open node elements.
+     */
+    private int mDepth;
 
     private final StringBuilder mBuilder;
 
+    private final StringPool mPool;
+
     private Playlist mRoot;
 
     private boolean mCapture = false;
 
     private Track mTrack;
 
-    private boolean mFlatten = true;
+    private boolean mSkipTrack;
+
+    private final ProgressListener mListener;
+
+    private int mTrackCount;
+
+    /**
+     * The number of rows of {@link #mRoot} that have been passed to
+     * {@link #mListener}.
+     */
+    private int mPublishedCount;
 
-    public PlaylistContentHandler() {
-        mNodeStack = new Stack<Playlist>();
+    private boolean mNotModified;
+
+    private PlaylistCache.Validators mValidators;
+
+    /**
+     * @param listener receives the tracks read every {@link #CHUNK_SIZE}
+     *            tracks, or {@code null}.
+     */
+    public PlaylistContentHandler(ProgressListener listener) {
         mBuilder = new StringBuilder();
+        mPool = new StringPool();
+        mListener = listener;
     }
 
     /** {@inheritDoc} */
@@ -62,84 +92,99 @@ final class PlaylistContentHandler extends XmlContentHandler<Playlist> implement
             throws SAXException {
         if ("leaf".equals(localName)) {
             mTrack = createTrack(attributes);
-            if ("vlc://nop".equals(attributes.getValue("uri"))) {
-                // Don't include nop tracks in the output
-            } else {
-                if (mFlatten) {
-                    mRoot.add(mTrack);
-                } else {
-                    mNodeStack.peek().add(mTrack);
-                }
-            }
+            // Don't include nop tracks in the output
+            mSkipTrack = "vlc://nop".equals(attributes.getValue("uri"));
         } else if ("node".equals(localName)) {
-            Playlist playlist = createPlaylist(attributes);
-            if (mNodeStack.isEmpty()) {
-                mRoot = playlist;
-            } else if (!mFlatten) {
-                mNodeStack.peek().add(playlist);
+            // Nested nodes are flattened into the root playlist
+            if (mDepth == 0) {
+                mRoot = createPlaylist(attributes);
             }
-            mNodeStack.push(playlist);
+            mDepth++;
         } else if (mTrack != null && isTextElement(localName)) {
             mBuilder.setLength(0);
             mCapture = true;
         }
     }
 
-    private static String unescape(CharSequence text) {
-        // TODO: Do this more efficiently
-        return Html.fromHtml(text.toString()).toString();
+    private String getText() {
+        if (mBuilder.length() == 0) {
+            return null;
+        } else {
+            // Text is escaped twice so that it can be used in HTML.
+            return EntityDecoder.decode(mBuilder);
+        }
     }
 
-    private String getText() {
+    /**
+     * Returns the text of an element that is likely to have the same value
+     * in many tracks (e.g. artist or album).
+     */
+    private String getSharedText() {
         if (mBuilder.length() == 0) {
             return null;
+        } else if (indexOf(mBuilder, '&') == -1) {
+            // Look up the value without creating a String
+            return mPool.get(mBuilder);
         } else {
-            if (mBuilder.indexOf("&") != -1) {
-                // Text is escaped twice so that it can be used in HTML.
-                return unescape(mBuilder);
-            } else {
-                return mBuilder.toString();
+            return mPool.get(EntityDecoder.decode(mBuilder));
+        }
+    }
+
+    private static int indexOf(CharSequence text, char c) {
+        for (int i = 0, n = text.length(); i < n; i++) {
+            if (text.charAt(i) == c) {
+                return i;
             }
         }
+        return -1;
     }
 
     /** {@inheritDoc} */
     public void endElement(String uri, String localName, String name) throws SAXException {
         if ("node".equals(localName)) {
-            mNodeStack.pop();
+            mDepth--;
         } else if ("leaf".equals(localName)) {
+            if (!mSkipTrack) {
+                // Tracks are copied into the playlist columns once all of
+                // their metadata has been read
+                mRoot.add(mTrack);
+            }
             mTrack = null;
+            mTrackCount++;
+            if (mListener != null && mTrackCount % CHUNK_SIZE == 0) {
+                publishProgress();
+            }
         } else if (mTrack != null) {
             if ("title".equals(localName)) {
                 mTrack.setTitle(getText());
             } else if ("artist".equals(localName)) {
-                mTrack.setArtist(getText());
+                mTrack.setArtist(getSharedText());
             } else if ("genre".equals(localName)) {
-                mTrack.setGenre(getText());
+                mTrack.setGenre(getSharedText());
             } else if ("copyright".equals(localName)) {
-                mTrack.setCopyright(getText());
+                mTrack.setCopyright(getSharedText());
             } else if ("album".equals(localName)) {
-                mTrack.setAlbum(getText());
+                mTrack.setAlbum(getSharedText());
             } else if ("track".equals(localName)) {
-                mTrack.setTrack(getText());
+                mTrack.setTrack(getSharedText());
             } else if ("description".equals(localName)) {
                 mTrack.setDescription(getText());
             } else if ("rating".equals(localName)) {
-                mTrack.setRating(getText());
+                mTrack.setRating(getSharedText());
             } else if ("date".equals(localName)) {
-                mTrack.setDate(getText());
+                mTrack.setDate(getSharedText());
             } else if ("url".equals(localName)) {
                 mTrack.setUrl(getText());
             } else if ("language".equals(localName)) {
-                mTrack.setLanguage(getText());
+                mTrack.setLanguage(getSharedText());
             } else if ("now_playing".equals(localName)) {
                 mTrack.setNowPlaying(getText());
             } else if ("publisher".equals(localName)) {
-                mTrack.setPublisher(getText());
+                mTrack.setPublisher(getSharedText());
             } else if ("encoded_by".equals(localName)) {
-                mTrack.setEncodedBy(getText());
+                mTrack.setEncodedBy(getSharedText());
             } else if ("art_url".equals(localName)) {
-                mTrack.setArtUrl(getText());
+                mTrack.setArtUrl(getSharedText());
             } else if ("track_id".equals(localName)) {
                 mTrack.setTrackId(getText());
             }
@@ -147,6 +192,16 @@ final class PlaylistContentHandler extends XmlContentHandler<Playlist> implement
         mCapture = false;
     }
 
+    private void publishProgress() {
+        // The listener gets a copy because parsing continues on this thread.
+        // Only complete tracks that have not been passed before are
+        // included, so the total cost of the copies grows linearly with the
+        // size of the playlist.
+        int count = mRoot.size();
+        mListener.onProgress(mRoot.copyOfRange(mPublishedCount, count));
+        mPublishedCount = count;
+    }
+
     private static boolean isTextElement(String localName) {
         for (int i = 0; i < TEXT_ELEMENTS.length; i++) {
             if (TEXT_ELEMENTS[i].equals(localName)) {
@@ -165,7 +220,10 @@ final class PlaylistContentHandler extends XmlContentHandler<Playlist> implement
 
     /** {@inheritDoc} */
     public void endDocument() throws SAXException {
-
+        if (mRoot != null) {
+            // No more rows will be added
+            mRoot.compact();
+        }
     }
 
     /** {@inheritDoc} */
@@ -223,9 +281,64 @@ final class PlaylistContentHandler extends XmlContentHandler<Playlist> implement
         return track;
     }
 
+    /**
+     * Returns {@code true} if the server replied to a conditional request
+     * that the playlist has not changed.
+     */
+    public boolean isNotModified() {
+        return mNotModified;
+    }
+
+    /**
+     * Returns the validators of the response that was read.
+     */
+    public PlaylistCache.Validators getValidators() {
+        return mValidators;
+    }
+
     @Override
     public Object getContent(URLConnection connection) throws IOException {
-        parse(connection, this);
-        return (mRoot != null) ? mRoot : EMPTY_PLAYLIST;
+        HttpURLConnection http = (HttpURLConnection) connection;
+        if (http.getResponseCode() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+            mNotModified = true;
+            return null;
+        }
+        // Hash the response for servers that don't send validators
+        MessageDigest digest = createDigest();
+        InputStream input = new KeepAliveInputStream(connection.getInputStream());
+        if (digest != null) {
+            input = new DigestInputStream(input, digest);
+        }
+        try {
+            parse(input, this);
+        } finally {
+            input.close();
+        }
+        String etag = connection.getHeaderField("ETag");
+        String lastModified = connection.getHeaderField("Last-Modified");
+        byte[] hash = (digest != null) ? digest.digest() : null;
+        mValidators = new PlaylistCache.Validators(etag, lastModified, hash);
+        return getPlaylist();
+    }
+
+    /**
+     * Returns the playlist that was read, or a new empty playlist. Callers
+     * may modify the result, so it is never shared.
+     */
+    private Playlist getPlaylist() {
+        return (mRoot != null) ? mRoot : new Playlist(1, "Undefined");
+    }
+
+    private static MessageDigest createDigest() {
+        try {
+            return MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            return null;
+        }
+    }
+
+    Playlist parse(InputStream input) throws IOException {
+        parse(input, this);
+        return getPlaylist();
     }
 }
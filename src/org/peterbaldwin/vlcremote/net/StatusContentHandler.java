@@ -19,260 +19,451 @@ package org.peterbaldwin.vlcremote.net;
 
 import org.peterbaldwin.vlcremote.model.Status;
 import org.peterbaldwin.vlcremote.model.Track;
-import org.xml.sax.Attributes;
-import org.xml.sax.ContentHandler;
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
 
-import android.sax.Element;
-import android.sax.ElementListener;
-import android.sax.EndTextElementListener;
-import android.sax.RootElement;
-import android.sax.TextElementListener;
-import android.text.Html;
+import android.util.Xml;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URLConnection;
+import java.util.HashMap;
+import java.util.Map;
 
+/**
+ * Reads {@code status.xml} with a pull parser.
+ * <p>
+ * Element names are mapped to integer constants once, and numbers are parsed
+ * directly from the parser's character buffer, so the only objects allocated
+ * for a status are the {@link Status} itself and its metadata strings.
+ */
 final class StatusContentHandler extends XmlContentHandler<Status> {
-    private static String unescape(String text) {
-        // The response text is escaped twice so that it can be used in HTML.
-        if (text.indexOf("&") != -1) {
-            // TODO: Use more efficient unescaping
-            return Html.fromHtml(text.toString()).toString();
-        } else {
-            return text;
-        }
+
+    private static final int UNKNOWN = 0;
+    private static final int ROOT = 1;
+    private static final int VOLUME = 2;
+    private static final int LENGTH = 3;
+    private static final int TIME = 4;
+    private static final int STATE = 5;
+    private static final int POSITION = 6;
+    private static final int FULLSCREEN = 7;
+    private static final int RANDOM = 8;
+    private static final int LOOP = 9;
+    private static final int REPEAT = 10;
+    private static final int INFORMATION = 11;
+    private static final int META_INFORMATION = 12;
+    private static final int CATEGORY = 13;
+    private static final int INFO = 14;
+    private static final int TITLE = 15;
+    private static final int ARTIST = 16;
+    private static final int GENRE = 17;
+    private static final int COPYRIGHT = 18;
+    private static final int ALBUM = 19;
+    private static final int TRACK = 20;
+    private static final int DESCRIPTION = 21;
+    private static final int RATING = 22;
+    private static final int DATE = 23;
+    private static final int URL = 24;
+    private static final int LANGUAGE = 25;
+    private static final int NOW_PLAYING = 26;
+    private static final int PUBLISHER = 27;
+    private static final int ENCODED_BY = 28;
+    private static final int ART_URL = 29;
+    private static final int TRACK_ID = 30;
+    private static final int CURRENTPLID = 31;
+
+    private static final Map<String, Integer> sElements = new HashMap<String, Integer>();
+
+    static {
+        sElements.put("root", ROOT);
+        sElements.put("volume", VOLUME);
+        sElements.put("length", LENGTH);
+        sElements.put("time", TIME);
+        sElements.put("state", STATE);
+        sElements.put("position", POSITION);
+        sElements.put("fullscreen", FULLSCREEN);
+        sElements.put("random", RANDOM);
+        sElements.put("loop", LOOP);
+        sElements.put("repeat", REPEAT);
+        sElements.put("information", INFORMATION);
+        sElements.put("meta-information", META_INFORMATION);
+        sElements.put("category", CATEGORY);
+        sElements.put("info", INFO);
+        sElements.put("title", TITLE);
+        sElements.put("artist", ARTIST);
+        sElements.put("genre", GENRE);
+        sElements.put("copyright", COPYRIGHT);
+        sElements.put("album", ALBUM);
+        sElements.put("track", TRACK);
+        sElements.put("description", DESCRIPTION);
+        sElements.put("rating", RATING);
+        sElements.put("date", DATE);
+        sElements.put("url", URL);
+        sElements.put("language", LANGUAGE);
+        sElements.put("now_playing", NOW_PLAYING);
+        sElements.put("publisher", PUBLISHER);
+        sElements.put("encoded_by", ENCODED_BY);
+        sElements.put("art_url", ART_URL);
+        sElements.put("track_id", TRACK_ID);
+        sElements.put("currentplid", CURRENTPLID);
     }
 
-    private static boolean parseBoolean(String text) {
-        try {
-            // Booleans are represented as integers in VLC 1.0
-            return Integer.parseInt(text) != 0;
-        } catch (NumberFormatException e) {
-            // Booleans are represented as strings in VLC 1.1
-            return Boolean.parseBoolean(text);
+    /**
+     * Exact powers of ten, for converting decimal digits to a double.
+     */
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14,
+            1e15, 1e16, 1e17, 1e18
+    };
+
+    /**
+     * Largest integer that a double can represent exactly.
+     */
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+
+    /**
+     * Elements deeper than this are ignored.
+     */
+    private static final int MAX_DEPTH = 16;
+
+    /**
+     * Status requests are made from a small number of threads, so each thread
+     * keeps its own parser.
+     */
+    private static final ThreadLocal<XmlPullParser> sParser = new ThreadLocal<XmlPullParser>() {
+        @Override
+        protected XmlPullParser initialValue() {
+            return Xml.newPullParser();
         }
+    };
+
+    private static String unescape(String text) {
+        // The response text is escaped twice so that it can be used in HTML.
+        return EntityDecoder.decode(text);
     }
 
-    private Status mStatus = new Status();
+    private final Status mStatus = new Status();
 
-    private Track mTrack = mStatus.getTrack();
+    private final Track mTrack = mStatus.getTrack();
 
-    private String mCategoryName;
+    /**
+     * The element at each depth of the current path.
+     */
+    private final int[] mPath = new int[MAX_DEPTH + 1];
 
-    private String mInfoName;
+    /**
+     * Receives the start and length of the text in the parser's buffer.
+     */
+    private final int[] mHolder = new int[2];
 
-    public ContentHandler getContentHandler() {
-        RootElement root = new RootElement("", "root");
-        root.getChild("", "volume").setEndTextElementListener(new EndTextElementListener() {
-            /** {@inheritDoc} */
-            public void end(String body) {
-                int volume = Integer.parseInt(body);
-                mStatus.setVolume(volume);
-            }
-        });
-        root.getChild("", "length").setEndTextElementListener(new EndTextElementListener() {
-            /** {@inheritDoc} */
-            public void end(String body) {
-                int length = Integer.parseInt(body);
-                mStatus.setLength(length);
-            }
-        });
-        root.getChild("", "time").setEndTextElementListener(new EndTextElementListener() {
-            /** {@inheritDoc} */
-            public void end(String body) {
-                int time = Integer.parseInt(body);
-                mStatus.setTime(time);
-            }
-        });
-        root.getChild("", "state").setEndTextElementListener(new EndTextElementListener() {
-            /** {@inheritDoc} */
-            public void end(String body) {
-                mStatus.setState(body);
-            }
-        });
-        root.getChild("", "position").setEndTextElementListener(new EndTextElementListener() {
-            /** {@inheritDoc} */
-            public void end(String body) {
-                double position = Double.parseDouble(body);
-                mStatus.setPosition(position);
-            }
-        });
+    private boolean mMetaCategory;
 
-        root.getChild("", "fullscreen").setEndTextElementListener(new EndTextElementListener() {
-            /** {@inheritDoc} */
-            public void end(String body) {
-                boolean fullscreen = parseBoolean(body);
-                mStatus.setFullscreen(fullscreen);
-            }
-        });
-        root.getChild("", "random").setEndTextElementListener(new EndTextElementListener() {
-            /** {@inheritDoc} */
-            public void end(String body) {
-                boolean random = parseBoolean(body);
-                mStatus.setRandom(random);
-            }
-        });
-        root.getChild("", "loop").setEndTextElementListener(new EndTextElementListener() {
-            /** {@inheritDoc} */
-            public void end(String body) {
-                boolean loop = parseBoolean(body);
-                mStatus.setLoop(loop);
-            }
-        });
-        root.getChild("", "repeat").setEndTextElementListener(new EndTextElementListener() {
-            /** {@inheritDoc} */
-            public void end(String body) {
-                boolean repeat = parseBoolean(body);
-                mStatus.setRepeat(repeat);
-            }
-        });
-        Element information = root.getChild("", "information");
-        Element meta = information.getChild("", "meta-information");
-        meta.getChild("", "title").setEndTextElementListener(new EndTextElementListener() {
-            /** {@inheritDoc} */
-            public void end(String body) {
-                mTrack.setTitle(unescape(body));
-            }
-        });
-        meta.getChild("", "artist").setEndTextElementListener(new EndTextElementListener() {
-            /** {@inheritDoc} */
-            public void end(String body) {
-                mTrack.setArtist(unescape(body));
-            }
-        });
-        meta.getChild("", "genre").setEndTextElementListener(new EndTextElementListener() {
-            /** {@inheritDoc} */
-            public void end(String body) {
-                mTrack.setGenre(unescape(body));
-            }
-        });
-        meta.getChild("", "copyright").setEndTextElementListener(new EndTextElementListener() {
-            /** {@inheritDoc} */
-            public void end(String body) {
-                mTrack.setCopyright(unescape(body));
-            }
-        });
-        meta.getChild("", "album").setEndTextElementListener(new EndTextElementListener() {
-            /** {@inheritDoc} */
-            public void end(String body) {
-                mTrack.setAlbum(unescape(body));
-            }
-        });
-        meta.getChild("", "track").setEndTextElementListener(new EndTextElementListener() {
-            /** {@inheritDoc} */
-            public void end(String body) {
-                mTrack.setTrack(unescape(body));
-            }
-        });
-        meta.getChild("", "description").setEndTextElementListener(new EndTextElementListener() {
-            /** {@inheritDoc} */
-            public void end(String body) {
-                mTrack.setDescription(unescape(body));
-            }
-        });
-        meta.getChild("", "rating").setEndTextElementListener(new EndTextElementListener() {
-            /** {@inheritDoc} */
-            public void end(String body) {
-                mTrack.setRating(unescape(body));
-            }
-        });
-        meta.getChild("", "date").setEndTextElementListener(new EndTextElementListener() {
-            /** {@inheritDoc} */
-            public void end(String body) {
-                mTrack.setDate(unescape(body));
-            }
-        });
-        meta.getChild("", "url").setEndTextElementListener(new EndTextElementListener() {
-            /** {@inheritDoc} */
-            public void end(String body) {
-                mTrack.setUrl(unescape(body));
-            }
-        });
-        meta.getChild("", "language").setEndTextElementListener(new EndTextElementListener() {
-            /** {@inheritDoc} */
-            public void end(String body) {
-                mTrack.setLanguage(unescape(body));
-            }
-        });
-        meta.getChild("", "now_playing").setEndTextElementListener(new EndTextElementListener() {
-            /** {@inheritDoc} */
-            public void end(String body) {
-                mTrack.setNowPlaying(unescape(body));
-            }
-        });
-        meta.getChild("", "publisher").setEndTextElementListener(new EndTextElementListener() {
-            /** {@inheritDoc} */
-            public void end(String body) {
-                mTrack.setPublisher(unescape(body));
+    @Override
+    public Object getContent(URLConnection connection) throws IOException {
+        InputStream input = new KeepAliveInputStream(connection.getInputStream());
+        try {
+            return parse(input);
+        } finally {
+            input.close();
+        }
+    }
+
+    Status parse(InputStream input) throws IOException {
+        try {
+            XmlPullParser parser = sParser.get();
+            // The server sends UTF-8 instead of the HTTP default (ISO-8859-1).
+            parser.setInput(input, "UTF-8");
+            try {
+                parse(parser);
+            } finally {
+                // Don't hold on to the stream until the next request
+                parser.setInput(null);
             }
-        });
-        meta.getChild("", "encoded_by").setEndTextElementListener(new EndTextElementListener() {
-            /** {@inheritDoc} */
-            public void end(String body) {
-                mTrack.setEncodedBy(unescape(body));
+            return mStatus;
+        } catch (XmlPullParserException e) {
+            IOException ioe = new IOException("Invalid XML");
+            ioe.initCause(e);
+            throw ioe;
+        } catch (RuntimeException e) {
+            IOException ioe = new IOException("Invalid XML");
+            ioe.initCause(e);
+            throw ioe;
+        }
+    }
+
+    private void parse(XmlPullParser parser) throws XmlPullParserException, IOException {
+        for (int event = parser.next(); event != XmlPullParser.END_DOCUMENT; event = parser
+                .next()) {
+            if (event != XmlPullParser.START_TAG) {
+                continue;
             }
-        });
-        meta.getChild("", "art_url").setEndTextElementListener(new EndTextElementListener() {
-            /** {@inheritDoc} */
-            public void end(String body) {
-                mTrack.setArtUrl(unescape(body));
+            int depth = parser.getDepth();
+            if (depth > MAX_DEPTH) {
+                continue;
             }
-        });
-        meta.getChild("", "track_id").setEndTextElementListener(new EndTextElementListener() {
-            /** {@inheritDoc} */
-            public void end(String body) {
-                mTrack.setTrackId(unescape(body));
+            Integer value = sElements.get(parser.getName());
+            int element = (value != null) ? value.intValue() : UNKNOWN;
+            mPath[depth] = element;
+            int parent = mPath[depth - 1];
+            if (depth == 1) {
+                // Ignore the document if the root element is wrong
+                if (element != ROOT) {
+                    return;
+                }
+            } else if (parent == ROOT && depth == 2) {
+                startStatusElement(parser, element);
+            } else if (parent == META_INFORMATION && mPath[depth - 2] == INFORMATION) {
+                // VLC 1.0
+                startMetaElement(parser, element);
+            } else if (element == CATEGORY && parent == INFORMATION) {
+                // VLC 1.1 and later
+                String name = parser.getAttributeValue(null, "name");
+                mMetaCategory = "meta".equalsIgnoreCase(name);
+            } else if (element == INFO && parent == CATEGORY && mMetaCategory) {
+                String name = parser.getAttributeValue(null, "name");
+                startInfoElement(parser, name);
             }
-        });
+        }
+    }
 
-        // VLC 1.1
-        Element category = information.getChild("", "category");
-        category.setElementListener(new ElementListener() {
-            /** {@inheritDoc} */
-            public void start(Attributes attributes) {
-                mCategoryName = attributes.getValue("", "name");
-            }
+    private void startStatusElement(XmlPullParser parser, int element)
+            throws XmlPullParserException, IOException {
+        switch (element) {
+            case VOLUME:
+                mStatus.setVolume(readInt(parser));
+                break;
+            case LENGTH:
+                mStatus.setLength(readInt(parser));
+                break;
+            case TIME:
+                mStatus.setTime(readInt(parser));
+                break;
+            case STATE:
+                mStatus.setState(readText(parser));
+                break;
+            case POSITION:
+                mStatus.setPosition(readDouble(parser));
+                break;
+            case FULLSCREEN:
+                mStatus.setFullscreen(readBoolean(parser));
+                break;
+            case RANDOM:
+                mStatus.setRandom(readBoolean(parser));
+                break;
+            case LOOP:
+                mStatus.setLoop(readBoolean(parser));
+                break;
+            case REPEAT:
+                mStatus.setRepeat(readBoolean(parser));
+                break;
+            case CURRENTPLID:
+                // VLC 2.0 and later: the playlist id of the current track
+                mTrack.setId(readInt(parser));
+                break;
+        }
+    }
 
-            /** {@inheritDoc} */
-            public void end() {
-                mCategoryName = null;
-            }
-        });
-        Element info = category.getChild("", "info");
-        info.setTextElementListener(new TextElementListener() {
-            /** {@inheritDoc} */
-            public void start(Attributes attributes) {
-                mInfoName = attributes.getValue("", "name");
+    private void startMetaElement(XmlPullParser parser, int element)
+            throws XmlPullParserException, IOException {
+        switch (element) {
+            case TITLE:
+                mTrack.setTitle(unescape(readText(parser)));
+                break;
+            case ARTIST:
+                mTrack.setArtist(unescape(readText(parser)));
+                break;
+            case GENRE:
+                mTrack.setGenre(unescape(readText(parser)));
+                break;
+            case COPYRIGHT:
+                mTrack.setCopyright(unescape(readText(parser)));
+                break;
+            case ALBUM:
+                mTrack.setAlbum(unescape(readText(parser)));
+                break;
+            case TRACK:
+                mTrack.setTrack(unescape(readText(parser)));
+                break;
+            case DESCRIPTION:
+                mTrack.setDescription(unescape(readText(parser)));
+                break;
+            case RATING:
+                mTrack.setRating(unescape(readText(parser)));
+                break;
+            case DATE:
+                mTrack.setDate(unescape(readText(parser)));
+                break;
+            case URL:
+                mTrack.setUrl(unescape(readText(parser)));
+                break;
+            case LANGUAGE:
+                mTrack.setLanguage(unescape(readText(parser)));
+                break;
+            case NOW_PLAYING:
+                mTrack.setNowPlaying(unescape(readText(parser)));
+                break;
+            case PUBLISHER:
+                mTrack.setPublisher(unescape(readText(parser)));
+                break;
+            case ENCODED_BY:
+                mTrack.setEncodedBy(unescape(readText(parser)));
+                break;
+            case ART_URL:
+                mTrack.setArtUrl(unescape(readText(parser)));
+                break;
+            case TRACK_ID:
+                mTrack.setTrackId(unescape(readText(parser)));
+                break;
+        }
+    }
+
+    private void startInfoElement(XmlPullParser parser, String name)
+            throws XmlPullParserException, IOException {
+        if ("artist".equalsIgnoreCase(name)) {
+            mTrack.setArtist(unescape(readText(parser)));
+        } else if ("title".equalsIgnoreCase(name)) {
+            mTrack.setTitle(unescape(readText(parser)));
+        } else if ("album".equalsIgnoreCase(name)) {
+            mTrack.setAlbum(unescape(readText(parser)));
+        } else if ("genre".equalsIgnoreCase(name)) {
+            mTrack.setGenre(unescape(readText(parser)));
+        } else if ("description".equalsIgnoreCase(name)) {
+            mTrack.setDescription(unescape(readText(parser)));
+        } else if ("filename".equalsIgnoreCase(name)) {
+            mTrack.setName(unescape(readText(parser)));
+        } else if ("artwork_url".equalsIgnoreCase(name)) {
+            mTrack.setArtUrl(unescape(readText(parser)));
+        }
+    }
+
+    /**
+     * Advances the parser to the text of the current element.
+     *
+     * @return the parser's character buffer, with the start and length of the
+     *         text stored in {@link #mHolder}, or {@code null} if the element
+     *         has no text.
+     */
+    private char[] nextText(XmlPullParser parser) throws XmlPullParserException, IOException {
+        int event = parser.next();
+        if (event == XmlPullParser.TEXT) {
+            return parser.getTextCharacters(mHolder);
+        } else {
+            mHolder[0] = 0;
+            mHolder[1] = 0;
+            return null;
+        }
+    }
+
+    private String readText(XmlPullParser parser) throws XmlPullParserException, IOException {
+        char[] buffer = nextText(parser);
+        return (buffer != null) ? new String(buffer, mHolder[0], mHolder[1]) : "";
+    }
+
+    private int readInt(XmlPullParser parser) throws XmlPullParserException, IOException {
+        char[] buffer = nextText(parser);
+        if (buffer == null) {
+            throw new NumberFormatException("Empty number");
+        }
+        int start = mHolder[0];
+        int end = start + mHolder[1];
+        while (start < end && Character.isWhitespace(buffer[start])) {
+            start++;
+        }
+        while (end > start && Character.isWhitespace(buffer[end - 1])) {
+            end--;
+        }
+        boolean negative = (start < end && buffer[start] == '-');
+        int i = negative ? start + 1 : start;
+        if (i == end || end - i > 9) {
+            // Empty, or might overflow
+            return Integer.parseInt(new String(buffer, start, end - start));
+        }
+        int value = 0;
+        for (; i < end; i++) {
+            int digit = buffer[i] - '0';
+            if (digit < 0 || digit > 9) {
+                return Integer.parseInt(new String(buffer, start, end - start));
             }
+            value = value * 10 + digit;
+        }
+        return negative ? -value : value;
+    }
 
-            /** {@inheritDoc} */
-            public void end(String body) {
-                if ("meta".equalsIgnoreCase(mCategoryName)) {
-                    if ("artist".equalsIgnoreCase(mInfoName)) {
-                        mTrack.setArtist(unescape(body));
-                    } else if ("title".equalsIgnoreCase(mInfoName)) {
-                        mTrack.setTitle(unescape(body));
-                    } else if ("album".equalsIgnoreCase(mInfoName)) {
-                        mTrack.setAlbum(unescape(body));
-                    } else if ("genre".equalsIgnoreCase(mInfoName)) {
-                        mTrack.setGenre(unescape(body));
-                    } else if ("description".equalsIgnoreCase(mInfoName)) {
-                        mTrack.setDescription(unescape(body));
-                    } else if ("filename".equalsIgnoreCase(mInfoName)) {
-                        mTrack.setName(unescape(body));
-                    } else if ("artwork_url".equalsIgnoreCase(mInfoName)) {
-                        mTrack.setArtUrl(unescape(body));
-                    }
+    private double readDouble(XmlPullParser parser) throws XmlPullParserException, IOException {
+        char[] buffer = nextText(parser);
+        if (buffer == null) {
+            throw new NumberFormatException("Empty number");
+        }
+        int start = mHolder[0];
+        int end = start + mHolder[1];
+        while (start < end && Character.isWhitespace(buffer[start])) {
+            start++;
+        }
+        while (end > start && Character.isWhitespace(buffer[end - 1])) {
+            end--;
+        }
+        // Handle plain decimals like "0.4166" without creating a String. The
+        // result is exact because both the digits and the power of ten are
+        // exactly representable. Anything else uses Double.parseDouble.
+        boolean negative = (start < end && buffer[start] == '-');
+        long mantissa = 0;
+        int digits = 0;
+        int scale = -1;
+        for (int i = negative ? start + 1 : start; i < end; i++) {
+            char c = buffer[i];
+            if (c >= '0' && c <= '9') {
+                mantissa = mantissa * 10 + (c - '0');
+                digits++;
+                if (scale != -1) {
+                    scale++;
                 }
-                mInfoName = null;
+            } else if (c == '.' && scale == -1) {
+                scale = 0;
+            } else {
+                digits = -1;
+                break;
             }
-        });
-        return root.getContentHandler();
+            if (digits >= POWERS_OF_TEN.length) {
+                digits = -1;
+                break;
+            }
+        }
+        if (digits <= 0 || mantissa >= MAX_EXACT_MANTISSA) {
+            return Double.parseDouble(new String(buffer, start, end - start));
+        }
+        double value = (scale > 0) ? mantissa / POWERS_OF_TEN[scale] : mantissa;
+        return negative ? -value : value;
     }
 
-    @Override
-    public Object getContent(URLConnection connection) throws IOException {
-        parse(connection, getContentHandler());
-        return mStatus;
+    private boolean readBoolean(XmlPullParser parser) throws XmlPullParserException, IOException {
+        char[] buffer = nextText(parser);
+        if (buffer == null) {
+            return false;
+        }
+        int start = mHolder[0];
+        int end = start + mHolder[1];
+        while (start < end && Character.isWhitespace(buffer[start])) {
+            start++;
+        }
+        while (end > start && Character.isWhitespace(buffer[end - 1])) {
+            end--;
+        }
+        int length = end - start;
+        if (length == 1) {
+            // Booleans are represented as integers in VLC 1.0
+            return buffer[start] != '0';
+        } else if (length == 4) {
+            // Booleans are represented as strings in VLC 1.1
+            return (buffer[start] == 't' || buffer[start] == 'T')
+                    && (buffer[start + 1] == 'r' || buffer[start + 1] == 'R')
+                    && (buffer[start + 2] == 'u' || buffer[start + 2] == 'U')
+                    && (buffer[start + 3] == 'e' || buffer[start + 3] == 'E');
+        } else {
+            try {
+                return Integer.parseInt(new String(buffer, start, length)) != 0;
+            } catch (NumberFormatException e) {
+                return false;
+            }
+        }
     }
 }
@@ -0,0 +1,120 @@
+/*-
+ *  Copyright (C) 2011 Peter Baldwin
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.peterbaldwin.vlcremote.net;
+
+/**
+ * Shares equal strings read from a response.
+ * <p>
+ * Fields like artist, album and file type have few distinct values, so a
+ * response with thousands of items repeats each value many times. The pool
+ * returns the same {@link String} for equal character sequences, and only
+ * creates a new {@link String} when the value is not in the pool.
+ * <p>
+ * The pool is a fixed-size, direct-mapped table: a value that hashes to an
+ * occupied slot replaces the previous value. Memory use is bounded, and the
+ * worst case is a new {@link String} per value, as if there were no pool.
+ * Instances are not thread-safe; use one per parse.
+ */
+final class StringPool {
+
+    private static final int DEFAULT_CAPACITY = 512;
+
+    /**
+     * Longer values are unlikely to repeat and are not pooled.
+     */
+    private static final int MAX_LENGTH = 64;
+
+    private final String[] mPool;
+
+    public StringPool() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity the number of slots, which must be a power of two.
+     */
+    public StringPool(int capacity) {
+        if (capacity <= 0 || (capacity & (capacity - 1)) != 0) {
+            throw new IllegalArgumentException("Capacity must be a power of two: " + capacity);
+        }
+        mPool = new String[capacity];
+    }
+
+    /**
+     * Returns a {@link String} equal to {@code chars}, from the pool if
+     * possible.
+     */
+    public String get(CharSequence chars) {
+        int length = chars.length();
+        if (length > MAX_LENGTH) {
+            return chars.toString();
+        }
+        int hash = 0;
+        for (int i = 0; i < length; i++) {
+            hash = 31 * hash + chars.charAt(i);
+        }
+        int index = slot(hash);
+        String pooled = mPool[index];
+        if (pooled != null && contentEquals(pooled, chars)) {
+            return pooled;
+        }
+        String value = chars.toString();
+        mPool[index] = value;
+        return value;
+    }
+
+    /**
+     * Returns a {@link String} equal to {@code value} from the pool, or adds
+     * {@code value} to the pool.
+     *
+     * @return the pooled value, {@code value} itself, or {@code null} if
+     *         {@code value} is {@code null}.
+     */
+    public String get(String value) {
+        if (value == null || value.length() > MAX_LENGTH) {
+            return value;
+        }
+        // String caches its hash code, so this doesn't rehash the value
+        int index = slot(value.hashCode());
+        String pooled = mPool[index];
+        if (pooled != null && pooled.equals(value)) {
+            return pooled;
+        }
+        mPool[index] = value;
+        return value;
+    }
+
+    private int slot(int hash) {
+        // Spread the high bits so that short strings don't collide
+        hash ^= (hash >>> 16);
+        return hash & (mPool.length - 1);
+    }
+
+    private static boolean contentEquals(String pooled, CharSequence chars) {
+        int length = chars.length();
+        if (pooled.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (pooled.charAt(i) != chars.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -34,7 +34,16 @@ abstract class XmlContentHandler<T> extends ContentHandler {
 
     protected final void parse(URLConnection connection, org.xml.sax.ContentHandler handler)
             throws IOException {
-        InputStream input = connection.getInputStream();
+        InputStream input = new KeepAliveInputStream(connection.getInputStream());
+        try {
+            parse(input, handler);
+        } finally {
+            input.close();
+        }
+    }
+
+    protected final void parse(InputStream input, org.xml.sax.ContentHandler handler)
+            throws IOException {
         try {
             // The server sends UTF-8 instead of the HTTP default (ISO-8859-1).
             Xml.Encoding encoding = Xml.Encoding.UTF_8;
@@ -43,8 +52,6 @@ abstract class XmlContentHandler<T> extends ContentHandler {
             IOException ioe = new IOException("Invalid XML");
             ioe.initCause(e);
             throw ioe;
-        } finally {
-            input.close();
         }
     }
 }
@@ -0,0 +1,84 @@
+/*-
+ *  Copyright (C) 2011 Peter Baldwin
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.peterbaldwin.vlcremote.service;
+
+import org.peterbaldwin.vlcremote.model.StatusDelta;
+
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+import android.content.ServiceConnection;
+import android.os.IBinder;
+
+/**
+ * Binds to {@link StatusService} and registers a {@link StatusListener} for
+ * as long as the connection is bound.
+ * <p>
+ * Activities and fragments should call {@link #bind()} when they are resumed
+ * and {@link #unbind()} when they are paused.
+ */
+public final class StatusConnection implements ServiceConnection {
+
+    private final Context mContext;
+
+    private final StatusListener mListener;
+
+    private final int mChanges;
+
+    private StatusService.LocalBinder mBinder;
+
+    private boolean mBound;
+
+    /**
+     * @param changes the {@link StatusDelta} categories that the listener
+     *            should be notified of.
+     */
+    public StatusConnection(Context context, StatusListener listener, int changes) {
+        mContext = context;
+        mListener = listener;
+        mChanges = changes;
+    }
+
+    public void bind() {
+        if (!mBound) {
+            Intent service = new Intent(mContext, StatusService.class);
+            mBound = mContext.bindService(service, this, Context.BIND_AUTO_CREATE);
+        }
+    }
+
+    public void unbind() {
+        if (mBinder != null) {
+            mBinder.removeStatusListener(mListener);
+            mBinder = null;
+        }
+        if (mBound) {
+            mContext.unbindService(this);
+            mBound = false;
+        }
+    }
+
+    /** {@inheritDoc} */
+    public void onServiceConnected(ComponentName name, IBinder service) {
+        mBinder = (StatusService.LocalBinder) service;
+        mBinder.addStatusListener(mListener, mChanges);
+    }
+
+    /** {@inheritDoc} */
+    public void onServiceDisconnected(ComponentName name) {
+        mBinder = null;
+    }
+}
@@ -0,0 +1,43 @@
+/*-
+ *  Copyright (C) 2011 Peter Baldwin
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.peterbaldwin.vlcremote.service;
+
+import org.peterbaldwin.vlcremote.model.Status;
+import org.peterbaldwin.vlcremote.model.StatusDelta;
+
+/**
+ * Receives status updates from a bound {@link StatusService}.
+ * <p>
+ * Callbacks are made on the main thread.
+ */
+public interface StatusListener {
+
+    /**
+     * Called when the service has read a status from the server that differs
+     * from the previous status in one of the categories the listener was
+     * registered for.
+     *
+     * @param status the new status.
+     * @param delta the categories that changed.
+     */
+    void onStatusChanged(Status status, StatusDelta delta);
+
+    /**
+     * Called when a status or command request fails.
+     */
+    void onError(Throwable error);
+}
@@ -20,12 +20,15 @@ package org.peterbaldwin.vlcremote.service;
 import org.peterbaldwin.vlcremote.intent.Intents;
 import org.peterbaldwin.vlcremote.model.Preferences;
 import org.peterbaldwin.vlcremote.model.Status;
+import org.peterbaldwin.vlcremote.model.StatusDelta;
 import org.peterbaldwin.vlcremote.net.MediaServer;
 
 import android.app.Service;
 import android.content.Intent;
 import android.graphics.Bitmap;
 import android.net.Uri;
+import android.os.Binder;
+import android.os.Bundle;
 import android.os.Handler;
 import android.os.HandlerThread;
 import android.os.IBinder;
@@ -34,10 +37,19 @@ import android.os.Message;
 import android.os.Process;
 import android.util.Log;
 
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Sends commands to a VLC server and receives &amp; broadcasts the status.
+ * <p>
+ * Components in this process should bind to the service with a
+ * {@link StatusConnection} to receive the status without the cost of
+ * serializing it into a broadcast {@link Intent}. The broadcast is still sent
+ * for the app widgets.
  */
 public class StatusService extends Service implements Handler.Callback {
 
@@ -46,6 +58,30 @@ public class StatusService extends Service implements Handler.Callback {
     private static final int HANDLE_STATUS = 1;
     private static final int HANDLE_ALBUM_ART = 2;
     private static final int HANDLE_STOP = 3;
+    private static final int HANDLE_PENDING_COMMAND = 4;
+    private static final int HANDLE_DELAYED_COMMAND = 5;
+    private static final int NOTIFY_STATUS = 6;
+    private static final int NOTIFY_ERROR = 7;
+
+    private static final String KEY_URI = "uri";
+
+    /**
+     * Time to wait for new Intents before stopping the service.
+     */
+    private static final long IDLE_TIMEOUT = 20 * 1000;
+
+    /**
+     * Time to wait for more relative seek or volume commands before sending
+     * their combined value to the server.
+     */
+    private static final long COALESCE_WINDOW = 100;
+
+    /**
+     * Commands that toggle a setting; sending one twice has no effect.
+     */
+    private static final String[] TOGGLE_COMMANDS = {
+            "pl_pause", "pl_random", "pl_loop", "pl_repeat", "fullscreen"
+    };
 
     private static boolean isCommand(Uri uri) {
         return uri.getQueryParameters("command").size() != 0;
@@ -73,6 +109,76 @@ public class StatusService extends Service implements Handler.Callback {
         return value != null && !value.startsWith("+") && !value.startsWith("-");
     }
 
+    private static boolean isToggle(String command) {
+        for (int i = 0; i < TOGGLE_COMMANDS.length; i++) {
+            if (TOGGLE_COMMANDS[i].equals(command)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the amount of a relative seek or volume command, or {@code null}
+     * if the value is absolute or has units (for example, {@code +10s}).
+     */
+    private static Integer getRelativeValue(Uri uri) {
+        if (isSeek(uri) || isVolume(uri)) {
+            String value = uri.getQueryParameter("val");
+            if (value != null && (value.startsWith("+") || value.startsWith("-"))) {
+                try {
+                    int sign = value.startsWith("-") ? -1 : 1;
+                    return Integer.valueOf(sign * Integer.parseInt(value.substring(1)));
+                } catch (NumberFormatException e) {
+                    return null;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * A relative or toggle command that has not been sent yet, and that
+     * further commands of the same kind can be merged into.
+     */
+    private static final class PendingCommand {
+        final Uri mUri;
+
+        int mFlags;
+
+        /**
+         * The combined amount of relative commands.
+         */
+        int mDelta;
+
+        /**
+         * The number of toggle commands.
+         */
+        int mCount;
+
+        PendingCommand(Uri uri, int flags) {
+            mUri = uri;
+            mFlags = flags;
+        }
+
+        /**
+         * Returns the command to send, or {@code null} if the merged commands
+         * cancel each other out.
+         */
+        Uri toUri() {
+            String command = mUri.getQueryParameter("command");
+            if (isToggle(command)) {
+                return (mCount % 2 != 0) ? mUri : null;
+            } else if (mDelta != 0) {
+                String val = mDelta < 0 ? Integer.toString(mDelta) : "+" + mDelta;
+                String query = "command=" + command + "&val=" + Uri.encode(val);
+                return mUri.buildUpon().encodedQuery(query).build();
+            } else {
+                return null;
+            }
+        }
+    }
+
     private Handler mStatusHandler;
 
     private Handler mAlbumArtHandler;
@@ -81,12 +187,47 @@ public class StatusService extends Service implements Handler.Callback {
 
     private AtomicInteger mSequenceNumber;
 
+    /**
+     * Commands waiting to be sent, keyed by command name.
+     */
+    private final Map<String, PendingCommand> mPendingCommands =
+            new HashMap<String, PendingCommand>();
+
+    /**
+     * Tokens that identify the delayed commands for each server, so that they
+     * can be cancelled with {@link Handler#removeMessages(int, Object)}.
+     */
+    private final Map<String, Object> mServerTokens = new HashMap<String, Object>();
+
+    /**
+     * Delivers results to {@link #mListeners} on the main thread.
+     */
+    private Handler mMainHandler;
+
+    /**
+     * Listeners registered through {@link LocalBinder}, and the
+     * {@link StatusDelta} categories that each listener is interested in.
+     * Only accessed on the main thread.
+     */
+    private final Map<StatusListener, Integer> mListeners =
+            new LinkedHashMap<StatusListener, Integer>();
+
+    private final IBinder mBinder = new LocalBinder();
+
+    /**
+     * The last status that was broadcast, or {@code null} if an error was
+     * broadcast after it.
+     */
+    private volatile Status mLastStatus;
+
     @Override
     public void onCreate() {
         super.onCreate();
 
         mSequenceNumber = new AtomicInteger();
 
+        mMainHandler = new Handler(this);
+
         mStatusHandler = startHandlerThread("StatusThread");
 
         // Create a separate thread for album art requests
@@ -100,6 +241,8 @@ public class StatusService extends Service implements Handler.Callback {
 
     @Override
     public void onDestroy() {
+        mMainHandler.removeCallbacksAndMessages(null);
+        mListeners.clear();
         stopHandlerThread(mStatusHandler);
         stopHandlerThread(mCommandHandler);
         stopHandlerThread(mAlbumArtHandler);
@@ -138,27 +281,159 @@ public class StatusService extends Service implements Handler.Callback {
                     // invalidates any existing requests to change
                     // the position or volume.
                     mCommandHandler.removeMessages(HANDLE_STATUS);
+                    synchronized (mPendingCommands) {
+                        mPendingCommands.remove(uri.getQueryParameter("command"));
+                    }
                 }
             }
 
-            Handler handler = isCommand(uri) ? mCommandHandler : mStatusHandler;
-            if (isCommand(uri) || !handler.hasMessages(HANDLE_STATUS)) {
-                int sequenceNumber = isCommand(uri) ? mSequenceNumber.incrementAndGet()
-                        : mSequenceNumber.get();
-                int flags = intent.getIntExtra(Intents.EXTRA_FLAGS, 0);
-                Message msg = handler.obtainMessage(HANDLE_STATUS, sequenceNumber, flags, uri);
-                handler.sendMessage(msg);
+            int flags = intent.getIntExtra(Intents.EXTRA_FLAGS, 0);
+            boolean afterPrevious = ((flags & Intents.FLAG_AFTER_PREVIOUS) != 0);
+            if (isCommand(uri) && afterPrevious) {
+                schedule(uri, flags);
+            } else if (isCommand(uri) && coalesce(uri, flags)) {
+                // The command will be sent with other commands of the same kind
+            } else {
+                Handler handler = isCommand(uri) ? mCommandHandler : mStatusHandler;
+                if (isCommand(uri) || !handler.hasMessages(HANDLE_STATUS)) {
+                    int sequenceNumber = isCommand(uri) ? mSequenceNumber.incrementAndGet()
+                            : mSequenceNumber.get();
+                    Message msg = handler.obtainMessage(HANDLE_STATUS, sequenceNumber, flags, uri);
+                    handler.sendMessage(msg);
+                }
             }
         } else if (Intents.ACTION_ART.equals(action) && uri != null) {
             int sequenceNumber = mSequenceNumber.get();
             Message msg = mAlbumArtHandler.obtainMessage(HANDLE_ALBUM_ART, sequenceNumber, -1, uri);
             msg.sendToTarget();
+        } else if (Intents.ACTION_CANCEL.equals(action) && uri != null) {
+            mCommandHandler.removeMessages(HANDLE_DELAYED_COMMAND, getServerToken(uri));
         }
         {
-            // Stop the service if no new Intents are received for 20 seconds
+            // Stop the service if no new Intents are received for 20 seconds.
+            // Chained commands are queued on the same thread, ahead of the
+            // stop message.
             Handler handler = mCommandHandler;
+            handler.removeMessages(HANDLE_STOP);
             Message msg = handler.obtainMessage(HANDLE_STOP, startId, -1);
-            handler.sendMessageDelayed(msg, 20 * 1000);
+            handler.sendMessageDelayed(msg, IDLE_TIMEOUT);
+        }
+    }
+
+    private Object getServerToken(Uri uri) {
+        String authority = uri.getAuthority();
+        Object token = mServerTokens.get(authority);
+        if (token == null) {
+            token = new Object();
+            mServerTokens.put(authority, token);
+        }
+        return token;
+    }
+
+    /**
+     * Queues a command on the command thread.
+     * <p>
+     * Commands for the same server are sent in the order they were queued,
+     * and because the command thread sends one request at a time, each one is
+     * sent as soon as the response to the previous command arrives.
+     */
+    private void schedule(Uri uri, int flags) {
+        Message msg = mCommandHandler.obtainMessage(HANDLE_DELAYED_COMMAND, flags, 0,
+                getServerToken(uri));
+        Bundle data = new Bundle();
+        data.putParcelable(KEY_URI, uri);
+        msg.setData(data);
+        mCommandHandler.sendMessage(msg);
+    }
+
+    /**
+     * Merges relative seek or volume commands and toggle commands with an
+     * unsent command of the same kind, so that holding down a key results in a
+     * single request instead of one request per key press.
+     *
+     * @return {@code true} if the command will be sent later, or
+     *         {@code false} if it cannot be merged.
+     */
+    private boolean coalesce(Uri uri, int flags) {
+        String command = uri.getQueryParameter("command");
+        Integer delta = getRelativeValue(uri);
+        if (delta == null && !isToggle(command)) {
+            return false;
+        }
+        synchronized (mPendingCommands) {
+            // Invalidate queued status requests and commands,
+            // like any other command.
+            mSequenceNumber.incrementAndGet();
+
+            PendingCommand pending = mPendingCommands.get(command);
+            if (pending == null || !pending.mUri.getAuthority().equals(uri.getAuthority())) {
+                pending = new PendingCommand(uri, flags);
+                mPendingCommands.put(command, pending);
+                Message msg = mCommandHandler.obtainMessage(HANDLE_PENDING_COMMAND, command);
+                if (delta != null) {
+                    // Wait briefly for more key presses
+                    mCommandHandler.sendMessageDelayed(msg, COALESCE_WINDOW);
+                } else {
+                    // Don't delay toggles, but collapse any that are queued
+                    // behind a slow request
+                    mCommandHandler.sendMessage(msg);
+                }
+            }
+            pending.mFlags = flags;
+            if (delta != null) {
+                pending.mDelta += delta.intValue();
+            } else {
+                pending.mCount += 1;
+            }
+            return true;
+        }
+    }
+
+    private void handleStatus(Uri uri, int sequenceNumber, int flags) {
+        MediaServer server = new MediaServer(this, uri);
+        if (sequenceNumber == mSequenceNumber.get()) {
+            boolean setResumeOnIdle = ((flags & Intents.FLAG_SET_RESUME_ON_IDLE) != 0);
+            boolean onlyIfPlaying = ((flags & Intents.FLAG_ONLY_IF_PLAYING) != 0);
+            boolean onlyIfPaused = ((flags & Intents.FLAG_ONLY_IF_PAUSED) != 0);
+            boolean onlyIfChanged = ((flags & Intents.FLAG_ONLY_IF_CHANGED) != 0);
+            boolean conditional = onlyIfPlaying || onlyIfPaused;
+            try {
+                if (conditional) {
+                    Status status = server.status().read();
+                    if (onlyIfPlaying && !status.isPlaying()) {
+                        return;
+                    }
+                    if (onlyIfPaused && !status.isPaused()) {
+                        return;
+                    }
+                }
+                Status status = server.status(uri).read();
+                if (sequenceNumber == mSequenceNumber.get()) {
+                    StatusDelta delta = StatusDelta.compute(mLastStatus, status);
+                    mLastStatus = status;
+                    if (!onlyIfChanged || !delta.isEmpty()) {
+                        publishStatus(status, delta);
+                    }
+                    if (isCommand(uri)) {
+                        // Check the status again after the command
+                        // has had time to take effect.
+                        Message msg = mStatusHandler.obtainMessage(HANDLE_STATUS,
+                                sequenceNumber, 0, readOnly(uri));
+                        mStatusHandler.sendMessageDelayed(msg, 500);
+                    }
+                } else {
+                    Log.d(TAG, "Dropped stale status response: " + uri);
+                }
+                if (setResumeOnIdle) {
+                    Preferences.get(this).setResumeOnIdle();
+                }
+            } catch (Throwable tr) {
+                String message = String.valueOf(tr);
+                Log.e(TAG, message, tr);
+                publishError(tr, flags);
+            }
+        } else {
+            Log.d(TAG, "Dropped stale status request: " + uri);
         }
     }
 
@@ -167,51 +442,32 @@ public class StatusService extends Service implements Handler.Callback {
         switch (msg.what) {
             case HANDLE_STATUS: {
                 Uri uri = (Uri) msg.obj;
-                MediaServer server = new MediaServer(this, uri);
                 int sequenceNumber = msg.arg1;
                 int flags = msg.arg2;
-                if (sequenceNumber == mSequenceNumber.get()) {
-                    boolean setResumeOnIdle = ((flags & Intents.FLAG_SET_RESUME_ON_IDLE) != 0);
-                    boolean onlyIfPlaying = ((flags & Intents.FLAG_ONLY_IF_PLAYING) != 0);
-                    boolean onlyIfPaused = ((flags & Intents.FLAG_ONLY_IF_PAUSED) != 0);
-                    boolean conditional = onlyIfPlaying || onlyIfPaused;
-                    try {
-                        if (conditional) {
-                            Status status = server.status().read();
-                            if (onlyIfPlaying && !status.isPlaying()) {
-                                return true;
-                            }
-                            if (onlyIfPaused && !status.isPaused()) {
-                                return true;
-                            }
-                        }
-                        Status status = server.status(uri).read();
-                        if (sequenceNumber == mSequenceNumber.get()) {
-                            sendBroadcast(Intents.status(status));
-                            if (isCommand(uri)) {
-                                // Check the status again after the command
-                                // has had time to take effect.
-                                msg = mStatusHandler.obtainMessage(HANDLE_STATUS, sequenceNumber,
-                                        0, readOnly(uri));
-                                mStatusHandler.sendMessageDelayed(msg, 500);
-                            }
-                        } else {
-                            Log.d(TAG, "Dropped stale status response: " + uri);
-                        }
-                        if (setResumeOnIdle) {
-                            Preferences.get(this).setResumeOnIdle();
-                        }
-                    } catch (Throwable tr) {
-                        String message = String.valueOf(tr);
-                        Log.e(TAG, message, tr);
-                        Intent broadcast = Intents.error(tr);
-                        broadcast.putExtra(Intents.EXTRA_FLAGS, flags);
-                        sendBroadcast(broadcast);
-
-                    }
-                } else {
-                    Log.d(TAG, "Dropped stale status request: " + uri);
+                handleStatus(uri, sequenceNumber, flags);
+                return true;
+            }
+            case HANDLE_PENDING_COMMAND: {
+                String command = (String) msg.obj;
+                PendingCommand pending;
+                synchronized (mPendingCommands) {
+                    pending = mPendingCommands.remove(command);
                 }
+                Uri uri = (pending != null) ? pending.toUri() : null;
+                if (uri != null) {
+                    // Use the current sequence number: the merged command
+                    // must not be dropped because of a command that was
+                    // received while it was waiting.
+                    handleStatus(uri, mSequenceNumber.get(), pending.mFlags);
+                }
+                return true;
+            }
+            case HANDLE_DELAYED_COMMAND: {
+                Uri uri = msg.getData().getParcelable(KEY_URI);
+                int flags = msg.arg1;
+                // Commands received while this command was waiting must not
+                // make it stale.
+                handleStatus(uri, mSequenceNumber.get(), flags);
                 return true;
             }
             case HANDLE_ALBUM_ART: {
@@ -229,7 +485,7 @@ public class StatusService extends Service implements Handler.Callback {
                     } catch (Throwable tr) {
                         String message = String.valueOf(tr);
                         Log.e(TAG, message, tr);
-                        sendBroadcast(Intents.error(tr));
+                        publishError(tr, 0);
                     }
                 } else {
                     Log.d(TAG, "Dropped stale album art request: " + uri);
@@ -241,13 +497,95 @@ public class StatusService extends Service implements Handler.Callback {
                 stopSelf(startId);
                 return true;
             }
+            case NOTIFY_STATUS: {
+                StatusUpdate update = (StatusUpdate) msg.obj;
+                for (StatusListener listener : getListeners()) {
+                    Integer changes = mListeners.get(listener);
+                    if (changes != null && update.mDelta.hasChanges(changes.intValue())) {
+                        listener.onStatusChanged(update.mStatus, update.mDelta);
+                    }
+                }
+                return true;
+            }
+            case NOTIFY_ERROR: {
+                Throwable error = (Throwable) msg.obj;
+                for (StatusListener listener : getListeners()) {
+                    listener.onError(error);
+                }
+                return true;
+            }
             default:
                 return false;
         }
     }
 
+    private void publishStatus(Status status, StatusDelta delta) {
+        StatusUpdate update = new StatusUpdate(status, delta);
+        mMainHandler.obtainMessage(NOTIFY_STATUS, update).sendToTarget();
+        // App widgets can't bind to the service
+        sendBroadcast(Intents.status(status));
+    }
+
+    private void publishError(Throwable tr, int flags) {
+        // Listeners and the app widgets now show the error, so the next
+        // status must be delivered even if it has not changed
+        mLastStatus = null;
+        mMainHandler.obtainMessage(NOTIFY_ERROR, tr).sendToTarget();
+        Intent broadcast = Intents.error(tr);
+        broadcast.putExtra(Intents.EXTRA_FLAGS, flags);
+        sendBroadcast(broadcast);
+    }
+
+    /**
+     * Returns a copy of the listeners, so that listeners can unregister
+     * themselves while they are notified.
+     */
+    private StatusListener[] getListeners() {
+        Set<StatusListener> listeners = mListeners.keySet();
+        return listeners.toArray(new StatusListener[listeners.size()]);
+    }
+
     @Override
     public IBinder onBind(Intent intent) {
-        return null;
+        return mBinder;
+    }
+
+    private static class StatusUpdate {
+        final Status mStatus;
+
+        final StatusDelta mDelta;
+
+        StatusUpdate(Status status, StatusDelta delta) {
+            mStatus = status;
+            mDelta = delta;
+        }
+    }
+
+    /**
+     * Binder for clients in the same process.
+     * <p>
+     * Methods must be called on the main thread.
+     */
+    public class LocalBinder extends Binder {
+
+        /**
+         * Registers a listener for the given categories of changes.
+         * <p>
+         * If the status is already known, the listener receives it
+         * immediately, with every category marked as changed.
+         *
+         * @param changes a combination of the {@link StatusDelta} constants.
+         */
+        public void addStatusListener(StatusListener listener, int changes) {
+            mListeners.put(listener, Integer.valueOf(changes));
+            Status status = mLastStatus;
+            if (status != null) {
+                listener.onStatusChanged(status, StatusDelta.EVERYTHING);
+            }
+        }
+
+        public void removeStatusListener(StatusListener listener) {
+            mListeners.remove(listener);
+        }
     }
 }
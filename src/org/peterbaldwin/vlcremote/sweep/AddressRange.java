@@ -0,0 +1,159 @@
+/*-
+ *  Copyright (C) 2011 Peter Baldwin
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.peterbaldwin.vlcremote.sweep;
+
+/**
+ * A range of IPv4 addresses in CIDR notation, such as {@code 192.168.0.0/23}.
+ * <p>
+ * Ranges larger than {@link #MIN_PREFIX_LENGTH} are not allowed so that a
+ * typo cannot start a sweep of millions of addresses.
+ */
+public final class AddressRange {
+
+    /**
+     * The shortest prefix (largest range) allowed: 1022 hosts.
+     */
+    public static final int MIN_PREFIX_LENGTH = 22;
+
+    private static final int MAX_PREFIX_LENGTH = 32;
+
+    private final int mNetwork;
+
+    private final int mPrefixLength;
+
+    private AddressRange(int network, int prefixLength) {
+        mNetwork = network & mask(prefixLength);
+        mPrefixLength = prefixLength;
+    }
+
+    /**
+     * Parses a range such as {@code 10.0.0.0/23}.
+     *
+     * @throws IllegalArgumentException if the range is malformed or too large.
+     */
+    public static AddressRange parse(String cidr) {
+        int slash = cidr.indexOf('/');
+        if (slash == -1) {
+            throw new IllegalArgumentException("Missing prefix length: " + cidr);
+        }
+        int prefixLength;
+        try {
+            prefixLength = Integer.parseInt(cidr.substring(slash + 1).trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid prefix length: " + cidr);
+        }
+        if (prefixLength < MIN_PREFIX_LENGTH || prefixLength > MAX_PREFIX_LENGTH) {
+            throw new IllegalArgumentException("Prefix length out of range: " + cidr);
+        }
+        String[] octets = cidr.substring(0, slash).trim().split("\\.");
+        if (octets.length != 4) {
+            throw new IllegalArgumentException("Invalid address: " + cidr);
+        }
+        int address = 0;
+        for (String octet : octets) {
+            int value;
+            try {
+                value = Integer.parseInt(octet);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid address: " + cidr);
+            }
+            if (value < 0 || value > 255) {
+                throw new IllegalArgumentException("Invalid address: " + cidr);
+            }
+            address = (address << 8) | value;
+        }
+        return new AddressRange(address, prefixLength);
+    }
+
+    /**
+     * Returns the range of the network that {@code address} is on.
+     * <p>
+     * A prefix that is shorter than {@link #MIN_PREFIX_LENGTH} is lengthened,
+     * so the range is the part of the network closest to {@code address}.
+     */
+    public static AddressRange around(byte[] address, int prefixLength) {
+        prefixLength = Math.max(MIN_PREFIX_LENGTH, Math.min(MAX_PREFIX_LENGTH, prefixLength));
+        return new AddressRange(toInt(address), prefixLength);
+    }
+
+    public int getPrefixLength() {
+        return mPrefixLength;
+    }
+
+    /**
+     * Returns the first address that can be assigned to a host.
+     */
+    public int getFirst() {
+        // Networks of more than two addresses reserve the first and last
+        return (mPrefixLength < 31) ? mNetwork + 1 : mNetwork;
+    }
+
+    /**
+     * Returns the last address that can be assigned to a host.
+     */
+    public int getLast() {
+        int broadcast = mNetwork | ~mask(mPrefixLength);
+        return (mPrefixLength < 31) ? broadcast - 1 : broadcast;
+    }
+
+    public boolean contains(int address) {
+        return (address & mask(mPrefixLength)) == mNetwork;
+    }
+
+    private static int mask(int prefixLength) {
+        return (prefixLength == 0) ? 0 : -1 << (32 - prefixLength);
+    }
+
+    static int toInt(byte[] address) {
+        if (address.length != 4) {
+            throw new IllegalArgumentException("Not an IPv4 address");
+        }
+        return ((address[0] & 0xFF) << 24) | ((address[1] & 0xFF) << 16)
+                | ((address[2] & 0xFF) << 8) | (address[3] & 0xFF);
+    }
+
+    static byte[] toByteArray(int address) {
+        return new byte[] {
+                (byte) (address >>> 24), (byte) (address >>> 16), (byte) (address >>> 8),
+                (byte) address
+        };
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o == this) {
+            return true;
+        }
+        if (!(o instanceof AddressRange)) {
+            return false;
+        }
+        AddressRange other = (AddressRange) o;
+        return mNetwork == other.mNetwork && mPrefixLength == other.mPrefixLength;
+    }
+
+    @Override
+    public int hashCode() {
+        return mNetwork * 31 + mPrefixLength;
+    }
+
+    @Override
+    public String toString() {
+        return (mNetwork >>> 24) + "." + ((mNetwork >>> 16) & 0xFF) + "."
+                + ((mNetwork >>> 8) & 0xFF) + "." + (mNetwork & 0xFF) + "/" + mPrefixLength;
+    }
+}
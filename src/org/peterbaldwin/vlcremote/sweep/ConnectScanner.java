@@ -0,0 +1,331 @@
+/*-
+ *  Copyright (C) 2011 Peter Baldwin
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.peterbaldwin.vlcremote.sweep;
+
+import android.os.SystemClock;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.channels.Channel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Finds which addresses accept TCP connections, using non-blocking connects
+ * on a single thread.
+ * <p>
+ * Up to a fixed number of connects are in flight at once, so a whole subnet
+ * is checked in about one timeout period without a thread per address.
+ * Connections are closed as soon as they are established.
+ * <p>
+ * Addresses are connected to in the order given, except that each port has
+ * its own limit on connects in flight; when a port is at its limit, the next
+ * address on another port goes first.
+ */
+final class ConnectScanner {
+
+    public interface Callback {
+        /**
+         * Indicates that an address accepted a connection.
+         *
+         * @param elapsed the time the connect took, in milliseconds.
+         */
+        void onConnected(InetSocketAddress address, int elapsed);
+
+        /**
+         * Indicates that a connection to an address failed or timed out.
+         *
+         * @param elapsed the time until the connect failed, in milliseconds.
+         */
+        void onFailed(InetSocketAddress address, IOException e, int elapsed);
+    }
+
+    /**
+     * The addresses for one port that have not been connected to, in order.
+     */
+    private static final class PortQueue {
+        public final List<Integer> positions = new ArrayList<Integer>();
+
+        public int head;
+
+        public int inFlight;
+
+        public boolean isEmpty() {
+            return head == positions.size();
+        }
+
+        public int peek() {
+            return positions.get(head).intValue();
+        }
+    }
+
+    private static final class Pending {
+        public final InetSocketAddress address;
+
+        public final PortQueue queue;
+
+        public final long start;
+
+        public Pending(InetSocketAddress address, PortQueue queue, long start) {
+            this.address = address;
+            this.queue = queue;
+            this.start = start;
+        }
+    }
+
+    private final int mMaxInFlight;
+
+    private final int mMaxInFlightPerPort;
+
+    private volatile int mTimeout;
+
+    private volatile boolean mCancelled;
+
+    private volatile Selector mSelector;
+
+    /**
+     * @param maxInFlight the maximum number of connects in progress at once.
+     * @param maxInFlightPerPort the maximum number of connects to the same
+     *            port in progress at once.
+     * @param timeout the connect timeout, in milliseconds.
+     */
+    public ConnectScanner(int maxInFlight, int maxInFlightPerPort, int timeout) {
+        if (maxInFlight < 1 || maxInFlightPerPort < 1) {
+            throw new IllegalArgumentException("Limits must be positive");
+        }
+        mMaxInFlight = maxInFlight;
+        mMaxInFlightPerPort = maxInFlightPerPort;
+        mTimeout = timeout;
+    }
+
+    /**
+     * Changes the connect timeout, in milliseconds. The new timeout also
+     * applies to connects that are already in progress.
+     */
+    public void setTimeout(int timeout) {
+        mTimeout = timeout;
+    }
+
+    public int getTimeout() {
+        return mTimeout;
+    }
+
+    /**
+     * Stops a scan in progress on another thread. Addresses that were not
+     * checked are not reported.
+     */
+    public void cancel() {
+        mCancelled = true;
+        Selector selector = mSelector;
+        if (selector != null) {
+            selector.wakeup();
+        }
+    }
+
+    public boolean isCancelled() {
+        return mCancelled;
+    }
+
+    /**
+     * Checks each address, calling {@code callback} on this thread as results
+     * arrive, and returns when every address has been checked or the scan is
+     * cancelled.
+     */
+    public void scan(List<InetSocketAddress> addresses, Callback callback) throws IOException {
+        Selector selector = Selector.open();
+        mSelector = selector;
+        // Connects time out in the order they were started because they all
+        // have the same timeout, even when it changes. Keys that have
+        // finished stay in the list until they reach the head.
+        LinkedList<SelectionKey> inFlight = new LinkedList<SelectionKey>();
+        int inFlightCount = 0;
+        List<PortQueue> queues = createQueues(addresses);
+        int remaining = addresses.size();
+        try {
+            while (!mCancelled && (remaining != 0 || inFlightCount != 0)) {
+                PortQueue queue;
+                while (inFlightCount < mMaxInFlight && !mCancelled
+                        && (queue = nextQueue(queues)) != null) {
+                    InetSocketAddress address = addresses.get(queue.peek());
+                    queue.head++;
+                    remaining--;
+                    SelectionKey key = connect(selector, address, queue, callback);
+                    if (key != null) {
+                        inFlight.add(key);
+                        inFlightCount++;
+                    }
+                }
+                if (inFlightCount == 0) {
+                    continue;
+                }
+                long timeout = getDeadline(inFlight, mTimeout) - SystemClock.elapsedRealtime();
+                selector.select(Math.max(1, timeout));
+
+                Iterator<SelectionKey> selected = selector.selectedKeys().iterator();
+                while (selected.hasNext()) {
+                    SelectionKey key = selected.next();
+                    selected.remove();
+                    finishConnect(key, callback);
+                    inFlightCount--;
+                }
+                inFlightCount -= expire(inFlight, mTimeout, callback);
+            }
+        } finally {
+            mSelector = null;
+            for (SelectionKey key : selector.keys()) {
+                close(key.channel());
+            }
+            selector.close();
+        }
+    }
+
+    private static List<PortQueue> createQueues(List<InetSocketAddress> addresses) {
+        Map<Integer, PortQueue> queues = new HashMap<Integer, PortQueue>();
+        List<PortQueue> list = new ArrayList<PortQueue>();
+        for (int position = 0, count = addresses.size(); position < count; position++) {
+            Integer port = Integer.valueOf(addresses.get(position).getPort());
+            PortQueue queue = queues.get(port);
+            if (queue == null) {
+                queue = new PortQueue();
+                queues.put(port, queue);
+                list.add(queue);
+            }
+            queue.positions.add(Integer.valueOf(position));
+        }
+        return list;
+    }
+
+    /**
+     * Returns the queue of the earliest address whose port is under its
+     * limit, or {@code null}.
+     */
+    private PortQueue nextQueue(List<PortQueue> queues) {
+        PortQueue next = null;
+        for (PortQueue queue : queues) {
+            if (!queue.isEmpty() && queue.inFlight < mMaxInFlightPerPort
+                    && (next == null || queue.peek() < next.peek())) {
+                next = queue;
+            }
+        }
+        return next;
+    }
+
+    private SelectionKey connect(Selector selector, InetSocketAddress address, PortQueue queue,
+            Callback callback) {
+        SocketChannel channel = null;
+        long start = SystemClock.elapsedRealtime();
+        try {
+            channel = SocketChannel.open();
+            channel.configureBlocking(false);
+            if (channel.connect(address)) {
+                // Connected immediately (e.g. loopback)
+                close(channel);
+                callback.onConnected(address, elapsedSince(start));
+                return null;
+            }
+            SelectionKey key = channel.register(selector, SelectionKey.OP_CONNECT, new Pending(
+                    address, queue, start));
+            queue.inFlight++;
+            return key;
+        } catch (IOException e) {
+            close(channel);
+            callback.onFailed(address, e, elapsedSince(start));
+            return null;
+        }
+    }
+
+    private static void finishConnect(SelectionKey key, Callback callback) {
+        Pending pending = (Pending) key.attachment();
+        SocketChannel channel = (SocketChannel) key.channel();
+        key.cancel();
+        pending.queue.inFlight--;
+        try {
+            channel.finishConnect();
+            close(channel);
+            callback.onConnected(pending.address, elapsedSince(pending.start));
+        } catch (IOException e) {
+            close(channel);
+            callback.onFailed(pending.address, e, elapsedSince(pending.start));
+        }
+    }
+
+    private static int elapsedSince(long start) {
+        return (int) (SystemClock.elapsedRealtime() - start);
+    }
+
+    /**
+     * Returns the deadline of the oldest connect that is still in progress.
+     */
+    private static long getDeadline(LinkedList<SelectionKey> inFlight, int timeout) {
+        while (!inFlight.isEmpty() && !inFlight.getFirst().isValid()) {
+            inFlight.removeFirst();
+        }
+        if (inFlight.isEmpty()) {
+            return SystemClock.elapsedRealtime();
+        }
+        return ((Pending) inFlight.getFirst().attachment()).start + timeout;
+    }
+
+    /**
+     * Gives up on connects that have timed out.
+     *
+     * @return the number of connects that timed out.
+     */
+    private static int expire(LinkedList<SelectionKey> inFlight, int timeout,
+            Callback callback) {
+        long now = SystemClock.elapsedRealtime();
+        int expired = 0;
+        while (!inFlight.isEmpty()) {
+            SelectionKey key = inFlight.getFirst();
+            if (!key.isValid()) {
+                inFlight.removeFirst();
+                continue;
+            }
+            Pending pending = (Pending) key.attachment();
+            if (pending.start + timeout > now) {
+                break;
+            }
+            inFlight.removeFirst();
+            key.cancel();
+            pending.queue.inFlight--;
+            close(key.channel());
+            callback.onFailed(pending.address, new SocketTimeoutException("connect timed out"),
+                    elapsedSince(pending.start));
+            expired++;
+        }
+        return expired;
+    }
+
+    private static void close(Channel channel) {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // Ignore
+            }
+        }
+    }
+}
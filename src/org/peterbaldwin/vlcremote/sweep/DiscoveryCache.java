@@ -0,0 +1,254 @@
+/*-
+ *  Copyright (C) 2011 Peter Baldwin
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.peterbaldwin.vlcremote.sweep;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Remembers the servers found on each network, so that they can be checked
+ * before the rest of the network is swept.
+ * <p>
+ * A network is identified by its SSID and subnet (see
+ * {@link #getNetworkKey(String, byte[], int)}). The cache is read from disk
+ * the first time it is used, so call it from a background thread.
+ */
+public final class DiscoveryCache {
+
+    private static final String TAG = "DiscoveryCache";
+
+    private static final String FILE_NAME = "discovery";
+
+    private static final int MAGIC = 0x564c4344; // "VLCD"
+
+    /**
+     * The maximum number of hosts to remember for each network.
+     */
+    static final int MAX_HOSTS = 8;
+
+    /**
+     * How long to remember a host that has not been seen.
+     */
+    static final long MAX_AGE = 30L * 24 * 60 * 60 * 1000;
+
+    private static DiscoveryCache sInstance;
+
+    public static synchronized DiscoveryCache get(Context context) {
+        if (sInstance == null) {
+            File file = new File(context.getApplicationContext().getCacheDir(), FILE_NAME);
+            sInstance = new DiscoveryCache(file);
+        }
+        return sInstance;
+    }
+
+    public static final class Host {
+        public final byte[] address;
+
+        public final int port;
+
+        /**
+         * When the host last responded, in milliseconds since the epoch.
+         */
+        public final long lastSeen;
+
+        /**
+         * How long the host took to respond, in milliseconds.
+         */
+        public final int latency;
+
+        public Host(byte[] address, int port, long lastSeen, int latency) {
+            this.address = address;
+            this.port = port;
+            this.lastSeen = lastSeen;
+            this.latency = latency;
+        }
+    }
+
+    private final File mFile;
+
+    /**
+     * Hosts by network, most recently seen first, or {@code null} if the
+     * file has not been read.
+     */
+    private Map<String, List<Host>> mNetworks;
+
+    private boolean mDirty;
+
+    DiscoveryCache(File file) {
+        mFile = file;
+    }
+
+    /**
+     * Returns the key for a network.
+     *
+     * @param ssid the SSID of the network, or {@code null}.
+     * @param interfaceAddress the address of this device on the network.
+     * @param prefixLength the prefix length of the network.
+     */
+    public static String getNetworkKey(String ssid, byte[] interfaceAddress, int prefixLength) {
+        AddressRange range = AddressRange.around(interfaceAddress, prefixLength);
+        return (ssid != null ? ssid : "") + '|' + range;
+    }
+
+    /**
+     * Returns the hosts found on a network, most recently seen first.
+     */
+    public synchronized List<Host> getHosts(String network) {
+        List<Host> hosts = getNetworks().get(network);
+        return (hosts != null) ? new ArrayList<Host>(hosts) : new ArrayList<Host>(0);
+    }
+
+    /**
+     * Records that a host responded.
+     *
+     * @param latency how long the host took to respond, in milliseconds.
+     */
+    public synchronized void put(String network, byte[] address, int port, int latency) {
+        Map<String, List<Host>> networks = getNetworks();
+        List<Host> hosts = networks.get(network);
+        if (hosts == null) {
+            hosts = new ArrayList<Host>(MAX_HOSTS);
+            networks.put(network, hosts);
+        }
+        for (Iterator<Host> it = hosts.iterator(); it.hasNext();) {
+            Host host = it.next();
+            if (host.port == port && Arrays.equals(host.address, address)) {
+                it.remove();
+            }
+        }
+        hosts.add(0, new Host(address.clone(), port, System.currentTimeMillis(), latency));
+        while (hosts.size() > MAX_HOSTS) {
+            hosts.remove(hosts.size() - 1);
+        }
+        mDirty = true;
+    }
+
+    /**
+     * Writes the cache to disk if it has changed.
+     */
+    public synchronized void save() {
+        if (!mDirty) {
+            return;
+        }
+        File temp = new File(mFile.getPath() + ".tmp");
+        try {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                    new FileOutputStream(temp)));
+            try {
+                write(out, mNetworks);
+            } finally {
+                out.close();
+            }
+            if (!temp.renameTo(mFile)) {
+                throw new IOException("Unable to rename " + temp);
+            }
+            mDirty = false;
+        } catch (IOException e) {
+            Log.w(TAG, "Unable to write discovery cache", e);
+            temp.delete();
+        }
+    }
+
+    private Map<String, List<Host>> getNetworks() {
+        if (mNetworks == null) {
+            mNetworks = new HashMap<String, List<Host>>();
+            try {
+                DataInputStream in = new DataInputStream(new BufferedInputStream(
+                        new FileInputStream(mFile)));
+                try {
+                    read(in, mNetworks, System.currentTimeMillis() - MAX_AGE);
+                } finally {
+                    in.close();
+                }
+            } catch (FileNotFoundException e) {
+                // Nothing found yet
+            } catch (IOException e) {
+                Log.w(TAG, "Unable to read discovery cache", e);
+                mNetworks.clear();
+            }
+        }
+        return mNetworks;
+    }
+
+    private static void write(DataOutputStream out, Map<String, List<Host>> networks)
+            throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(networks.size());
+        for (Map.Entry<String, List<Host>> entry : networks.entrySet()) {
+            out.writeUTF(entry.getKey());
+            List<Host> hosts = entry.getValue();
+            out.writeInt(hosts.size());
+            for (Host host : hosts) {
+                out.writeInt(host.address.length);
+                out.write(host.address);
+                out.writeInt(host.port);
+                out.writeLong(host.lastSeen);
+                out.writeInt(host.latency);
+            }
+        }
+    }
+
+    private static void read(DataInputStream in, Map<String, List<Host>> networks,
+            long oldest) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a discovery cache");
+        }
+        int networkCount = in.readInt();
+        for (int i = 0; i < networkCount; i++) {
+            String network = in.readUTF();
+            int hostCount = in.readInt();
+            if (hostCount < 0 || hostCount > MAX_HOSTS) {
+                throw new IOException("Invalid host count: " + hostCount);
+            }
+            List<Host> hosts = new ArrayList<Host>(MAX_HOSTS);
+            for (int j = 0; j < hostCount; j++) {
+                int length = in.readInt();
+                if (length != 4 && length != 16) {
+                    throw new IOException("Invalid address length: " + length);
+                }
+                byte[] address = new byte[length];
+                in.readFully(address);
+                int port = in.readInt();
+                long lastSeen = in.readLong();
+                int latency = in.readInt();
+                if (lastSeen >= oldest) {
+                    hosts.add(new Host(address, port, lastSeen, latency));
+                }
+            }
+            if (!hosts.isEmpty()) {
+                networks.put(network, hosts);
+            }
+        }
+    }
+}
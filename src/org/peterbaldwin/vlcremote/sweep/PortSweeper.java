@@ -30,12 +30,23 @@ import android.util.Log;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.net.ConnectException;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
 import java.net.SocketException;
+import java.net.UnknownHostException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Queue;
+import java.util.Set;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 public final class PortSweeper {
 
@@ -47,6 +58,24 @@ public final class PortSweeper {
 
     private static final String TAG = "Scanner";
 
+    private static final class ScanRequest {
+        public final byte[] interfaceAddress;
+
+        public final byte[] gateway;
+
+        public final Collection<AddressRange> ranges;
+
+        public final String network;
+
+        public ScanRequest(byte[] interfaceAddress, byte[] gateway,
+                Collection<AddressRange> ranges, String network) {
+            this.interfaceAddress = interfaceAddress;
+            this.gateway = gateway;
+            this.ranges = ranges;
+            this.network = network;
+        }
+    }
+
     private static final int HANDLE_SCAN = 1;
 
     private static final int HANDLE_START = 1;
@@ -54,7 +83,66 @@ public final class PortSweeper {
     private static final int HANDLE_UNREACHABLE = 3;
     private static final int HANDLE_COMPLETE = 4;
 
-    private final Queue<byte[]> mAddressQueue;
+    /**
+     * The maximum number of connects in progress at once.
+     */
+    private static final int MAX_CONNECTS_IN_FLIGHT = 256;
+
+    /**
+     * The least number of connects to one port that can be in progress at
+     * once, however many ports are swept.
+     */
+    private static final int MIN_CONNECTS_PER_PORT = 32;
+
+    /**
+     * The port of the gateway to connect to when measuring the round-trip
+     * time. Whether the connection is accepted or refused does not matter.
+     */
+    private static final int GATEWAY_PORT = 80;
+
+    /**
+     * The shortest connect timeout for servers found on previous sweeps, in
+     * milliseconds.
+     */
+    private static final int MIN_KNOWN_HOST_TIMEOUT = 250;
+
+    /**
+     * How many times longer than they took to respond before to wait for
+     * servers found on previous sweeps to accept a connection.
+     */
+    private static final int KNOWN_HOST_TIMEOUT_FACTOR = 4;
+
+    /**
+     * The maximum number of probe threads, shared by every sweeper.
+     */
+    private static final int MAX_PROBE_THREADS = 32;
+
+    private static final long KEEP_ALIVE = 30;
+
+    private static final ThreadFactory sThreadFactory = new ThreadFactory() {
+        /** {@inheritDoc} */
+        public Thread newThread(final Runnable r) {
+            return new Thread(new Runnable() {
+                /** {@inheritDoc} */
+                public void run() {
+                    Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                    r.run();
+                }
+            }, "Worker");
+        }
+    };
+
+    /**
+     * Runs the workers of every sweep, so that threads are reused from one
+     * sweep to the next. Threads that are idle for {@link #KEEP_ALIVE}
+     * seconds exit. When every thread is busy, the worker runs on the scan
+     * thread instead.
+     */
+    private static final ThreadPoolExecutor sExecutor = new ThreadPoolExecutor(0,
+            MAX_PROBE_THREADS, KEEP_ALIVE, TimeUnit.SECONDS, new SynchronousQueue<Runnable>(),
+            sThreadFactory, new ThreadPoolExecutor.CallerRunsPolicy());
+
+    private final Queue<InetSocketAddress> mAddressQueue;
 
     /**
      * Queue for scan requests.
@@ -64,8 +152,9 @@ public final class PortSweeper {
     /**
      * Processes scan requests.
      * <p>
-     * No real work is done on this thread; it just waits for the workers to
-     * finish using {@link Thread#join()}.
+     * Connects to every address run on this thread; then it waits for the
+     * workers that probe the hosts that accepted a connection to finish, or
+     * for the sweep to be aborted.
      */
     private final HandlerThread mScanThread;
 
@@ -85,9 +174,42 @@ public final class PortSweeper {
     private final Worker.Callback mWorkerCallback;
 
     /**
-     * The port to scan.
+     * Guards {@link #mGeneration}, {@link #mConnectScanner} and
+     * {@link #mWorkers}, and is notified when a worker finishes or the sweep
+     * is aborted.
+     */
+    private final Object mLock = new Object();
+
+    /**
+     * The connect scan in progress, if any.
+     */
+    private ConnectScanner mConnectScanner;
+
+    /**
+     * The workers of the sweep in progress that have not finished. Replaced
+     * with a new list when the sweep is aborted.
+     */
+    private List<Worker> mWorkers = new ArrayList<Worker>();
+
+    /**
+     * Incremented when the sweep in progress is aborted.
+     */
+    private int mGeneration;
+
+    /**
+     * Servers found on previous sweeps.
+     */
+    private final DiscoveryCache mDiscoveryCache;
+
+    /**
+     * The key of the network being swept.
      */
-    private final int mPort;
+    private volatile String mNetwork;
+
+    /**
+     * The ports to scan.
+     */
+    private final int[] mPorts;
 
     /**
      * The HTTP path to scan.
@@ -124,13 +246,18 @@ public final class PortSweeper {
      */
     private List<HttpResponse> mFoundHosts = new ArrayList<HttpResponse>();
 
-    public PortSweeper(int port, String file, int threadCount, Callback callback, Looper looper) {
-        mPort = port;
+    public PortSweeper(int[] ports, String file, int threadCount, Callback callback, Looper looper,
+            DiscoveryCache discoveryCache) {
+        if (ports.length == 0) {
+            throw new IllegalArgumentException("No ports to scan");
+        }
+        mPorts = ports.clone();
         mPath = file;
         mWorkerCount = threadCount;
         mCallback = callback;
+        mDiscoveryCache = discoveryCache;
 
-        mAddressQueue = new ConcurrentLinkedQueue<byte[]>();
+        mAddressQueue = new ConcurrentLinkedQueue<InetSocketAddress>();
 
         mWorkerManager = new MyWorkerManager();
 
@@ -158,12 +285,22 @@ public final class PortSweeper {
         }
     }
 
-    public void sweep(byte[] ipAddress) {
+    /**
+     * Sweeps the given ranges on every port.
+     *
+     * @param ipAddress the address of this device.
+     * @param gateway the address of the gateway, for measuring the
+     *            round-trip time, or {@code null}.
+     * @param network the key of the network in the {@link DiscoveryCache}.
+     */
+    public void sweep(byte[] ipAddress, byte[] gateway, Collection<AddressRange> ranges,
+            String network) {
         abort();
 
-        // Schedule a new sweep. The new sweep will not start until all previous
-        // sweeps have been fully aborted.
-        mScanHandler.obtainMessage(HANDLE_SCAN, ipAddress).sendToTarget();
+        // Schedule a new sweep. The sweep that was aborted returns as soon as
+        // its connections are closed, so the new sweep starts right away.
+        ScanRequest request = new ScanRequest(ipAddress, gateway, ranges, network);
+        mScanHandler.obtainMessage(HANDLE_SCAN, request).sendToTarget();
     }
 
     public void abort() {
@@ -171,6 +308,17 @@ public final class PortSweeper {
         mScanHandler.removeMessages(HANDLE_SCAN);
 
         // Abort the job in progress
+        synchronized (mLock) {
+            mGeneration++;
+            if (mConnectScanner != null) {
+                mConnectScanner.cancel();
+            }
+            for (Worker worker : mWorkers) {
+                worker.cancel();
+            }
+            mWorkers = new ArrayList<Worker>();
+            mLock.notifyAll();
+        }
         mAddressQueue.clear();
     }
 
@@ -181,59 +329,189 @@ public final class PortSweeper {
     }
 
     /**
-     * Scans all local IP addresses using a pool of worker threads and waits for
-     * the all of the workers to finish scanning before returning.
+     * Scans the requested addresses and waits for the scan to finish before
+     * returning.
+     * <p>
+     * Servers found on this network before are probed first, all at once,
+     * so that they are shown right away. Every other address is then checked
+     * with a non-blocking connect, nearest to the interface address first,
+     * and only the hosts that accept a connection are probed over HTTP, by a
+     * pool of worker threads. Known servers are given a shorter connect
+     * timeout based on how quickly they responded before.
+     * <p>
+     * The connect and read timeouts of the sweep are derived from the
+     * round-trip times to the gateway and to the first hosts that accept or
+     * refuse a connection (see {@link RoundTripEstimator}).
      */
-    private void handleScan(byte[] interfaceAddress) {
-        Worker[] workers = new Worker[mWorkerCount];
-        for (int i = 0; i < workers.length; i++) {
-            Worker worker = workers[i] = new Worker(mPort, mPath);
-            worker.setPriority(Thread.MIN_PRIORITY);
-            worker.setManager(mWorkerManager);
-            worker.setCallback(mWorkerCallback);
+    private void handleScan(ScanRequest request) {
+        int generation;
+        synchronized (mLock) {
+            generation = mGeneration;
         }
-        int count = 0;
-
-        // Scan outwards from the interface IP address for best results
-        // with DHCP servers that allocate addresses sequentially.
-        byte start = interfaceAddress[interfaceAddress.length - 1];
-        for (int delta = 1; delta < 128; delta++) {
-            for (int sign = -1; sign <= 1; sign += 2) {
-                int b = (256 + start + sign * delta) % 256;
-                if (b != 0) {
-                    byte[] ipAddress = interfaceAddress.clone();
-                    ipAddress[ipAddress.length - 1] = (byte) b;
-                    mAddressQueue.add(ipAddress);
-                    count += 1;
-                } else {
-                    // Skip broadcast address
-                }
+        mNetwork = request.network;
+
+        Set<InetSocketAddress> knownHosts = new LinkedHashSet<InetSocketAddress>();
+        int maxLatency = 0;
+        for (DiscoveryCache.Host host : mDiscoveryCache.getHosts(request.network)) {
+            if (isScanned(host.port)) {
+                maxLatency = Math.max(maxLatency, host.latency);
+                knownHosts.add(new InetSocketAddress(toInetAddress(host.address), host.port));
             }
         }
-        mCallbackHandler.obtainMessage(HANDLE_START, 0, count).sendToTarget();
-        for (int i = 0; i < workers.length; i++) {
-            Worker worker = workers[i];
-            worker.start();
+        List<InetSocketAddress> addresses = ScanOrder.build(request.interfaceAddress,
+                request.ranges, mPorts, knownHosts);
+
+        int count = knownHosts.size() + addresses.size();
+
+        // Connect to the gateway first, only to measure the round-trip time
+        InetSocketAddress gateway = null;
+        if (request.gateway != null) {
+            gateway = new InetSocketAddress(toInetAddress(request.gateway), GATEWAY_PORT);
+            if (addresses.remove(gateway)) {
+                // Swept anyway; just move it to the front
+                addresses.add(0, gateway);
+                gateway = null;
+            } else {
+                addresses.add(0, gateway);
+            }
         }
+
+        RoundTripEstimator estimator = new RoundTripEstimator();
+        mCallbackHandler.obtainMessage(HANDLE_START, 0, count).sendToTarget();
         try {
-            for (int i = 0; i < workers.length; i++) {
-                Worker worker = workers[i];
-                worker.join();
+            if (!knownHosts.isEmpty()) {
+                mAddressQueue.addAll(knownHosts);
+                // A server that has gone away should not hold up the sweep
+                // for the full connect timeout
+                int timeout = Math.max(MIN_KNOWN_HOST_TIMEOUT, Math.min(
+                        estimator.getConnectTimeout(), maxLatency * KNOWN_HOST_TIMEOUT_FACTOR));
+                if (!probe(generation, knownHosts.size(), timeout, estimator.getReadTimeout())) {
+                    return;
+                }
+            }
+
+            // Share the connects between the ports so that adding ports
+            // doesn't multiply the load on the network
+            int perPort = Math.max(MIN_CONNECTS_PER_PORT, MAX_CONNECTS_IN_FLIGHT / mPorts.length);
+            ConnectScanner scanner = new ConnectScanner(MAX_CONNECTS_IN_FLIGHT, perPort,
+                    estimator.getConnectTimeout());
+            ConnectScanner.Callback callback = new MyConnectCallback(scanner, estimator, gateway);
+            synchronized (mLock) {
+                if (generation != mGeneration) {
+                    return;
+                }
+                mConnectScanner = scanner;
+            }
+            try {
+                scanner.scan(addresses, callback);
+            } catch (IOException e) {
+                Log.w(TAG, "Unable to scan", e);
+            } finally {
+                synchronized (mLock) {
+                    if (mConnectScanner == scanner) {
+                        mConnectScanner = null;
+                    }
+                }
+            }
+            if (!scanner.isCancelled()) {
+                Log.d(TAG, "timeouts: connect " + estimator.getConnectTimeout() + "ms, read "
+                        + estimator.getReadTimeout() + "ms (" + estimator.getSampleCount()
+                        + " samples)");
+                probe(generation, mWorkerCount, estimator.getConnectTimeout(),
+                        estimator.getReadTimeout());
             }
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
         } finally {
+            mDiscoveryCache.save();
             mCallbackHandler.sendEmptyMessage(HANDLE_COMPLETE);
         }
     }
 
+    private static InetAddress toInetAddress(byte[] address) {
+        try {
+            return InetAddress.getByAddress(address);
+        } catch (UnknownHostException e) {
+            // Only thrown for addresses of illegal length
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    /**
+     * Returns {@code true} if a connect failed because the host refused it,
+     * which takes one round trip.
+     */
+    private static boolean isRefused(IOException e) {
+        // Other failures, such as no route to the host, are also reported
+        // as a ConnectException on some platforms
+        String message = e.getMessage();
+        return e instanceof ConnectException && message != null && message.contains("refused");
+    }
+
+    private boolean isScanned(int port) {
+        for (int scanned : mPorts) {
+            if (scanned == port) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Probes the hosts in the address queue using workers on the shared
+     * executor and waits for all of the workers to finish.
+     *
+     * @param connectTimeout the connect timeout, in milliseconds.
+     * @param readTimeout the read timeout, in milliseconds.
+     * @return {@code false} if the sweep was aborted.
+     */
+    private boolean probe(int generation, int maxWorkers, int connectTimeout, int readTimeout) {
+        int workerCount = Math.min(maxWorkers, mAddressQueue.size());
+        for (int i = 0; i < workerCount; i++) {
+            final Worker worker = new Worker(mPath);
+            worker.setManager(mWorkerManager);
+            worker.setCallback(mWorkerCallback);
+            worker.setConnectTimeout(connectTimeout);
+            worker.setReadTimeout(readTimeout);
+            final List<Worker> workers;
+            synchronized (mLock) {
+                if (generation != mGeneration) {
+                    return false;
+                }
+                workers = mWorkers;
+                workers.add(worker);
+            }
+            sExecutor.execute(new Runnable() {
+                /** {@inheritDoc} */
+                public void run() {
+                    try {
+                        worker.run();
+                    } finally {
+                        synchronized (mLock) {
+                            workers.remove(worker);
+                            mLock.notifyAll();
+                        }
+                    }
+                }
+            });
+        }
+        synchronized (mLock) {
+            try {
+                while (generation == mGeneration && !mWorkers.isEmpty()) {
+                    mLock.wait();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return generation == mGeneration;
+        }
+    }
+
     private class MyScanHandlerCallback implements Handler.Callback {
         /** {@inheritDoc} */
         public boolean handleMessage(Message msg) {
             switch (msg.what) {
                 case HANDLE_SCAN:
-                    byte[] interfaceAddress = (byte[]) msg.obj;
-                    handleScan(interfaceAddress);
+                    ScanRequest request = (ScanRequest) msg.obj;
+                    handleScan(request);
                     return true;
                 default:
                     return false;
@@ -244,22 +522,77 @@ public final class PortSweeper {
 
     private class MyWorkerManager implements Worker.Manager {
         /** {@inheritDoc} */
-        public byte[] pollIpAddress() {
+        public InetSocketAddress pollAddress() {
             return mAddressQueue.poll();
         }
     }
 
+    private class MyConnectCallback implements ConnectScanner.Callback {
+
+        private final ConnectScanner mScanner;
+
+        private final RoundTripEstimator mEstimator;
+
+        /**
+         * An address that is only checked to measure the round-trip time,
+         * or {@code null}.
+         */
+        private final InetSocketAddress mMeasureOnly;
+
+        public MyConnectCallback(ConnectScanner scanner, RoundTripEstimator estimator,
+                InetSocketAddress measureOnly) {
+            mScanner = scanner;
+            mEstimator = estimator;
+            mMeasureOnly = measureOnly;
+        }
+
+        private void addSample(int rtt) {
+            if (mEstimator.addSample(rtt)) {
+                mScanner.setTimeout(mEstimator.getConnectTimeout());
+            }
+        }
+
+        /** {@inheritDoc} */
+        public void onConnected(InetSocketAddress address, int elapsed) {
+            addSample(elapsed);
+            if (!address.equals(mMeasureOnly)) {
+                mAddressQueue.add(address);
+            }
+        }
+
+        /** {@inheritDoc} */
+        public void onFailed(InetSocketAddress address, IOException e, int elapsed) {
+            if (isRefused(e)) {
+                addSample(elapsed);
+            }
+            if (address.equals(mMeasureOnly)) {
+                return;
+            }
+            Message m = mCallbackHandler.obtainMessage(HANDLE_UNREACHABLE);
+            m.obj = e;
+            m.sendToTarget();
+        }
+    }
+
     private class MyWorkerCallback implements Worker.Callback {
 
         /** {@inheritDoc} */
-        public void onReachable(byte[] ipAddress, HttpResponse response) {
+        public void onReachable(InetSocketAddress address, HttpResponse response, int latency) {
+            switch (response.getStatusLine().getStatusCode()) {
+                case HttpURLConnection.HTTP_OK:
+                case HttpURLConnection.HTTP_FORBIDDEN:
+                case HttpURLConnection.HTTP_UNAUTHORIZED:
+                    byte[] ipAddress = address.getAddress().getAddress();
+                    mDiscoveryCache.put(mNetwork, ipAddress, address.getPort(), latency);
+                    break;
+            }
             Message m = mCallbackHandler.obtainMessage(HANDLE_REACHABLE);
             m.obj = response;
             m.sendToTarget();
         }
 
         /** {@inheritDoc} */
-        public void onUnreachable(byte[] ipAddress, IOException e) {
+        public void onUnreachable(InetSocketAddress address, IOException e) {
             Message m = mCallbackHandler.obtainMessage(HANDLE_UNREACHABLE);
             m.obj = e;
             m.sendToTarget();
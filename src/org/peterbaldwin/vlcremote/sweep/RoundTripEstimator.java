@@ -0,0 +1,139 @@
+/*-
+ *  Copyright (C) 2011 Peter Baldwin
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.peterbaldwin.vlcremote.sweep;
+
+import java.util.Arrays;
+
+/**
+ * Derives the timeouts of a sweep from the round-trip times measured to the
+ * gateway and to the first hosts that respond.
+ * <p>
+ * Each timeout is a multiple of the 99th percentile round-trip time, clamped
+ * to a range. On a fast network the timeouts shrink, so the sweep finishes
+ * sooner; on a slow link they grow, so slow hosts are not missed. Until a
+ * few samples have been taken, the timeouts are never shorter than the
+ * defaults.
+ * <p>
+ * This class is not thread-safe.
+ */
+final class RoundTripEstimator {
+
+    /**
+     * The number of samples to take; later samples are ignored.
+     */
+    static final int MAX_SAMPLES = 32;
+
+    /**
+     * The number of samples needed before the timeouts can be shorter than
+     * the defaults.
+     */
+    static final int MIN_SAMPLES = 4;
+
+    static final int DEFAULT_CONNECT_TIMEOUT = Worker.DEFAULT_CONNECT_TIMEOUT;
+
+    static final int MIN_CONNECT_TIMEOUT = 300;
+
+    static final int MAX_CONNECT_TIMEOUT = 3000;
+
+    private static final int CONNECT_TIMEOUT_FACTOR = 4;
+
+    static final int DEFAULT_READ_TIMEOUT = Worker.DEFAULT_READ_TIMEOUT;
+
+    static final int MIN_READ_TIMEOUT = 1000;
+
+    static final int MAX_READ_TIMEOUT = 5000;
+
+    /**
+     * Reads wait for the server to build the page as well as for the
+     * network, so they get more time.
+     */
+    private static final int READ_TIMEOUT_FACTOR = 10;
+
+    private final int[] mSamples = new int[MAX_SAMPLES];
+
+    private int mCount;
+
+    /**
+     * The 99th percentile of the samples, or -1 if it must be computed.
+     */
+    private int mPercentile = -1;
+
+    /**
+     * Records a round-trip time.
+     *
+     * @param rtt the round-trip time, in milliseconds.
+     * @return {@code true} if the sample changed the estimate, or
+     *         {@code false} if enough samples have already been taken.
+     */
+    public boolean addSample(int rtt) {
+        if (mCount == MAX_SAMPLES) {
+            return false;
+        }
+        mSamples[mCount++] = Math.max(0, rtt);
+        mPercentile = -1;
+        return true;
+    }
+
+    public int getSampleCount() {
+        return mCount;
+    }
+
+    /**
+     * Returns the connect timeout, in milliseconds.
+     */
+    public int getConnectTimeout() {
+        return getTimeout(CONNECT_TIMEOUT_FACTOR, DEFAULT_CONNECT_TIMEOUT, MIN_CONNECT_TIMEOUT,
+                MAX_CONNECT_TIMEOUT);
+    }
+
+    /**
+     * Returns the read timeout, in milliseconds.
+     */
+    public int getReadTimeout() {
+        return getTimeout(READ_TIMEOUT_FACTOR, DEFAULT_READ_TIMEOUT, MIN_READ_TIMEOUT,
+                MAX_READ_TIMEOUT);
+    }
+
+    private int getTimeout(int factor, int defaultTimeout, int min, int max) {
+        if (mCount == 0) {
+            return defaultTimeout;
+        }
+        long estimate = (long) getPercentile() * factor;
+        int timeout = (int) Math.max(min, Math.min(max, estimate));
+        if (mCount < MIN_SAMPLES) {
+            // Too few samples to be sure that the network is fast
+            timeout = Math.max(timeout, defaultTimeout);
+        }
+        return timeout;
+    }
+
+    /**
+     * Returns the 99th percentile of the samples (for fewer than 100 samples,
+     * the largest).
+     */
+    int getPercentile() {
+        if (mPercentile == -1) {
+            int[] sorted = new int[mCount];
+            System.arraycopy(mSamples, 0, sorted, 0, mCount);
+            Arrays.sort(sorted);
+            int index = (int) Math.ceil(mCount * 0.99) - 1;
+            mPercentile = sorted[Math.max(0, index)];
+        }
+        return mPercentile;
+    }
+}
@@ -0,0 +1,121 @@
+/*-
+ *  Copyright (C) 2011 Peter Baldwin
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.peterbaldwin.vlcremote.sweep;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * Decides the order in which to check addresses during a sweep.
+ * <p>
+ * Addresses closest to the interface address come first, for best results
+ * with DHCP servers that allocate addresses sequentially. Each address is
+ * checked on every port before the next address.
+ */
+final class ScanOrder {
+
+    private static final class Candidate {
+        public final int address;
+
+        public final long distance;
+
+        public final int portIndex;
+
+        public Candidate(int address, long distance, int portIndex) {
+            this.address = address;
+            this.distance = distance;
+            this.portIndex = portIndex;
+        }
+    }
+
+    private static final Comparator<Candidate> sComparator = new Comparator<Candidate>() {
+        /** {@inheritDoc} */
+        public int compare(Candidate a, Candidate b) {
+            if (a.distance != b.distance) {
+                return a.distance < b.distance ? -1 : 1;
+            }
+            if (a.address != b.address) {
+                // Below the interface address first
+                return unsigned(a.address) < unsigned(b.address) ? -1 : 1;
+            }
+            return a.portIndex - b.portIndex;
+        }
+    };
+
+    private ScanOrder() {
+    }
+
+    /**
+     * Returns the addresses to check, in order.
+     *
+     * @param interfaceAddress the address of this device, which is not
+     *            checked.
+     * @param exclude addresses that are checked some other way.
+     */
+    public static List<InetSocketAddress> build(byte[] interfaceAddress,
+            Collection<AddressRange> ranges, int[] ports, Set<InetSocketAddress> exclude) {
+        int origin = AddressRange.toInt(interfaceAddress);
+        Set<Integer> addresses = new HashSet<Integer>();
+        PriorityQueue<Candidate> queue = new PriorityQueue<Candidate>(256, sComparator);
+        for (AddressRange range : ranges) {
+            int last = range.getLast();
+            for (int address = range.getFirst();; address++) {
+                if (address != origin && addresses.add(Integer.valueOf(address))) {
+                    long distance = Math.abs(unsigned(address) - unsigned(origin));
+                    for (int i = 0; i < ports.length; i++) {
+                        queue.add(new Candidate(address, distance, i));
+                    }
+                }
+                if (address == last) {
+                    break;
+                }
+            }
+        }
+        List<InetSocketAddress> order = new ArrayList<InetSocketAddress>(queue.size());
+        while (!queue.isEmpty()) {
+            Candidate candidate = queue.poll();
+            InetSocketAddress address = new InetSocketAddress(toInetAddress(candidate.address),
+                    ports[candidate.portIndex]);
+            if (!exclude.contains(address)) {
+                order.add(address);
+            }
+        }
+        return order;
+    }
+
+    private static long unsigned(int address) {
+        return address & 0xFFFFFFFFL;
+    }
+
+    private static InetAddress toInetAddress(int address) {
+        try {
+            return InetAddress.getByAddress(AddressRange.toByteArray(address));
+        } catch (UnknownHostException e) {
+            // Only thrown for addresses of illegal length
+            throw new IllegalArgumentException(e);
+        }
+    }
+}
@@ -17,53 +17,102 @@
 
 package org.peterbaldwin.vlcremote.sweep;
 
+import org.apache.http.Header;
 import org.apache.http.HttpResponse;
 import org.apache.http.ProtocolVersion;
 import org.apache.http.StatusLine;
-import org.apache.http.entity.InputStreamEntity;
-import org.apache.http.entity.StringEntity;
+import org.apache.http.entity.ByteArrayEntity;
 import org.apache.http.message.BasicHttpResponse;
 import org.apache.http.message.BasicStatusLine;
 import org.apache.http.protocol.HTTP;
-import org.apache.http.util.EntityUtils;
 
-import java.io.FileNotFoundException;
+import android.os.SystemClock;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
-import java.net.HttpURLConnection;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
 import java.net.InetAddress;
-import java.net.MalformedURLException;
-import java.net.SocketTimeoutException;
-import java.net.URL;
+import java.net.InetSocketAddress;
+import java.net.Socket;
 
-final class Worker extends Thread {
+/**
+ * Probes addresses from a {@link Manager} until there are none left or it is
+ * cancelled.
+ * <p>
+ * Each probe has two phases: a TCP connect, which fails fast for hosts that
+ * are not listening, then an HTTP request of which only the headers and the
+ * first {@link #MAX_BODY_LENGTH} bytes of the body are read. That is enough
+ * to recognize VLC, without downloading the large pages of other web
+ * servers.
+ * <p>
+ * A cancelled worker closes the socket of the probe in progress, so it stops
+ * right away instead of waiting for the server or a timeout. Results of a
+ * cancelled worker are not reported.
+ */
+final class Worker implements Runnable {
     public interface Manager {
         /**
-         * Retrieves and removes the next IP address, or returns {@code null} if
+         * Retrieves and removes the next address, or returns {@code null} if
          * there are not more addresses to scan.
          */
-        byte[] pollIpAddress();
+        InetSocketAddress pollAddress();
     }
 
     public interface Callback {
         /**
          * Indicates that an address is reachable.
+         *
+         * @param response the response, whose entity holds at most the first
+         *            {@link Worker#MAX_BODY_LENGTH} bytes of the body.
+         * @param latency the time from connecting to receiving the response
+         *            headers, in milliseconds.
          */
-        void onReachable(byte[] ipAddress, HttpResponse response);
+        void onReachable(InetSocketAddress address, HttpResponse response, int latency);
 
         /**
          * Indicates that an address is unreachable.
          */
-        void onUnreachable(byte[] ipAddress, IOException e);
+        void onUnreachable(InetSocketAddress address, IOException e);
     }
 
-    private final int mPort;
+    /**
+     * The default connect timeout, in milliseconds.
+     */
+    static final int DEFAULT_CONNECT_TIMEOUT = 1000;
+
+    /**
+     * The default read timeout, in milliseconds.
+     */
+    static final int DEFAULT_READ_TIMEOUT = 3000;
+
+    /**
+     * The most bytes of status line and headers to read.
+     */
+    static final int MAX_HEADER_LENGTH = 8 * 1024;
+
+    /**
+     * The most bytes of the response body to read.
+     */
+    static final int MAX_BODY_LENGTH = 4 * 1024;
+
     private final String mPath;
     private Manager mManager;
     private Callback mCallback;
+    private int mConnectTimeout = DEFAULT_CONNECT_TIMEOUT;
+    private int mReadTimeout = DEFAULT_READ_TIMEOUT;
+
+    private volatile boolean mCancelled;
+
+    /**
+     * The socket of the probe in progress, if any.
+     */
+    private volatile Socket mSocket;
 
-    public Worker(int port, String path) {
-        mPort = port;
+    public Worker(String path) {
         mPath = path;
     }
 
@@ -75,60 +124,198 @@ final class Worker extends Thread {
         mCallback = callback;
     }
 
-    private static URL createUrl(String scheme, String host, int port, String path) {
-        try {
-            return new URL("http", host, port, path);
-        } catch (MalformedURLException e) {
-            throw new IllegalArgumentException(e);
-        }
+    /**
+     * Sets the connect timeout, in milliseconds.
+     */
+    public void setConnectTimeout(int timeout) {
+        mConnectTimeout = timeout;
+    }
+
+    /**
+     * Sets the timeout of each read from the server, in milliseconds.
+     */
+    public void setReadTimeout(int timeout) {
+        mReadTimeout = timeout;
     }
 
-    @Override
+    /**
+     * Stops the worker from another thread.
+     */
+    public void cancel() {
+        mCancelled = true;
+        close(mSocket);
+    }
+
+    public boolean isCancelled() {
+        return mCancelled;
+    }
+
+    /** {@inheritDoc} */
     public void run() {
         // Note: InetAddress#isReachable(int) always returns false for Windows
         // hosts because applications do not have permission to perform ICMP
         // echo requests.
-        for (;;) {
-            byte[] ipAddress = mManager.pollIpAddress();
-            if (ipAddress == null) {
+        while (!mCancelled) {
+            InetSocketAddress socketAddress = mManager.pollAddress();
+            if (socketAddress == null) {
                 break;
             }
+            Socket socket = new Socket();
+            mSocket = socket;
             try {
-                InetAddress address = InetAddress.getByAddress(ipAddress);
-                String hostAddress = address.getHostAddress();
-                URL url = createUrl("http", hostAddress, mPort, mPath);
-                HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-                connection.setConnectTimeout(1000);
-                try {
-                    int responseCode = connection.getResponseCode();
-                    String responseMessage = connection.getResponseMessage();
-                    InputStream inputStream = (responseCode == HttpURLConnection.HTTP_OK)
-                            ? connection.getInputStream() : connection.getErrorStream();
-                    try {
-                        int length = connection.getContentLength();
-                        InputStreamEntity entity = new InputStreamEntity(inputStream, length);
-                        entity.setContentType(connection.getContentType());
-
-                        // Copy the entire response body into memory
-                        // before the HTTP connection is closed:
-                        String body = EntityUtils.toString(entity);
-
-                        ProtocolVersion version = new ProtocolVersion("HTTP", 1, 1);
-                        String hostname = address.getHostName();
-                        StatusLine statusLine =
-                                new BasicStatusLine(version, responseCode, responseMessage);
-                        HttpResponse response = new BasicHttpResponse(statusLine);
-                        response.setHeader(HTTP.TARGET_HOST, hostname + ":" + mPort);
-                        response.setEntity(new StringEntity(body));
-                        mCallback.onReachable(ipAddress, response);
-                    } finally {
-                        inputStream.close();
-                    }
-                } finally {
-                    connection.disconnect();
+                if (mCancelled) {
+                    // Cancelled before the socket could be closed
+                    break;
+                }
+                InetAddress address = socketAddress.getAddress();
+                int port = socketAddress.getPort();
+                long start = SystemClock.elapsedRealtime();
+                socket.connect(socketAddress, mConnectTimeout);
+                socket.setSoTimeout(mReadTimeout);
+
+                OutputStream out = socket.getOutputStream();
+                out.write(createRequest(address.getHostAddress(), port, mPath));
+                out.flush();
+                InputStream in = new BufferedInputStream(socket.getInputStream());
+                HttpResponse response = readResponse(in);
+                int latency = (int) (SystemClock.elapsedRealtime() - start);
+
+                String hostname = address.getHostName();
+                response.setHeader(HTTP.TARGET_HOST, hostname + ":" + port);
+                if (!mCancelled) {
+                    mCallback.onReachable(socketAddress, response, latency);
+                }
+            } catch (IOException e) {
+                if (!mCancelled) {
+                    mCallback.onUnreachable(socketAddress, e);
                 }
+            } finally {
+                mSocket = null;
+                close(socket);
+            }
+        }
+    }
+
+    private static byte[] createRequest(String host, int port, String path) {
+        // HTTP/1.0 so that the body is not chunked and the server closes
+        // the connection when it is done
+        String request = "GET " + path + " HTTP/1.0\r\n"
+                + "Host: " + host + ":" + port + "\r\n"
+                + "Connection: close\r\n"
+                + "\r\n";
+        try {
+            return request.getBytes("ISO-8859-1");
+        } catch (UnsupportedEncodingException e) {
+            // Every implementation supports ISO-8859-1
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Reads the status line and headers of a response, and at most
+     * {@link #MAX_BODY_LENGTH} bytes of its body.
+     *
+     * @throws IOException if the response is not HTTP, or its headers are
+     *             longer than {@link #MAX_HEADER_LENGTH}.
+     */
+    static HttpResponse readResponse(InputStream in) throws IOException {
+        String[] lines = readHead(in).split("\\r?\\n");
+        HttpResponse response = new BasicHttpResponse(parseStatusLine(lines[0]));
+        for (int i = 1; i < lines.length; i++) {
+            String line = lines[i];
+            int colon = line.indexOf(':');
+            if (colon > 0) {
+                String name = line.substring(0, colon).trim();
+                String value = line.substring(colon + 1).trim();
+                response.addHeader(name, value);
+            }
+        }
+        int limit = MAX_BODY_LENGTH;
+        Header contentLength = response.getFirstHeader(HTTP.CONTENT_LEN);
+        if (contentLength != null) {
+            try {
+                limit = Math.max(0, Math.min(limit, Integer.parseInt(contentLength.getValue())));
+            } catch (NumberFormatException e) {
+                // Read up to the limit
+            }
+        }
+        ByteArrayEntity entity = new ByteArrayEntity(readBody(in, limit));
+        entity.setContentType(response.getFirstHeader(HTTP.CONTENT_TYPE));
+        response.setEntity(entity);
+        return response;
+    }
+
+    /**
+     * Reads up to the blank line that ends the headers, and returns the text
+     * before it.
+     */
+    private static String readHead(InputStream in) throws IOException {
+        ByteArrayOutputStream head = new ByteArrayOutputStream(512);
+        int newlines = 0;
+        for (;;) {
+            int b = in.read();
+            if (b == -1) {
+                throw new EOFException("Unexpected end of response headers");
+            }
+            if (b == '\n') {
+                if (++newlines == 2) {
+                    break;
+                }
+            } else if (b != '\r') {
+                newlines = 0;
+            }
+            if (head.size() == MAX_HEADER_LENGTH) {
+                throw new IOException("Response headers are too long");
+            }
+            head.write(b);
+        }
+        return head.toString("ISO-8859-1").trim();
+    }
+
+    private static StatusLine parseStatusLine(String line) throws IOException {
+        // For example, "HTTP/1.1 200 OK"
+        String[] parts = line.split(" ", 3);
+        if (parts.length < 2 || !parts[0].startsWith("HTTP/")) {
+            throw new IOException("Not an HTTP response: " + line);
+        }
+        try {
+            String version = parts[0].substring("HTTP/".length());
+            int dot = version.indexOf('.');
+            int major = Integer.parseInt(dot != -1 ? version.substring(0, dot) : version);
+            int minor = (dot != -1) ? Integer.parseInt(version.substring(dot + 1)) : 0;
+            int statusCode = Integer.parseInt(parts[1]);
+            String reasonPhrase = (parts.length == 3) ? parts[2] : "";
+            ProtocolVersion protocolVersion = new ProtocolVersion("HTTP", major, minor);
+            return new BasicStatusLine(protocolVersion, statusCode, reasonPhrase);
+        } catch (NumberFormatException e) {
+            throw new IOException("Malformed status line: " + line);
+        }
+    }
+
+    private static byte[] readBody(InputStream in, int limit) throws IOException {
+        byte[] body = new byte[limit];
+        int length = 0;
+        while (length < limit) {
+            int n = in.read(body, length, limit - length);
+            if (n == -1) {
+                break;
+            }
+            length += n;
+        }
+        if (length == limit) {
+            return body;
+        }
+        byte[] copy = new byte[length];
+        System.arraycopy(body, 0, copy, 0, length);
+        return copy;
+    }
+
+    private static void close(Socket socket) {
+        if (socket != null) {
+            try {
+                socket.close();
             } catch (IOException e) {
-                mCallback.onUnreachable(ipAddress, e);
+                // Ignore
             }
         }
     }
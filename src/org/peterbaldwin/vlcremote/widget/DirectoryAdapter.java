@@ -20,68 +20,123 @@ package org.peterbaldwin.vlcremote.widget;
 import org.peterbaldwin.client.android.vlcremote.R;
 import org.peterbaldwin.vlcremote.model.Directory;
 import org.peterbaldwin.vlcremote.model.File;
+import org.peterbaldwin.vlcremote.model.NameIndex;
+import org.peterbaldwin.vlcremote.model.SectionIndex;
 
 import android.content.Context;
+import android.os.Build;
+import android.text.TextUtils;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.ArrayAdapter;
+import android.widget.Filter;
 import android.widget.ImageView;
 import android.widget.SectionIndexer;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Locale;
+import java.util.Collection;
+import java.util.Comparator;
 
 public class DirectoryAdapter extends ArrayAdapter<File> implements SectionIndexer {
 
-    private Object[] mSections = new Object[0];
+    private SectionIndex mSectionIndex = SectionIndex.EMPTY;
 
-    private Integer[] mPositionForSection = new Integer[0];
+    private final String mParentSection;
 
-    private Integer[] mSectionForPosition = new Integer[0];
+    /**
+     * All of the files, before filtering.
+     */
+    private volatile Directory mDirectory;
+
+    /**
+     * The text that the files are filtered by, if any.
+     */
+    private CharSequence mConstraint;
+
+    private DirectoryFilter mFilter;
 
     public DirectoryAdapter(Context context) {
         super(context, R.layout.file_list_item, android.R.id.text1);
+        mParentSection = context.getString(R.string.section_parent);
     }
 
     /** {@inheritDoc} */
     public int getPositionForSection(int section) {
-        if (section < 0) {
-            section = 0;
-        }
-        if (section >= mPositionForSection.length) {
-            section = mPositionForSection.length - 1;
-        }
-        return mPositionForSection[section];
+        return mSectionIndex.getPositionForSection(section);
     }
 
     /** {@inheritDoc} */
     public int getSectionForPosition(int position) {
-        if (position < 0) {
-            position = 0;
-        }
-        if (position >= mSectionForPosition.length) {
-            position = mSectionForPosition.length - 1;
-        }
-        return mSectionForPosition[position];
+        return mSectionIndex.getSectionForPosition(position);
     }
 
     /** {@inheritDoc} */
     public Object[] getSections() {
-        return mSections;
+        return mSectionIndex.getSections();
+    }
+
+    @Override
+    public Filter getFilter() {
+        if (mFilter == null) {
+            mFilter = new DirectoryFilter();
+        }
+        return mFilter;
     }
 
+    /**
+     * Not supported: the files are only replaced through
+     * {@link #setDirectory(Directory)}, which keeps the section index and the
+     * filter in step with them.
+     */
     @Override
     public void add(File object) {
         throw new UnsupportedOperationException();
     }
 
+    /**
+     * Not supported; see {@link #add(File)}.
+     */
+    @Override
+    public void addAll(Collection<? extends File> collection) {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Not supported; see {@link #add(File)}.
+     */
+    @Override
+    public void addAll(File... items) {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Not supported; see {@link #add(File)}.
+     */
+    @Override
+    public void insert(File object, int index) {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Not supported; see {@link #add(File)}.
+     */
+    @Override
+    public void remove(File object) {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Not supported; see {@link #add(File)}.
+     */
+    @Override
+    public void sort(Comparator<? super File> comparator) {
+        throw new UnsupportedOperationException();
+    }
+
     @Override
     public void clear() {
         super.clear();
-        mSections = new Object[0];
-        mPositionForSection = new Integer[0];
-        mSectionForPosition = new Integer[0];
+        mDirectory = null;
+        mSectionIndex = SectionIndex.EMPTY;
     }
 
     @Override
@@ -89,83 +144,123 @@ public class DirectoryAdapter extends ArrayAdapter<File> implements SectionIndex
         View v = super.getView(position, convertView, parent);
         File file = getItem(position);
         ImageView icon = (ImageView) v.findViewById(android.R.id.icon);
-        if (file.isDirectory()) {
-            String name = file.getName();
-            if ("..".equals(name)) {
-                icon.setImageResource(R.drawable.ic_up);
-            } else {
-                icon.setImageResource(R.drawable.ic_directory);
-            }
-        } else {
-            String contentType = file.getMimeType();
-            if (contentType != null) {
-                contentType = contentType.toLowerCase(Locale.US);
-                if (contentType.startsWith("audio/")) {
-                    icon.setImageResource(R.drawable.ic_mime_audio);
-                } else if (contentType.startsWith("image/")) {
-                    icon.setImageResource(R.drawable.ic_mime_image);
-                } else if (contentType.startsWith("video/")) {
-                    icon.setImageResource(R.drawable.ic_mime_video);
+        switch (file.getMediaClass()) {
+            case File.MEDIA_DIRECTORY:
+                if ("..".equals(file.getName())) {
+                    icon.setImageResource(R.drawable.ic_up);
                 } else {
-                    icon.setImageResource(R.drawable.ic_file);
+                    icon.setImageResource(R.drawable.ic_directory);
                 }
-            } else {
+                break;
+            case File.MEDIA_AUDIO:
+                icon.setImageResource(R.drawable.ic_mime_audio);
+                break;
+            case File.MEDIA_IMAGE:
+                icon.setImageResource(R.drawable.ic_mime_image);
+                break;
+            case File.MEDIA_VIDEO:
+                icon.setImageResource(R.drawable.ic_mime_video);
+                break;
+            default:
                 icon.setImageResource(R.drawable.ic_file);
-            }
+                break;
         }
         return v;
     }
 
-    private String getSection(File file) {
-        String name = file.getName();
-        if (name.equals("..")) {
-            Context context = getContext();
-            return context.getString(R.string.section_parent);
-        } else if (name.length() > 0) {
-            char c = name.charAt(0);
-            c = Character.toUpperCase(c);
-            return String.valueOf(c);
+    /**
+     * Replaces the contents of the adapter.
+     * <p>
+     * The section index is normally built by the loader; it is only built
+     * here if the directory doesn't have one. If the files are being
+     * filtered, the new files are filtered by the same text.
+     */
+    public void setDirectory(Directory items) {
+        if (items != null && items.getSectionIndex() == null) {
+            items.buildSectionIndex(mParentSection);
+        }
+        mDirectory = items;
+        if (mFilter != null && !TextUtils.isEmpty(mConstraint)) {
+            mFilter.filter(mConstraint);
         } else {
-            // This shouldn't happen
-            return "";
+            setFiles(items);
         }
     }
 
-    public void setDirectory(Directory items) {
+    private void setFiles(Directory items) {
+        // Notify once at the end, not once per file
+        setNotifyOnChange(false);
         super.clear();
         if (items != null) {
-            int count = items.size();
-            // Space for every letter and digit, plus a couple symbols
-            int capacity = 48;
-            Integer lastSection = null;
-            List<String> sections = new ArrayList<String>(capacity);
-            List<Integer> positionForSection = new ArrayList<Integer>(capacity);
-            List<Integer> sectionForPosition = new ArrayList<Integer>(count);
-
-            for (int position = 0; position < count; position++) {
-                File file = items.get(position);
-                String section = getSection(file);
-                if (!sections.contains(section)) {
-                    lastSection = Integer.valueOf(sections.size());
-                    sections.add(section);
-                    positionForSection.add(Integer.valueOf(position));
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB) {
+                super.addAll(items);
+            } else {
+                // addAll was added in Honeycomb, so copy the files one by one
+                for (int position = 0, count = items.size(); position < count; position++) {
+                    super.add(items.get(position));
                 }
-                sectionForPosition.add(lastSection);
-                super.add(file);
             }
+            mSectionIndex = items.getSectionIndex();
+        } else {
+            mSectionIndex = SectionIndex.EMPTY;
+        }
+        notifyDataSetChanged();
+    }
 
-            mSections = sections.toArray();
+    private static final class Matches {
+        public final Directory source;
 
-            mPositionForSection = toArray(positionForSection);
-            mSectionForPosition = toArray(sectionForPosition);
-        } else {
-            mSections = new Object[0];
-            mPositionForSection = new Integer[0];
-            mSectionForPosition = new Integer[0];
+        public final Directory files;
+
+        public Matches(Directory source, Directory files) {
+            this.source = source;
+            this.files = files;
         }
     }
 
-    private static Integer[] toArray(List<Integer> list) {
-        return list.toArray(new Integer[list.size()]);
+    /**
+     * Filters the files by name.
+     * <p>
+     * Filtering runs on the filter's own thread. Each key press narrows the
+     * previous matches instead of searching every file again, and the
+     * section index for the matches is built before they are published.
+     */
+    private final class DirectoryFilter extends Filter {
+
+        /**
+         * Only used on the filter thread.
+         */
+        private NameIndex mIndex;
+
+        @Override
+        protected FilterResults performFiltering(CharSequence constraint) {
+            Directory source = mDirectory;
+            Directory files;
+            if (source == null || TextUtils.isEmpty(constraint)) {
+                files = source;
+            } else {
+                if (mIndex == null || mIndex.getFiles() != source) {
+                    mIndex = new NameIndex(source);
+                }
+                files = mIndex.filter(constraint);
+                files.buildSectionIndex(mParentSection);
+            }
+            FilterResults results = new FilterResults();
+            results.values = new Matches(source, files);
+            results.count = (files != null) ? files.size() : 0;
+            return results;
+        }
+
+        @Override
+        protected void publishResults(CharSequence constraint, FilterResults results) {
+            Matches matches = (Matches) results.values;
+            mConstraint = constraint;
+            if (matches.source != mDirectory) {
+                // The directory was replaced while filtering
+                filter(constraint);
+                return;
+            }
+            setFiles(matches.files);
+        }
     }
 }
@@ -2,8 +2,8 @@
 package org.peterbaldwin.vlcremote.widget;
 
 import org.peterbaldwin.client.android.vlcremote.R;
+import org.peterbaldwin.vlcremote.model.Playlist;
 import org.peterbaldwin.vlcremote.model.PlaylistItem;
-import org.peterbaldwin.vlcremote.model.Track;
 
 import android.content.Context;
 import android.text.TextUtils;
@@ -14,12 +14,15 @@ import android.widget.AdapterView;
 import android.widget.BaseAdapter;
 import android.widget.TextView;
 
-import java.util.ArrayList;
-import java.util.List;
-
+/**
+ * Shows the tracks in a {@link Playlist}.
+ * <p>
+ * Rows are bound straight from the playlist columns, so scrolling does not
+ * allocate a {@link PlaylistItem} per row.
+ */
 public final class PlaylistAdapter extends BaseAdapter {
 
-    private List<PlaylistItem> mItems;
+    private Playlist mPlaylist;
 
     /** {@inheritDoc} */
     public View getView(int position, View convertView, ViewGroup parent) {
@@ -32,33 +35,28 @@ public final class PlaylistAdapter extends BaseAdapter {
         TextView text1 = (TextView) view.findViewById(android.R.id.text1);
         TextView text2 = (TextView) view.findViewById(android.R.id.text2);
         View icon = view.findViewById(android.R.id.icon);
-        PlaylistItem item = getItem(position);
-        if (item instanceof Track) {
-            Track track = (Track) item;
-            if (!TextUtils.isEmpty(track.getTitle())) {
-                text1.setText(track.getTitle());
-                text2.setText(track.getArtist());
-            } else {
-                text1.setText(item.getName());
-                text2.setText("");
-            }
-            icon.setVisibility(track.isCurrent() ? View.VISIBLE : View.GONE);
+        String title = mPlaylist.getTitle(position);
+        if (!TextUtils.isEmpty(title)) {
+            text1.setText(title);
+            text2.setText(mPlaylist.getArtist(position));
         } else {
-            text1.setText(item.getName());
+            text1.setText(mPlaylist.getName(position));
             text2.setText("");
-            icon.setVisibility(View.GONE);
         }
+        icon.setVisibility(mPlaylist.isCurrent(position) ? View.VISIBLE : View.GONE);
         return view;
     }
 
     /** {@inheritDoc} */
     public int getCount() {
-        return mItems != null ? mItems.size() : 0;
+        return mPlaylist != null ? mPlaylist.size() : 0;
     }
 
-    /** {@inheritDoc} */
+    /**
+     * Returns a copy of the track at {@code position}.
+     */
     public PlaylistItem getItem(int position) {
-        return mItems.get(position);
+        return mPlaylist.get(position);
     }
 
     @Override
@@ -69,29 +67,22 @@ public final class PlaylistAdapter extends BaseAdapter {
     /** {@inheritDoc} */
     public long getItemId(int position) {
         if (position < getCount()) {
-            PlaylistItem item = getItem(position);
-            return item.getId();
+            return mPlaylist.getId(position);
         } else {
             return AdapterView.INVALID_ROW_ID;
         }
     }
 
-    public void setItems(List<PlaylistItem> items) {
-        mItems = items;
-        if (mItems != null) {
+    public void setPlaylist(Playlist playlist) {
+        mPlaylist = playlist;
+        if (mPlaylist != null) {
             notifyDataSetChanged();
         } else {
             notifyDataSetInvalidated();
         }
     }
 
-    public List<PlaylistItem> getItems() {
-        int count = getCount();
-        List<PlaylistItem> items = new ArrayList<PlaylistItem>(count);
-        for (int position = 0; position < count; position++) {
-            PlaylistItem item = getItem(position);
-            items.add(item);
-        }
-        return items;
+    public Playlist getPlaylist() {
+        return mPlaylist;
     }
 }
@@ -0,0 +1,82 @@
+/*-
+ *  Copyright (C) 2011 Peter Baldwin
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.peterbaldwin.vlcremote.loader;
+
+import org.peterbaldwin.vlcremote.model.Directory;
+import org.peterbaldwin.vlcremote.model.File;
+
+import junit.framework.TestCase;
+
+public class DirectoryCacheTest extends TestCase {
+
+	private static final String AUTHORITY = "192.168.1.2:8080";
+
+	private static Directory createDirectory(String path, int count) {
+		Directory directory = new Directory();
+		directory.add(new File("directory", null, null, path + "/..", "..", null));
+		for (int i = 1; i < count; i++) {
+			directory.add(new File("file", 1L, null, path + "/" + i + ".mp3", i + ".mp3", "mp3"));
+		}
+		return directory;
+	}
+
+	public void testNormalize() {
+		assertEquals("/music", DirectoryCache.normalize("/music"));
+		assertEquals("/music", DirectoryCache.normalize("/music/"));
+		assertEquals("/music", DirectoryCache.normalize("/music/rock/.."));
+		assertEquals("/music", DirectoryCache.normalize("/music/rock/../"));
+		assertEquals("", DirectoryCache.normalize("/music/.."));
+		assertEquals("C:/Music", DirectoryCache.normalize("C:\\Music\\Rock\\.."));
+		assertEquals("", DirectoryCache.normalize("C:\\.."));
+		assertEquals("~", DirectoryCache.normalize("~"));
+	}
+
+	public void testParentHitsCache() {
+		DirectoryCache cache = new DirectoryCache(100);
+		Directory music = createDirectory("/music", 3);
+		cache.put(AUTHORITY, "/music", music);
+		assertSame(music, cache.get(AUTHORITY, "/music/rock/..").directory);
+		assertNull(cache.get("other:8080", "/music"));
+	}
+
+	public void testCachedByActualPath() {
+		DirectoryCache cache = new DirectoryCache(100);
+		Directory home = createDirectory("/home/user", 3);
+		cache.put(AUTHORITY, "~", home);
+		assertSame(home, cache.get(AUTHORITY, "~").directory);
+		assertSame(home, cache.get(AUTHORITY, "/home/user").directory);
+	}
+
+	public void testEvictsLeastRecentlyUsed() {
+		DirectoryCache cache = new DirectoryCache(25);
+		cache.put(AUTHORITY, "/a", createDirectory("/a", 9));
+		cache.put(AUTHORITY, "/b", createDirectory("/b", 9));
+		assertNotNull(cache.get(AUTHORITY, "/a"));
+		cache.put(AUTHORITY, "/c", createDirectory("/c", 9));
+		assertNotNull(cache.get(AUTHORITY, "/a"));
+		assertNull(cache.get(AUTHORITY, "/b"));
+		assertNotNull(cache.get(AUTHORITY, "/c"));
+	}
+
+	public void testRemove() {
+		DirectoryCache cache = new DirectoryCache(100);
+		cache.put(AUTHORITY, "/music", createDirectory("/music", 3));
+		cache.remove(AUTHORITY, "/music/");
+		assertNull(cache.get(AUTHORITY, "/music"));
+	}
+}
@@ -0,0 +1,54 @@
+/*-
+ *  Copyright (C) 2011 Peter Baldwin
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.peterbaldwin.vlcremote.loader;
+
+import org.peterbaldwin.vlcremote.model.Directory;
+import org.peterbaldwin.vlcremote.model.File;
+
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+public class DirectoryPrefetcherTest extends TestCase {
+
+	private static Directory createDirectory() {
+		Directory directory = new Directory();
+		directory.add(new File("directory", null, null, "/music/..", "..", null));
+		directory.add(new File("file", 1L, null, "/music/a.mp3", "a.mp3", "mp3"));
+		for (String name : new String[] { "Blues", "Jazz", "Pop", "Rock", "Soul" }) {
+			directory.add(new File("directory", null, null, "/music/" + name, name, null));
+		}
+		return directory;
+	}
+
+	public void testCandidates() {
+		assertEquals(Arrays.asList("/music/..", "/music/Blues", "/music/Jazz", "/music/Pop"),
+				DirectoryPrefetcher.getCandidates(createDirectory(), null));
+	}
+
+	public void testPreviousChildFirst() {
+		assertEquals(Arrays.asList("/music/Rock", "/music/..", "/music/Blues", "/music/Jazz",
+				"/music/Pop"), DirectoryPrefetcher.getCandidates(createDirectory(), "/music/Rock/"));
+	}
+
+	public void testPreviousParent() {
+		// Coming down from the parent doesn't add a candidate
+		assertEquals(Arrays.asList("/music/..", "/music/Blues", "/music/Jazz", "/music/Pop"),
+				DirectoryPrefetcher.getCandidates(createDirectory(), "/"));
+	}
+}
@@ -0,0 +1,158 @@
+/*-
+ *  Copyright (C) 2011 Peter Baldwin
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.peterbaldwin.vlcremote.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+public class DirectorySortTest extends TestCase {
+
+	private static File file(String name, Long size, String date, String extension) {
+		return new File("file", size, date, "/media/" + name, name, extension);
+	}
+
+	private static File dir(String name) {
+		return new File("dir", null, null, "/media/" + name, name, null);
+	}
+
+	private static List<String> names(Directory directory) {
+		List<String> names = new ArrayList<String>(directory.size());
+		for (File file : directory) {
+			names.add(file.getName());
+		}
+		return names;
+	}
+
+	private static Directory createDirectory(File... files) {
+		Directory directory = new Directory();
+		directory.addAll(Arrays.asList(files));
+		return directory;
+	}
+
+	public void testNaturalOrder() {
+		Directory directory = createDirectory(file("Track 10.mp3", null, null, "mp3"),
+				file("track 2.mp3", null, null, "mp3"), file("Track 1.mp3", null, null, "mp3"),
+				file("track 02b.mp3", null, null, "mp3"), file("Album", null, null, null));
+		new DirectorySort(DirectorySort.BY_NAME, false).sort(directory);
+		assertEquals(Arrays.asList("Album", "Track 1.mp3", "track 2.mp3", "track 02b.mp3",
+				"Track 10.mp3"), names(directory));
+	}
+
+	public void testCompareNatural() {
+		assertTrue(DirectorySort.compareNatural("a2", "a10") < 0);
+		assertTrue(DirectorySort.compareNatural("a007", "a7") == 0);
+		assertTrue(DirectorySort.compareNatural("a", "a1") < 0);
+		assertTrue(DirectorySort.compareNatural("a99999999999999999999", "a100000000000000000000") < 0);
+	}
+
+	public void testParentAndDirectoriesFirst() {
+		Directory directory = createDirectory(file("a.mp3", null, null, "mp3"), dir("z"),
+				dir(".."), dir("b"));
+		new DirectorySort(DirectorySort.BY_NAME, true).sort(directory);
+		assertEquals(Arrays.asList("..", "b", "z", "a.mp3"), names(directory));
+
+		new DirectorySort(DirectorySort.BY_NAME, false).sort(directory);
+		assertEquals(Arrays.asList("..", "a.mp3", "b", "z"), names(directory));
+	}
+
+	public void testSize() {
+		Directory directory = createDirectory(file("small", 1L, null, null),
+				file("unknown", null, null, null), file("large", 100L, null, null));
+		new DirectorySort(DirectorySort.BY_SIZE, true).sort(directory);
+		assertEquals(Arrays.asList("large", "small", "unknown"), names(directory));
+	}
+
+	public void testDate() {
+		// As sent by the Lua interface (os.date("%c")) and the legacy
+		// interface (ctime()), which pads the day with a space
+		Directory directory = createDirectory(file("old", null, "Thu Jan  1 10:00:00 2009", null),
+				file("new", null, "Mon Jun  6 21:49:08 2011", null),
+				file("newer", null, "Thu Jun 30 21:49:08 2011", null),
+				file("none", null, null, null), file("garbage", null, "yesterday", null));
+		new DirectorySort(DirectorySort.BY_DATE, true).sort(directory);
+		assertEquals(Arrays.asList("newer", "new", "old", "garbage", "none"), names(directory));
+	}
+
+	public void testWindowsDate() {
+		Directory directory = createDirectory(file("old", null, "12/31/10 23:59:59", null),
+				file("new", null, "01/01/11 00:00:00", null));
+		new DirectorySort(DirectorySort.BY_DATE, true).sort(directory);
+		assertEquals(Arrays.asList("new", "old"), names(directory));
+	}
+
+	public void testModificationTime() {
+		// The modification time wins over the date string when both are sent
+		File old = file("old", null, "Thu Jun 30 21:49:08 2011", null);
+		old.setModificationTime(Long.valueOf(1000L));
+		File recent = file("recent", null, "Thu Jan  1 10:00:00 2009", null);
+		recent.setModificationTime(Long.valueOf(1309470548000L));
+		Directory directory = createDirectory(old, recent);
+		new DirectorySort(DirectorySort.BY_DATE, true).sort(directory);
+		assertEquals(Arrays.asList("recent", "old"), names(directory));
+	}
+
+	public void testParseDate() {
+		DirectorySort.DateParser parser = new DirectorySort.DateParser();
+		Long time = parser.parse("Thu Jun 30 21:49:08 2011");
+		assertNotNull(time);
+		assertEquals(time, parser.parse("Thu Jun 30 21:49:08 2011\n"));
+		assertNull(parser.parse("2011-06-30"));
+		assertNull(parser.parse(null));
+	}
+
+	public void testType() {
+		Directory directory = createDirectory(file("b.avi", null, null, "avi"),
+				file("c.txt", null, null, "txt"), file("a.mp3", null, null, "mp3"),
+				file("a.avi", null, null, "avi"));
+		new DirectorySort(DirectorySort.BY_TYPE, true).sort(directory);
+		// Audio, then video, then everything else, although "text/plain"
+		// comes before "video/x-msvideo"
+		assertEquals(Arrays.asList("a.mp3", "a.avi", "b.avi", "c.txt"), names(directory));
+	}
+
+	public void testTypeTiebreak() {
+		Directory directory = createDirectory(file("b.mp3", null, null, "mp3"),
+				file("a.ogg", null, null, "ogg"), dir("z"), file("c.jpg", null, null, "jpg"));
+		new DirectorySort(DirectorySort.BY_TYPE, false).sort(directory);
+		// Directories, audio by MIME type ("audio/mpeg" before "audio/ogg"),
+		// then images
+		assertEquals(Arrays.asList("z", "b.mp3", "a.ogg", "c.jpg"), names(directory));
+	}
+
+	public void testSortIsRecorded() {
+		Directory directory = createDirectory(dir("a"));
+		assertNull(directory.getSort());
+		DirectorySort sort = new DirectorySort(DirectorySort.BY_DATE, false);
+		sort.sort(directory);
+		assertEquals(new DirectorySort(DirectorySort.BY_DATE, false), directory.getSort());
+		assertFalse(DirectorySort.DEFAULT.equals(directory.getSort()));
+	}
+
+	public void testLargeDirectory() {
+		Directory directory = new Directory(10000);
+		for (int i = 10000; i > 0; i--) {
+			directory.add(file("Episode " + i + ".mkv", Long.valueOf(i), null, "mkv"));
+		}
+		new DirectorySort(DirectorySort.BY_NAME, true).sort(directory);
+		assertEquals("Episode 1.mkv", directory.get(0).getName());
+		assertEquals("Episode 10000.mkv", directory.get(9999).getName());
+	}
+}
@@ -0,0 +1,54 @@
+/*-
+ *  Copyright (C) 2011 Peter Baldwin
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.peterbaldwin.vlcremote.model;
+
+import junit.framework.TestCase;
+
+public class FileTest extends TestCase {
+
+	private static File file(String type, String path, String extension) {
+		return new File(type, null, null, path, null, extension);
+	}
+
+	public void testMediaClass() {
+		assertEquals(File.MEDIA_DIRECTORY, file("dir", "/music", null).getMediaClass());
+		assertEquals(File.MEDIA_DIRECTORY, file("directory", "/music.mp3", null).getMediaClass());
+		assertEquals(File.MEDIA_AUDIO, file("file", "/a.mp3", "mp3").getMediaClass());
+		assertEquals(File.MEDIA_AUDIO, file("file", "/A.MP3", "MP3").getMediaClass());
+		assertEquals(File.MEDIA_VIDEO, file("file", "/a.avi", null).getMediaClass());
+		assertEquals(File.MEDIA_IMAGE, file("file", "/a.jpg", "jpg").getMediaClass());
+		assertEquals(File.MEDIA_OTHER, file("file", "/a.txt", "txt").getMediaClass());
+		assertEquals(File.MEDIA_OTHER, file("file", "/readme", null).getMediaClass());
+	}
+
+	public void testImage() {
+		assertTrue(file("file", "/a.jpg", "jpg").isImage());
+		assertFalse(file("file", "/a.mp3", "mp3").isImage());
+	}
+
+	public void testMediaClassFollowsChanges() {
+		File file = file("file", null, null);
+		assertEquals(File.MEDIA_OTHER, file.getMediaClass());
+		file.setPath("/a.mp3");
+		assertEquals(File.MEDIA_AUDIO, file.getMediaClass());
+		file.setExtension("jpg");
+		assertEquals(File.MEDIA_IMAGE, file.getMediaClass());
+		file.setType("dir");
+		assertEquals(File.MEDIA_DIRECTORY, file.getMediaClass());
+	}
+}
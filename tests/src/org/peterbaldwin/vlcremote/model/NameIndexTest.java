@@ -0,0 +1,88 @@
+/*-
+ *  Copyright (C) 2011 Peter Baldwin
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.peterbaldwin.vlcremote.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+public class NameIndexTest extends TestCase {
+
+	private static Directory createDirectory(String... names) {
+		Directory directory = new Directory();
+		for (String name : names) {
+			directory.add(new File("file", null, null, "/music/" + name, name, null));
+		}
+		return directory;
+	}
+
+	private static List<String> names(Directory directory) {
+		List<String> names = new ArrayList<String>(directory.size());
+		for (File file : directory) {
+			names.add(file.getName());
+		}
+		return names;
+	}
+
+	public void testFilter() {
+		NameIndex index = new NameIndex(createDirectory("..", "Abba", "Black Sabbath", "Cream"));
+		assertEquals(Arrays.asList("..", "Abba", "Black Sabbath"), names(index.filter("AB")));
+		assertEquals(Arrays.asList("..", "Abba", "Black Sabbath"), names(index.filter("abb")));
+		assertEquals(Arrays.asList("..", "Black Sabbath"), names(index.filter("abbat")));
+		assertEquals(Arrays.asList("..", "Black Sabbath"), names(index.filter("sabb")));
+	}
+
+	public void testWiden() {
+		NameIndex index = new NameIndex(createDirectory("Abba", "Cream", "Cure"));
+		assertEquals(Arrays.asList("Cream"), names(index.filter("cre")));
+		// Deleting a character searches all of the files again
+		assertEquals(Arrays.asList("Cream", "Cure"), names(index.filter("c")));
+		assertEquals(Arrays.asList("Abba", "Cream", "Cure"), names(index.filter("")));
+		assertEquals(Arrays.asList("Abba", "Cream", "Cure"), names(index.filter(null)));
+	}
+
+	public void testNoMatches() {
+		NameIndex index = new NameIndex(createDirectory("Abba"));
+		assertTrue(index.filter("x").isEmpty());
+		assertTrue(index.filter("xy").isEmpty());
+		assertEquals(1, index.filter("a").size());
+	}
+
+	public void testLargeDirectory() {
+		Directory directory = new Directory(20000);
+		for (int i = 0; i < 20000; i++) {
+			directory.add(new File("file", null, null, "/" + i, "Episode " + i + ".mkv", "mkv"));
+		}
+		NameIndex index = new NameIndex(directory);
+		String query = "episode 1999";
+		int previous = directory.size();
+		for (int length = 1; length <= query.length(); length++) {
+			// Each key press narrows the previous matches
+			int count = index.filter(query.substring(0, length)).size();
+			assertTrue(count <= previous);
+			previous = count;
+		}
+		assertEquals(Arrays.asList("Episode 1999.mkv", "Episode 19990.mkv",
+				"Episode 19991.mkv", "Episode 19992.mkv", "Episode 19993.mkv",
+				"Episode 19994.mkv", "Episode 19995.mkv", "Episode 19996.mkv",
+				"Episode 19997.mkv", "Episode 19998.mkv", "Episode 19999.mkv"),
+				names(index.filter(query)));
+	}
+}
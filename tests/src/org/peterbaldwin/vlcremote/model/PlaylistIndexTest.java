@@ -0,0 +1,154 @@
+/*-
+ *  Copyright (C) 2011 Peter Baldwin
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.peterbaldwin.vlcremote.model;
+
+import junit.framework.TestCase;
+
+public class PlaylistIndexTest extends TestCase {
+
+	private static Playlist createPlaylist(int currentId, int... ids) {
+		Playlist playlist = new Playlist(1, "Playlist");
+		for (int id : ids) {
+			Track track = new Track();
+			track.setId(id);
+			track.setName(id + ".mp3");
+			track.setCurrent(id == currentId);
+			playlist.add(track);
+		}
+		return playlist;
+	}
+
+	private static void assertIds(PlaylistIndex index, int... ids) {
+		Playlist playlist = index.getPlaylist();
+		assertEquals(ids.length, playlist.size());
+		for (int position = 0; position < ids.length; position++) {
+			assertEquals(ids[position], playlist.getId(position));
+			assertTrue(index.contains(ids[position]));
+		}
+	}
+
+	public void testFirstUpdate() {
+		PlaylistIndex index = new PlaylistIndex();
+		Playlist playlist = createPlaylist(5, 4, 5, 6);
+		assertTrue(index.update(playlist));
+		assertSame(playlist, index.getPlaylist());
+		assertEquals(1, index.getCurrentPosition());
+	}
+
+	public void testUnchanged() {
+		PlaylistIndex index = new PlaylistIndex();
+		Playlist playlist = createPlaylist(5, 4, 5, 6);
+		index.update(playlist);
+		assertFalse(index.update(createPlaylist(5, 4, 5, 6)));
+		assertSame(playlist, index.getPlaylist());
+	}
+
+	public void testInsertAndDelete() {
+		PlaylistIndex index = new PlaylistIndex();
+		Playlist playlist = createPlaylist(5, 4, 5, 6, 7);
+		index.update(playlist);
+		// 4 and 6 were removed, 3 and 8 were enqueued
+		assertTrue(index.update(createPlaylist(5, 3, 5, 7, 8)));
+		assertSame(playlist, index.getPlaylist());
+		assertIds(index, 3, 5, 7, 8);
+		assertFalse(index.contains(4));
+		assertFalse(index.contains(6));
+		assertEquals(1, index.getCurrentPosition());
+		assertTrue(index.setCurrent(8));
+		assertEquals(3, index.getCurrentPosition());
+		assertTrue(playlist.isCurrent(3));
+		assertFalse(playlist.isCurrent(1));
+	}
+
+	public void testUpdateAppended() {
+		PlaylistIndex index = new PlaylistIndex();
+		Playlist playlist = createPlaylist(0, 1, 2);
+		index.update(playlist);
+		assertTrue(index.update(createPlaylist(0, 1, 2, 3, 4)));
+		assertSame(playlist, index.getPlaylist());
+		assertIds(index, 1, 2, 3, 4);
+		assertEquals(-1, index.getCurrentPosition());
+	}
+
+	public void testChangedRow() {
+		PlaylistIndex index = new PlaylistIndex();
+		Playlist playlist = createPlaylist(0, 1, 2);
+		index.update(playlist);
+		Track track = playlist.get(1);
+		track.setTitle("Title");
+		Playlist changed = createPlaylist(0, 1);
+		changed.add(track);
+		assertTrue(index.update(changed));
+		assertSame(playlist, index.getPlaylist());
+		assertEquals("Title", playlist.getTitle(1));
+	}
+
+	public void testCurrentMoved() {
+		PlaylistIndex index = new PlaylistIndex();
+		index.update(createPlaylist(1, 1, 2));
+		assertTrue(index.update(createPlaylist(2, 1, 2)));
+		assertEquals(1, index.getCurrentPosition());
+		assertFalse(index.getPlaylist().isCurrent(0));
+	}
+
+	public void testMoved() {
+		PlaylistIndex index = new PlaylistIndex();
+		Playlist playlist = createPlaylist(0, 1, 2, 3);
+		index.update(playlist);
+		Playlist moved = createPlaylist(0, 3, 1, 2);
+		assertTrue(index.update(moved));
+		assertSame(moved, index.getPlaylist());
+		assertIds(index, 3, 1, 2);
+	}
+
+	public void testAppend() {
+		PlaylistIndex index = new PlaylistIndex();
+		Playlist first = createPlaylist(0, 1, 2);
+		assertTrue(index.append(first));
+		assertSame(first, index.getPlaylist());
+		assertTrue(index.append(createPlaylist(4, 3, 4)));
+		assertIds(index, 1, 2, 3, 4);
+		assertEquals(3, index.getCurrentPosition());
+		assertFalse(index.append(createPlaylist(0)));
+
+		// The complete playlist is merged
+		assertFalse(index.update(createPlaylist(4, 1, 2, 3, 4)));
+		assertSame(first, index.getPlaylist());
+	}
+
+	public void testAppendStartsOver() {
+		PlaylistIndex index = new PlaylistIndex();
+		index.append(createPlaylist(0, 1, 2));
+		index.append(createPlaylist(0, 3, 4));
+		// The load was restarted
+		Playlist first = createPlaylist(0, 1, 2);
+		index.append(first);
+		assertSame(first, index.getPlaylist());
+		assertIds(index, 1, 2);
+		assertFalse(index.contains(3));
+	}
+
+	public void testClear() {
+		PlaylistIndex index = new PlaylistIndex();
+		index.update(createPlaylist(1, 1, 2));
+		index.clear();
+		assertNull(index.getPlaylist());
+		assertFalse(index.contains(1));
+		assertEquals(-1, index.getCurrentPosition());
+	}
+}
@@ -0,0 +1,298 @@
+/*-
+ *  Copyright (C) 2011 Peter Baldwin
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.peterbaldwin.vlcremote.model;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.BitSet;
+
+import junit.framework.TestCase;
+
+public class PlaylistTest extends TestCase {
+
+	private static Track createTrack(int id) {
+		Track track = new Track();
+		track.setId(id);
+		track.setUri("file:///music/" + id + ".mp3");
+		track.setName(id + ".mp3");
+		track.setDuration(id * 10);
+		track.setTitle("Title " + id);
+		track.setArtist("Artist " + (id % 3));
+		track.setAlbum("Album " + (id % 5));
+		track.setTrack(String.valueOf(id % 12));
+		return track;
+	}
+
+	public void testRowsRoundTrip() {
+		Playlist playlist = new Playlist(1, "Playlist");
+		for (int id = 0; id < 100; id++) {
+			Track track = createTrack(id);
+			track.setCurrent(id == 42);
+			playlist.add(track);
+		}
+		assertEquals(100, playlist.size());
+		for (int position = 0; position < 100; position++) {
+			Track expected = createTrack(position);
+			expected.setCurrent(position == 42);
+			assertEquals(expected, playlist.get(position));
+			assertEquals(position, playlist.getId(position));
+			assertEquals(expected.getTitle(), playlist.getTitle(position));
+			assertEquals(expected.getArtist(), playlist.getArtist(position));
+			assertEquals(position == 42, playlist.isCurrent(position));
+		}
+	}
+
+	public void testMissingFields() {
+		Playlist playlist = new Playlist(1, "Playlist");
+		Track track = new Track();
+		track.setId(7);
+		track.setName("name");
+		playlist.add(track);
+		assertEquals(track, playlist.get(0));
+		assertNull(playlist.getTitle(0));
+		assertNull(playlist.getArtist(0));
+		assertNull(playlist.getGenre(0));
+	}
+
+	public void testCopyIsIndependent() {
+		Playlist playlist = new Playlist(1, "Playlist");
+		playlist.add(createTrack(1));
+		Playlist copy = new Playlist(playlist);
+		playlist.add(createTrack(2));
+		playlist.setCurrent(0, true);
+		assertEquals(1, copy.size());
+		assertFalse(copy.isCurrent(0));
+		assertEquals(createTrack(1), copy.get(0));
+		assertFalse(copy.rowEquals(0, playlist, 0));
+	}
+
+	public void testRowEquals() {
+		Playlist a = new Playlist(1, "a");
+		Playlist b = new Playlist(1, "b");
+		a.add(createTrack(1));
+		b.add(createTrack(1));
+		b.add(createTrack(2));
+		assertTrue(a.rowEquals(0, b, 0));
+		assertFalse(a.rowEquals(0, b, 1));
+		b.setCurrent(0, true);
+		assertFalse(a.rowEquals(0, b, 0));
+	}
+
+	public void testSetCurrent() {
+		Playlist playlist = new Playlist(1, "Playlist");
+		playlist.add(createTrack(1));
+		playlist.setCurrent(0, true);
+		assertTrue(playlist.get(0).isCurrent());
+		playlist.setCurrent(0, false);
+		assertFalse(playlist.get(0).isCurrent());
+	}
+
+	public void testRemoveRows() {
+		Playlist playlist = new Playlist(1, "Playlist");
+		for (int id = 0; id < 10; id++) {
+			playlist.add(createTrack(id));
+		}
+		playlist.setCurrent(7, true);
+		BitSet removed = new BitSet();
+		removed.set(0);
+		removed.set(3);
+		removed.set(4);
+		removed.set(9);
+		playlist.removeRows(removed);
+		int[] expected = { 1, 2, 5, 6, 7, 8 };
+		assertEquals(expected.length, playlist.size());
+		for (int position = 0; position < expected.length; position++) {
+			Track track = createTrack(expected[position]);
+			track.setCurrent(expected[position] == 7);
+			assertEquals(track, playlist.get(position));
+		}
+	}
+
+	public void testInsertRows() {
+		Playlist playlist = new Playlist(1, "Playlist");
+		playlist.add(createTrack(1));
+		playlist.add(createTrack(3));
+		Playlist source = new Playlist(1, "Source");
+		for (int id = 0; id < 6; id++) {
+			Track track = createTrack(id);
+			track.setCurrent(id == 4);
+			source.add(track);
+		}
+		// Insert 0, 2, 4 and 5 around 1 and 3
+		playlist.insertRows(new int[] { 0, 2, 4, 5 }, source, new int[] { 0, 2, 4, 5 }, 4);
+		assertEquals(6, playlist.size());
+		for (int position = 0; position < 6; position++) {
+			assertTrue(playlist.rowEquals(position, source, position));
+		}
+	}
+
+	public void testSetRow() {
+		Playlist playlist = new Playlist(1, "Playlist");
+		playlist.add(createTrack(1));
+		playlist.add(createTrack(2));
+		Playlist source = new Playlist(1, "Source");
+		Track track = new Track();
+		track.setId(2);
+		track.setName("renamed");
+		source.add(track);
+		playlist.setRow(1, source, 0);
+		assertEquals(track, playlist.get(1));
+		assertNull(playlist.getArtist(1));
+		assertEquals(createTrack(1), playlist.get(0));
+	}
+
+	public void testCompact() {
+		Playlist playlist = new Playlist(1, "Playlist");
+		for (int id = 0; id < 10; id++) {
+			playlist.add(createTrack(id));
+		}
+		BitSet removed = new BitSet();
+		removed.set(2, 10);
+		playlist.removeRows(removed);
+		Playlist source = new Playlist(1, "Source");
+		source.add(createTrack(7));
+		playlist.setRow(0, source, 0);
+		playlist.compact();
+		assertEquals(createTrack(7), playlist.get(0));
+		assertEquals(createTrack(1), playlist.get(1));
+
+		// Rows can still be added once the playlist is compacted
+		playlist.add(createTrack(4));
+		assertEquals(createTrack(4), playlist.get(2));
+		assertSame(playlist.getArtist(1), playlist.getArtist(2));
+	}
+
+	public void testCopyOfRange() {
+		Playlist playlist = new Playlist(1, "Playlist");
+		for (int id = 0; id < 10; id++) {
+			playlist.add(createTrack(id));
+		}
+		playlist.setCurrent(4, true);
+		Playlist range = playlist.copyOfRange(3, 6);
+		assertEquals(3, range.size());
+		assertEquals(playlist.getId(), range.getId());
+		for (int position = 0; position < 3; position++) {
+			assertTrue(range.rowEquals(position, playlist, position + 3));
+		}
+		assertEquals(0, playlist.copyOfRange(10, 10).size());
+		try {
+			playlist.copyOfRange(5, 11);
+			fail();
+		} catch (IndexOutOfBoundsException e) {
+			// Expected
+		}
+	}
+
+	public void testAddRows() {
+		Playlist playlist = new Playlist(1, "Playlist");
+		Playlist source = new Playlist(1, "Playlist");
+		for (int id = 0; id < 40; id++) {
+			source.add(createTrack(id));
+		}
+		playlist.addRows(source.copyOfRange(0, 20));
+		playlist.addRows(source.copyOfRange(20, 40));
+		assertEquals(40, playlist.size());
+		for (int position = 0; position < 40; position++) {
+			assertTrue(playlist.rowEquals(position, source, position));
+		}
+	}
+
+	public void testRejectsNestedPlaylists() {
+		Playlist playlist = new Playlist(1, "Playlist");
+		try {
+			playlist.add(new Playlist(2, "Nested"));
+			fail();
+		} catch (IllegalArgumentException e) {
+			// Expected
+		}
+	}
+
+	public void testOutOfBounds() {
+		Playlist playlist = new Playlist(1, "Playlist");
+		playlist.add(createTrack(1));
+		try {
+			playlist.getTitle(1);
+			fail();
+		} catch (IndexOutOfBoundsException e) {
+			// Expected
+		}
+	}
+
+	private static Playlist writeAndRead(Playlist playlist) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		playlist.write(out);
+		out.close();
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+		return Playlist.read(in);
+	}
+
+	public void testWriteAndRead() throws IOException {
+		Playlist playlist = new Playlist(1, "Playlist");
+		for (int id = 0; id < 100; id++) {
+			playlist.add(createTrack(id));
+		}
+		Track track = new Track();
+		track.setId(100);
+		track.setName("Fran\u00e7ais");
+		playlist.add(track);
+		playlist.setCurrent(42, true);
+
+		Playlist copy = writeAndRead(playlist);
+		assertEquals(playlist.getId(), copy.getId());
+		assertEquals(playlist.getName(), copy.getName());
+		assertEquals(playlist.size(), copy.size());
+		for (int position = 0; position < playlist.size(); position++) {
+			assertTrue(playlist.rowEquals(position, copy, position));
+		}
+
+		// Rows can still be added after reading
+		copy.add(createTrack(101));
+		assertEquals("Artist 2", copy.getArtist(101));
+	}
+
+	public void testWriteAndReadCopy() throws IOException {
+		// Copies of partial playlists can have unused dictionary values
+		Playlist playlist = new Playlist(1, "Playlist");
+		playlist.add(createTrack(1));
+		Playlist partial = new Playlist(playlist);
+		playlist.add(createTrack(2));
+		Playlist copy = writeAndRead(new Playlist(playlist));
+		assertEquals(2, copy.size());
+		assertTrue(playlist.rowEquals(1, copy, 1));
+		assertEquals(1, writeAndRead(partial).size());
+	}
+
+	public void testReadTruncated() throws IOException {
+		Playlist playlist = new Playlist(1, "Playlist");
+		playlist.add(createTrack(1));
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		playlist.write(new DataOutputStream(bytes));
+		byte[] truncated = new byte[bytes.size() - 1];
+		System.arraycopy(bytes.toByteArray(), 0, truncated, 0, truncated.length);
+		try {
+			Playlist.read(new DataInputStream(new ByteArrayInputStream(truncated)));
+			fail();
+		} catch (IOException e) {
+			// Expected
+		}
+	}
+}
@@ -0,0 +1,108 @@
+/*-
+ *  Copyright (C) 2011 Peter Baldwin
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.peterbaldwin.vlcremote.model;
+
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+public class SectionIndexTest extends TestCase {
+
+	private static Directory createDirectory(String... names) {
+		Directory directory = new Directory();
+		for (String name : names) {
+			directory.add(new File("file", null, null, "/music/" + name, name, null));
+		}
+		return directory;
+	}
+
+	public void testSections() {
+		Directory directory = createDirectory("..", "abba", "ACDC", "Beatles", "cream", "Cure");
+		SectionIndex index = SectionIndex.build(directory, "Parent", false);
+		assertEquals(Arrays.asList("Parent", "A", "B", "C"), Arrays.asList(index.getSections()));
+		assertEquals(0, index.getPositionForSection(0));
+		assertEquals(1, index.getPositionForSection(1));
+		assertEquals(3, index.getPositionForSection(2));
+		assertEquals(4, index.getPositionForSection(3));
+		assertEquals(0, index.getSectionForPosition(0));
+		assertEquals(1, index.getSectionForPosition(2));
+		assertEquals(3, index.getSectionForPosition(5));
+	}
+
+	public void testUnsortedNames() {
+		// A letter that appears again maps to its own section
+		SectionIndex index = SectionIndex.build(createDirectory("a", "b", "a2"), "Parent", false);
+		assertEquals(2, index.getSections().length);
+		assertEquals(0, index.getSectionForPosition(2));
+	}
+
+	public void testDirectoriesFirst() {
+		Directory directory = new Directory();
+		directory.add(new File("dir", null, null, "/music/..", "..", null));
+		directory.add(new File("dir", null, null, "/music/Abba", "Abba", null));
+		directory.add(new File("dir", null, null, "/music/Cream", "Cream", null));
+		directory.add(new File("file", null, null, "/music/a.mp3", "a.mp3", null));
+		directory.add(new File("file", null, null, "/music/c.mp3", "c.mp3", null));
+		new DirectorySort(DirectorySort.BY_NAME, true).sort(directory);
+		directory.buildSectionIndex("Parent");
+		SectionIndex index = directory.getSectionIndex();
+		// The files start their own sections after the directories
+		assertEquals(Arrays.asList("Parent", "A", "C", "A", "C"),
+				Arrays.asList(index.getSections()));
+		assertEquals(3, index.getPositionForSection(3));
+		for (int position = 0; position < directory.size(); position++) {
+			assertEquals(position, index.getSectionForPosition(position));
+		}
+	}
+
+	public void testOtherOrdersHaveNoSections() {
+		Directory directory = createDirectory("..", "abba", "Beatles", "cream");
+		new DirectorySort(DirectorySort.BY_SIZE, true).sort(directory);
+		directory.buildSectionIndex("Parent");
+		assertSame(SectionIndex.EMPTY, directory.getSectionIndex());
+
+		// Nor does a listing in the order the server sent it
+		directory = createDirectory("..", "abba", "Beatles", "cream");
+		directory.buildSectionIndex("Parent");
+		assertSame(SectionIndex.EMPTY, directory.getSectionIndex());
+	}
+
+	public void testClamping() {
+		SectionIndex index = SectionIndex.build(createDirectory("a", "b"), "Parent", false);
+		assertEquals(0, index.getPositionForSection(-1));
+		assertEquals(1, index.getPositionForSection(5));
+		assertEquals(0, index.getSectionForPosition(-1));
+		assertEquals(1, index.getSectionForPosition(5));
+	}
+
+	public void testEmpty() {
+		assertEquals(0, SectionIndex.EMPTY.getSections().length);
+		assertEquals(0, SectionIndex.EMPTY.getPositionForSection(3));
+		assertEquals(0, SectionIndex.EMPTY.getSectionForPosition(3));
+	}
+
+	public void testManySections() {
+		Directory directory = new Directory();
+		for (char c = 0x4e00; c < 0x4e00 + 200; c++) {
+			directory.add(new File("file", null, null, "/" + c, String.valueOf(c), null));
+		}
+		SectionIndex index = SectionIndex.build(directory, "Parent", false);
+		assertEquals(200, index.getSections().length);
+		assertEquals(199, index.getPositionForSection(199));
+	}
+}
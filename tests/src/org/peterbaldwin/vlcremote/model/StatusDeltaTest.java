@@ -0,0 +1,94 @@
+/*-
+ *  Copyright (C) 2011 Peter Baldwin
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.peterbaldwin.vlcremote.model;
+
+import junit.framework.TestCase;
+
+public class StatusDeltaTest extends TestCase {
+
+	private static Status createStatus(int id, String name, String nowPlaying, String artUrl) {
+		Status status = new Status();
+		status.setState("playing");
+		Track track = status.getTrack();
+		track.setId(id);
+		track.setName(name);
+		track.setTitle("Title");
+		track.setNowPlaying(nowPlaying);
+		track.setArtUrl(artUrl);
+		return status;
+	}
+
+	public void testInitial() {
+		StatusDelta delta = StatusDelta.compute(null, createStatus(1, "a", null, null));
+		assertTrue(delta.isInitial());
+		assertTrue(delta.hasChanges(StatusDelta.ITEM));
+		assertTrue(delta.hasChanges(StatusDelta.ART));
+	}
+
+	public void testUnchanged() {
+		StatusDelta delta = StatusDelta.compute(createStatus(1, "a", null, null),
+				createStatus(1, "a", null, null));
+		assertTrue(delta.isEmpty());
+		assertFalse(delta.isInitial());
+	}
+
+	public void testNowPlaying() {
+		// Streams update their metadata without changing item
+		StatusDelta delta = StatusDelta.compute(createStatus(1, "a", "Song 1", "art"),
+				createStatus(1, "a", "Song 2", "art"));
+		assertTrue(delta.hasChanges(StatusDelta.TRACK));
+		assertFalse(delta.hasChanges(StatusDelta.ITEM));
+		assertFalse(delta.hasChanges(StatusDelta.ART));
+	}
+
+	public void testItem() {
+		StatusDelta delta = StatusDelta.compute(createStatus(1, "a", null, "art"),
+				createStatus(2, "a", null, "art"));
+		assertTrue(delta.hasChanges(StatusDelta.TRACK));
+		assertTrue(delta.hasChanges(StatusDelta.ITEM));
+		assertFalse(delta.hasChanges(StatusDelta.ART));
+	}
+
+	public void testItemWithoutId() {
+		// Versions of VLC before 2.0 don't report the id
+		assertFalse(StatusDelta.compute(createStatus(0, "a", "Song 1", null),
+				createStatus(0, "a", "Song 2", null)).hasChanges(StatusDelta.ITEM));
+		assertTrue(StatusDelta.compute(createStatus(0, "a", null, null),
+				createStatus(0, "b", null, null)).hasChanges(StatusDelta.ITEM));
+	}
+
+	public void testArt() {
+		StatusDelta delta = StatusDelta.compute(createStatus(1, "a", null, "art1"),
+				createStatus(1, "a", null, "art2"));
+		assertTrue(delta.hasChanges(StatusDelta.ART));
+		assertFalse(delta.hasChanges(StatusDelta.ITEM));
+	}
+
+	public void testAllChangedIsNotInitial() {
+		Status previous = createStatus(1, "a", null, "art1");
+		Status current = createStatus(2, "b", null, "art2");
+		current.setVolume(100);
+		current.setTime(1);
+		current.setState("paused");
+		current.setPosition(0.5);
+		current.setRandom(true);
+		StatusDelta delta = StatusDelta.compute(previous, current);
+		assertEquals(StatusDelta.ALL, delta.getChanges());
+		assertFalse(delta.isInitial());
+	}
+}
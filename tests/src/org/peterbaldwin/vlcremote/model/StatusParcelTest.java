@@ -0,0 +1,85 @@
+/*-
+ *  Copyright (C) 2011 Peter Baldwin
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.peterbaldwin.vlcremote.model;
+
+import android.os.Parcel;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+import junit.framework.TestCase;
+
+public class StatusParcelTest extends TestCase {
+
+	private static Status createStatus() {
+		Status status = new Status();
+		status.setVolume(256);
+		status.setLength(215);
+		status.setTime(42);
+		status.setState("playing");
+		status.setPosition(0.195);
+		status.setRandom(true);
+		status.setRepeat(true);
+		Track track = status.getTrack();
+		track.setId(4);
+		track.setCurrent(true);
+		track.setTitle("Title");
+		track.setArtist("Artist");
+		track.setAlbum("Album");
+		track.setArtUrl("file:///art.jpg");
+		return status;
+	}
+
+	private static Status parcel(Status status) {
+		Parcel parcel = Parcel.obtain();
+		try {
+			status.writeToParcel(parcel, 0);
+			parcel.setDataPosition(0);
+			return Status.CREATOR.createFromParcel(parcel);
+		} finally {
+			parcel.recycle();
+		}
+	}
+
+	private static Status serialize(Status status) throws Exception {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ObjectOutputStream out = new ObjectOutputStream(bytes);
+		out.writeObject(status);
+		out.close();
+		ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(
+				bytes.toByteArray()));
+		return (Status) in.readObject();
+	}
+
+	public void testParcelRoundTrip() {
+		Status status = createStatus();
+		assertEquals(status, parcel(status));
+	}
+
+	public void testParcelRoundTripEmptyTrack() {
+		Status status = new Status();
+		assertEquals(status, parcel(status));
+	}
+
+	public void testSerializableRoundTrip() throws Exception {
+		Status status = createStatus();
+		assertEquals(status, serialize(status));
+	}
+}
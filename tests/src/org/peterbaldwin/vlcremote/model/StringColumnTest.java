@@ -0,0 +1,74 @@
+/*-
+ *  Copyright (C) 2011 Peter Baldwin
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.peterbaldwin.vlcremote.model;
+
+import junit.framework.TestCase;
+
+public class StringColumnTest extends TestCase {
+
+	public void testDictionarySharesValues() {
+		StringColumn column = new StringColumn(true);
+		column.set(0, "a", 4);
+		column.set(1, "b", 4);
+		column.set(2, "a", 4);
+		assertEquals(2, column.getDictionarySize());
+		assertSame(column.get(0), column.get(2));
+	}
+
+	public void testCompactDropsUnusedValues() {
+		StringColumn column = new StringColumn(true);
+		column.set(0, "a", 4);
+		column.set(1, "b", 4);
+		column.set(2, "c", 4);
+		column.set(3, "b", 4);
+		// Replace the only "a" and drop the last row, which leaves "c" unused
+		column.replace(0, "d", 4);
+		column.copy(3, 2, 4);
+		column.compact(3);
+		assertEquals(2, column.getDictionarySize());
+		assertEquals("d", column.get(0));
+		assertEquals("b", column.get(1));
+		assertEquals("b", column.get(2));
+		assertNull(column.get(3));
+	}
+
+	public void testCompactKeepsUsedValues() {
+		StringColumn column = new StringColumn(true);
+		column.set(0, "a", 2);
+		column.set(1, "b", 2);
+		column.compact(2);
+		assertEquals(2, column.getDictionarySize());
+		assertEquals("a", column.get(0));
+		assertEquals("b", column.get(1));
+
+		// Values can still be added after the lookup table is dropped
+		column.set(2, "a", 4);
+		column.set(3, "c", 4);
+		assertEquals(3, column.getDictionarySize());
+		assertSame(column.get(0), column.get(2));
+		assertEquals("c", column.get(3));
+	}
+
+	public void testCompactPlainColumn() {
+		StringColumn column = new StringColumn(false);
+		column.set(0, "a", 2);
+		column.compact(1);
+		assertEquals(0, column.getDictionarySize());
+		assertEquals("a", column.get(0));
+	}
+}
@@ -0,0 +1,60 @@
+/*-
+ *  Copyright (C) 2011 Peter Baldwin
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.peterbaldwin.vlcremote.net;
+
+import junit.framework.TestCase;
+
+public class EntityDecoderTest extends TestCase {
+
+	public void testNoReferences() {
+		String text = "Français";
+		assertSame(text, EntityDecoder.decode(text));
+	}
+
+	public void testNamedEntities() {
+		assertEquals("<a href=\"x\">'&'</a>\u00a0", EntityDecoder
+				.decode("&lt;a href=&quot;x&quot;&gt;&apos;&amp;&apos;&lt;/a&gt;&nbsp;"));
+	}
+
+	public void testNumericReferences() {
+		assertEquals("Français", EntityDecoder.decode("Fran&#231;ais"));
+		assertEquals("Français", EntityDecoder.decode("Fran&#xE7;ais"));
+		assertEquals("𝄞", EntityDecoder.decode("&#x1D11E;"));
+	}
+
+	public void testDecodesOnce() {
+		assertEquals("&amp;", EntityDecoder.decode("&amp;amp;"));
+	}
+
+	public void testInvalidReferences() {
+		assertEquals("AT&T", EntityDecoder.decode("AT&T"));
+		assertEquals("a & b", EntityDecoder.decode("a & b"));
+		assertEquals("&;", EntityDecoder.decode("&;"));
+		assertEquals("&#;", EntityDecoder.decode("&#;"));
+		assertEquals("&#0;", EntityDecoder.decode("&#0;"));
+		assertEquals("&#x110000;", EntityDecoder.decode("&#x110000;"));
+		assertEquals("&unknown;", EntityDecoder.decode("&unknown;"));
+		assertEquals("&amp", EntityDecoder.decode("&amp"));
+		assertEquals("& &amp;", EntityDecoder.decode("&amp; &amp;amp;"));
+	}
+
+	public void testStringBuilder() {
+		StringBuilder builder = new StringBuilder("Rock &amp; Roll");
+		assertEquals("Rock & Roll", EntityDecoder.decode(builder));
+	}
+}
@@ -0,0 +1,121 @@
+/*-
+ *  Copyright (C) 2011 Peter Baldwin
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.peterbaldwin.vlcremote.net;
+
+import org.peterbaldwin.vlcremote.model.Playlist;
+import org.peterbaldwin.vlcremote.net.MediaServer.PlaylistRequest.ProgressListener;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+public class PlaylistContentHandlerTest extends TestCase {
+
+	private static final int LARGE_PLAYLIST = 50000;
+
+	private static byte[] createPlaylist(int count) throws IOException {
+		StringBuilder xml = new StringBuilder();
+		xml.append("<?xml version=\"1.0\" encoding=\"utf-8\" standalone=\"yes\" ?>\n");
+		xml.append("<node id=\"0\" name=\"Undefined\">\n");
+		xml.append("<node id=\"1\" name=\"Playlist\">\n");
+		for (int id = 2; id < count + 2; id++) {
+			xml.append("<leaf id=\"").append(id).append("\" uri=\"file:///music/").append(id)
+					.append(".mp3\" name=\"").append(id).append(".mp3\" duration=\"180\"")
+					.append(id == 2 ? " current=\"current\"" : "").append(">\n");
+			xml.append("<title>Title ").append(id).append("</title>\n");
+			xml.append("<artist>Artist ").append(id % 100).append("</artist>\n");
+			xml.append("<album>Album &amp;amp; ").append(id % 500).append("</album>\n");
+			xml.append("<genre>Genre ").append(id % 10).append("</genre>\n");
+			xml.append("</leaf>\n");
+		}
+		xml.append("<leaf id=\"").append(count + 2)
+				.append("\" uri=\"vlc://nop\" name=\"nop\" duration=\"-1\" />\n");
+		xml.append("</node>\n");
+		xml.append("</node>\n");
+		return xml.toString().getBytes("UTF-8");
+	}
+
+	private static Playlist parse(byte[] bytes) throws IOException {
+		PlaylistContentHandler handler = new PlaylistContentHandler(null);
+		return handler.parse(new ByteArrayInputStream(bytes));
+	}
+
+	public void testParse() throws IOException {
+		Playlist playlist = parse(createPlaylist(3));
+		assertEquals(0, playlist.getId());
+		assertEquals(3, playlist.size());
+		assertEquals(2, playlist.getId(0));
+		assertTrue(playlist.isCurrent(0));
+		assertFalse(playlist.isCurrent(1));
+		assertEquals("Title 3", playlist.getTitle(1));
+		assertEquals("Artist 3", playlist.getArtist(1));
+		assertEquals("Album & 3", playlist.getAlbum(1));
+		assertEquals("Genre 3", playlist.getGenre(1));
+		assertEquals(180, playlist.getDuration(1));
+	}
+
+	public void testEmptyPlaylistIsNotShared() throws IOException {
+		byte[] bytes = "<?xml version=\"1.0\" encoding=\"utf-8\" ?>\n<root />".getBytes("UTF-8");
+		Playlist first = parse(bytes);
+		assertEquals(0, first.size());
+		Playlist track = parse(createPlaylist(1));
+		first.addRows(track);
+		Playlist second = parse(bytes);
+		assertNotSame(first, second);
+		assertEquals(0, second.size());
+	}
+
+	private static final class Chunks implements ProgressListener {
+		final List<Playlist> chunks = new ArrayList<Playlist>();
+
+		public void onProgress(Playlist tracks) {
+			chunks.add(tracks);
+		}
+	}
+
+	public void testProgress() throws IOException {
+		Chunks listener = new Chunks();
+		PlaylistContentHandler handler = new PlaylistContentHandler(listener);
+		byte[] bytes = createPlaylist(LARGE_PLAYLIST);
+		Playlist playlist = handler.parse(new ByteArrayInputStream(bytes));
+
+		// Each chunk only holds the tracks read since the previous chunk
+		assertFalse(listener.chunks.isEmpty());
+		int position = 0;
+		for (Playlist chunk : listener.chunks) {
+			assertTrue(chunk.size() <= 500);
+			for (int i = 0; i < chunk.size(); i++) {
+				assertTrue(chunk.rowEquals(i, playlist, position++));
+			}
+		}
+		assertTrue(position <= playlist.size());
+	}
+
+	public void testLargePlaylistSharesRepeatedValues() throws IOException {
+		Playlist playlist = parse(createPlaylist(LARGE_PLAYLIST));
+		assertEquals(LARGE_PLAYLIST, playlist.size());
+		// Tracks 2 and 102 have the same artist, and tracks 2 and 502 the same album
+		assertEquals("Artist 2", playlist.getArtist(0));
+		assertSame(playlist.getArtist(0), playlist.getArtist(100));
+		assertEquals("Album & 2", playlist.getAlbum(0));
+		assertSame(playlist.getAlbum(0), playlist.getAlbum(500));
+	}
+}
@@ -0,0 +1,162 @@
+/*-
+ *  Copyright (C) 2011 Peter Baldwin
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.peterbaldwin.vlcremote.net;
+
+import org.peterbaldwin.vlcremote.model.Status;
+import org.peterbaldwin.vlcremote.model.Track;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+
+import junit.framework.TestCase;
+
+public class StatusContentHandlerTest extends TestCase {
+
+	private static final String VLC_1_0 = "<?xml version=\"1.0\" encoding=\"utf-8\" standalone=\"yes\" ?>\n"
+			+ "<root>\n"
+			+ "<volume>256</volume>\n"
+			+ "<length>215</length>\n"
+			+ "<time>42</time>\n"
+			+ "<state>playing</state>\n"
+			+ "<position>19</position>\n"
+			+ "<fullscreen>0</fullscreen>\n"
+			+ "<random>1</random>\n"
+			+ "<loop>0</loop>\n"
+			+ "<repeat>1</repeat>\n"
+			+ "<information>\n"
+			+ "<meta-information>\n"
+			+ "<title>Song &amp;amp; Dance</title>\n"
+			+ "<artist><![CDATA[Artist]]></artist>\n"
+			+ "<album><![CDATA[Album]]></album>\n"
+			+ "<art_url><![CDATA[file:///art.jpg]]></art_url>\n"
+			+ "</meta-information>\n"
+			+ "</information>\n"
+			+ "</root>\n";
+
+	private static final String VLC_1_1 = "<?xml version=\"1.0\" encoding=\"utf-8\" standalone=\"yes\" ?>\n"
+			+ "<root>\n"
+			+ "<fullscreen>false</fullscreen>\n"
+			+ "<volume>128</volume>\n"
+			+ "<repeat>false</repeat>\n"
+			+ "<version>1.1.11 The Luggage</version>\n"
+			+ "<random>true</random>\n"
+			+ "<time>7</time>\n"
+			+ "<length>180</length>\n"
+			+ "<state>paused</state>\n"
+			+ "<loop>true</loop>\n"
+			+ "<position>0.0388889</position>\n"
+			+ "<information>\n"
+			+ "<category name=\"meta\">\n"
+			+ "<info name=\"artist\">Artist</info>\n"
+			+ "<info name=\"title\">Title</info>\n"
+			+ "<info name=\"filename\">song.mp3</info>\n"
+			+ "</category>\n"
+			+ "<category name=\"Stream 0\">\n"
+			+ "<info name=\"Codec\">MPEG Audio layer 1/2/3 (mpga)</info>\n"
+			+ "</category>\n"
+			+ "</information>\n"
+			+ "<stats>\n"
+			+ "<readbytes>1024</readbytes>\n"
+			+ "</stats>\n"
+			+ "</root>\n";
+
+	private static final String VLC_2_0 = "<?xml version=\"1.0\" encoding=\"utf-8\" standalone=\"yes\" ?>\n"
+			+ "<root>\n"
+			+ "<fullscreen>0</fullscreen>\n"
+			+ "<apiversion>3</apiversion>\n"
+			+ "<currentplid>5</currentplid>\n"
+			+ "<time>0</time>\n"
+			+ "<volume>320</volume>\n"
+			+ "<length>0</length>\n"
+			+ "<random>false</random>\n"
+			+ "<audiofilters>\n"
+			+ "<filter_0></filter_0>\n"
+			+ "</audiofilters>\n"
+			+ "<rate>1</rate>\n"
+			+ "<state>stopped</state>\n"
+			+ "<loop>false</loop>\n"
+			+ "<version>2.0.8 Twoflower</version>\n"
+			+ "<position>0</position>\n"
+			+ "<repeat>false</repeat>\n"
+			+ "<information>\n"
+			+ "<category name=\"meta\">\n"
+			+ "<info name='artist'>Artist &amp;amp; Band</info>\n"
+			+ "<info name='title'></info>\n"
+			+ "<info name='artwork_url'>file:///art.png</info>\n"
+			+ "</category>\n"
+			+ "</information>\n"
+			+ "</root>\n";
+
+	private static Status parse(String xml) throws IOException {
+		return new StatusContentHandler().parse(new ByteArrayInputStream(xml.getBytes("UTF-8")));
+	}
+
+	public void testVlc10() throws IOException {
+		Status status = parse(VLC_1_0);
+		assertEquals(256, status.getVolume());
+		assertEquals(215, status.getLength());
+		assertEquals(42, status.getTime());
+		assertTrue(status.isPlaying());
+		assertEquals(19.0, status.getPosition());
+		assertFalse(status.isFullscreen());
+		assertTrue(status.isRandom());
+		assertFalse(status.isLoop());
+		assertTrue(status.isRepeat());
+		Track track = status.getTrack();
+		assertEquals("Song & Dance", track.getTitle());
+		assertEquals("Artist", track.getArtist());
+		assertEquals("Album", track.getAlbum());
+		assertEquals("file:///art.jpg", track.getArtUrl());
+	}
+
+	public void testVlc11() throws IOException {
+		Status status = parse(VLC_1_1);
+		assertEquals(128, status.getVolume());
+		assertEquals(180, status.getLength());
+		assertEquals(7, status.getTime());
+		assertTrue(status.isPaused());
+		assertEquals(0.0388889, status.getPosition());
+		assertTrue(status.isRandom());
+		assertTrue(status.isLoop());
+		assertFalse(status.isRepeat());
+		Track track = status.getTrack();
+		assertEquals("Title", track.getTitle());
+		assertEquals("Artist", track.getArtist());
+		assertEquals("song.mp3", track.getName());
+	}
+
+	public void testVlc20() throws IOException {
+		Status status = parse(VLC_2_0);
+		assertEquals(320, status.getVolume());
+		assertEquals("stopped", status.getState());
+		Track track = status.getTrack();
+		assertEquals(5, track.getId());
+		assertEquals("Artist & Band", track.getArtist());
+		assertEquals("", track.getTitle());
+		assertEquals("file:///art.png", track.getArtUrl());
+	}
+
+	public void testInvalidXml() {
+		try {
+			parse("<root><volume>256</root>");
+			fail();
+		} catch (IOException e) {
+			// Expected
+		}
+	}
+}
@@ -0,0 +1,68 @@
+/*-
+ *  Copyright (C) 2011 Peter Baldwin
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.peterbaldwin.vlcremote.net;
+
+import junit.framework.TestCase;
+
+public class StringPoolTest extends TestCase {
+
+	public void testSharesEqualValues() {
+		StringPool pool = new StringPool();
+		String first = pool.get(new StringBuilder("Artist"));
+		String second = pool.get(new StringBuilder("Artist"));
+		assertEquals("Artist", first);
+		assertSame(first, second);
+		assertSame(first, pool.get(new String("Artist")));
+	}
+
+	public void testDistinctValues() {
+		StringPool pool = new StringPool();
+		assertEquals("a", pool.get(new StringBuilder("a")));
+		assertEquals("b", pool.get(new StringBuilder("b")));
+		assertEquals("", pool.get(new StringBuilder()));
+		assertNull(pool.get((String) null));
+	}
+
+	public void testCollisionsReplaceValues() {
+		// "Aa" and "BB" have the same hash code
+		StringPool pool = new StringPool(1);
+		String aa = pool.get(new StringBuilder("Aa"));
+		assertEquals("BB", pool.get(new StringBuilder("BB")));
+		String again = pool.get(new StringBuilder("Aa"));
+		assertEquals("Aa", again);
+		assertNotSame(aa, again);
+	}
+
+	public void testLongValuesAreNotPooled() {
+		StringBuilder builder = new StringBuilder();
+		for (int i = 0; i < 100; i++) {
+			builder.append('x');
+		}
+		StringPool pool = new StringPool();
+		assertNotSame(pool.get(builder), pool.get(builder));
+	}
+
+	public void testCapacityMustBePowerOfTwo() {
+		try {
+			new StringPool(3);
+			fail();
+		} catch (IllegalArgumentException e) {
+			// Expected
+		}
+	}
+}
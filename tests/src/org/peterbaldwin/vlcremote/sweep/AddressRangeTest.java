@@ -0,0 +1,76 @@
+/*-
+ *  Copyright (C) 2011 Peter Baldwin
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.peterbaldwin.vlcremote.sweep;
+
+import junit.framework.TestCase;
+
+public class AddressRangeTest extends TestCase {
+
+	private static int address(int a, int b, int c, int d) {
+		return AddressRange.toInt(new byte[] {
+				(byte) a, (byte) b, (byte) c, (byte) d
+		});
+	}
+
+	public void testParse() {
+		AddressRange range = AddressRange.parse("192.168.1.77/23");
+		assertEquals("192.168.0.0/23", range.toString());
+		assertEquals(23, range.getPrefixLength());
+		assertEquals(address(192, 168, 0, 1), range.getFirst());
+		assertEquals(address(192, 168, 1, 254), range.getLast());
+		assertTrue(range.contains(address(192, 168, 1, 255)));
+		assertFalse(range.contains(address(192, 168, 2, 1)));
+	}
+
+	public void testInvalid() {
+		String[] invalid = {
+				"192.168.0.0", "192.168.0.0/16", "192.168.0.0/33", "192.168.0/24",
+				"192.168.0.256/24", "a.b.c.d/24", "192.168.0.0/x"
+		};
+		for (String cidr : invalid) {
+			try {
+				AddressRange.parse(cidr);
+				fail(cidr);
+			} catch (IllegalArgumentException e) {
+				// Expected
+			}
+		}
+	}
+
+	public void testAround() {
+		byte[] address = {
+				10, 1, 2, 3
+		};
+		assertEquals(AddressRange.parse("10.1.2.0/24"), AddressRange.around(address, 24));
+		// Large networks are narrowed to the part around the address
+		assertEquals(AddressRange.parse("10.1.0.0/22"), AddressRange.around(address, 8));
+	}
+
+	public void testSmallRanges() {
+		AddressRange range = AddressRange.parse("10.0.0.4/31");
+		assertEquals(address(10, 0, 0, 4), range.getFirst());
+		assertEquals(address(10, 0, 0, 5), range.getLast());
+		range = AddressRange.parse("10.0.0.4/32");
+		assertEquals(range.getFirst(), range.getLast());
+	}
+
+	public void testByteArray() {
+		int address = address(200, 1, 2, 250);
+		assertEquals(address, AddressRange.toInt(AddressRange.toByteArray(address)));
+	}
+}
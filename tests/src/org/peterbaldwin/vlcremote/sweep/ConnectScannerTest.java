@@ -0,0 +1,196 @@
+/*-
+ *  Copyright (C) 2011 Peter Baldwin
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.peterbaldwin.vlcremote.sweep;
+
+import android.os.SystemClock;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+public class ConnectScannerTest extends TestCase {
+
+	private static final class Results implements ConnectScanner.Callback {
+		final List<InetSocketAddress> connected = new ArrayList<InetSocketAddress>();
+
+		final List<InetSocketAddress> failed = new ArrayList<InetSocketAddress>();
+
+		public void onConnected(InetSocketAddress address, int elapsed) {
+			connected.add(address);
+		}
+
+		public void onFailed(InetSocketAddress address, IOException e, int elapsed) {
+			failed.add(address);
+		}
+	}
+
+	private ServerSocket mServer;
+
+	private InetAddress mLoopback;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		mLoopback = InetAddress.getByName("127.0.0.1");
+		mServer = new ServerSocket(0, 50, mLoopback);
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		mServer.close();
+		super.tearDown();
+	}
+
+	private int getClosedPort() throws IOException {
+		ServerSocket socket = new ServerSocket(0, 1, mLoopback);
+		int port = socket.getLocalPort();
+		socket.close();
+		return port;
+	}
+
+	public void testScan() throws IOException {
+		InetSocketAddress open = new InetSocketAddress(mLoopback, mServer.getLocalPort());
+		InetSocketAddress closed = new InetSocketAddress(mLoopback, getClosedPort());
+		List<InetSocketAddress> addresses = new ArrayList<InetSocketAddress>();
+		addresses.add(closed);
+		addresses.add(open);
+		Results results = new Results();
+		new ConnectScanner(1, 1, 1000).scan(addresses, results);
+		assertEquals(Collections.singletonList(open), results.connected);
+		assertEquals(Collections.singletonList(closed), results.failed);
+	}
+
+	public void testEveryAddressIsReported() throws IOException {
+		List<InetSocketAddress> addresses = new ArrayList<InetSocketAddress>();
+		int closedPort = getClosedPort();
+		for (int i = 0; i < 200; i++) {
+			int port = (i % 10 == 0) ? mServer.getLocalPort() : closedPort;
+			addresses.add(new InetSocketAddress(mLoopback, port));
+		}
+		Results results = new Results();
+		new ConnectScanner(16, 16, 1000).scan(addresses, results);
+		assertEquals(20, results.connected.size());
+		assertEquals(180, results.failed.size());
+	}
+
+	public void testPortLimit() throws IOException {
+		// Every address is checked even when each port is limited to one
+		// connect at a time
+		ServerSocket other = new ServerSocket(0, 50, mLoopback);
+		try {
+			InetSocketAddress first = new InetSocketAddress(mLoopback, mServer.getLocalPort());
+			InetSocketAddress second = new InetSocketAddress(mLoopback, other.getLocalPort());
+			List<InetSocketAddress> addresses = new ArrayList<InetSocketAddress>();
+			addresses.add(first);
+			addresses.add(first);
+			addresses.add(second);
+			Results results = new Results();
+			new ConnectScanner(2, 1, 1000).scan(addresses, results);
+			assertEquals(3, results.connected.size());
+			assertTrue(results.failed.isEmpty());
+		} finally {
+			other.close();
+		}
+	}
+
+	public void testCancel() throws IOException {
+		InetSocketAddress open = new InetSocketAddress(mLoopback, mServer.getLocalPort());
+		final ConnectScanner scanner = new ConnectScanner(1, 1, 1000);
+		final List<InetSocketAddress> connected = new ArrayList<InetSocketAddress>();
+		ConnectScanner.Callback callback = new ConnectScanner.Callback() {
+			public void onConnected(InetSocketAddress address, int elapsed) {
+				connected.add(address);
+				scanner.cancel();
+			}
+
+			public void onFailed(InetSocketAddress address, IOException e, int elapsed) {
+				fail(e.toString());
+			}
+		};
+		scanner.scan(Collections.nCopies(10, open), callback);
+		assertTrue(scanner.isCancelled());
+		assertEquals(1, connected.size());
+	}
+
+	/**
+	 * Returns an address where a connect neither succeeds nor fails until it
+	 * times out: a listener that never accepts, with its backlog filled by
+	 * {@code clients}.
+	 */
+	private static InetSocketAddress fillBacklog(ServerSocket server, List<Socket> clients)
+			throws IOException {
+		InetSocketAddress address = new InetSocketAddress(server.getInetAddress(),
+				server.getLocalPort());
+		for (int i = 0; i < 10; i++) {
+			Socket client = new Socket();
+			try {
+				client.connect(address, 200);
+				clients.add(client);
+			} catch (SocketTimeoutException e) {
+				client.close();
+				return address;
+			}
+		}
+		fail("The backlog never filled, so no connect would pend");
+		return null;
+	}
+
+	public void testShortenTimeout() throws IOException {
+		ServerSocket full = new ServerSocket(0, 1, mLoopback);
+		List<Socket> clients = new ArrayList<Socket>();
+		try {
+			InetSocketAddress pending = fillBacklog(full, clients);
+			InetSocketAddress open = new InetSocketAddress(mLoopback, mServer.getLocalPort());
+			List<InetSocketAddress> addresses = new ArrayList<InetSocketAddress>();
+			addresses.add(pending);
+			addresses.add(open);
+			final ConnectScanner scanner = new ConnectScanner(2, 2, 10000);
+			final List<IOException> errors = new ArrayList<IOException>();
+			ConnectScanner.Callback callback = new ConnectScanner.Callback() {
+				public void onConnected(InetSocketAddress address, int elapsed) {
+					scanner.setTimeout(100);
+				}
+
+				public void onFailed(InetSocketAddress address, IOException e, int elapsed) {
+					errors.add(e);
+				}
+			};
+			long start = SystemClock.elapsedRealtime();
+			scanner.scan(addresses, callback);
+			long elapsed = SystemClock.elapsedRealtime() - start;
+			assertEquals(100, scanner.getTimeout());
+			// The pending connect was cut short by the new timeout, not the old one
+			assertEquals(1, errors.size());
+			assertTrue(errors.get(0) instanceof SocketTimeoutException);
+			assertTrue(elapsed < 5000);
+		} finally {
+			for (Socket client : clients) {
+				client.close();
+			}
+			full.close();
+		}
+	}
+}
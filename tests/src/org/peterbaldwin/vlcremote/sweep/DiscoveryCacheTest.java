@@ -0,0 +1,105 @@
+/*-
+ *  Copyright (C) 2011 Peter Baldwin
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.peterbaldwin.vlcremote.sweep;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+public class DiscoveryCacheTest extends TestCase {
+
+	private static final String NETWORK = "home|192.168.1.0/24";
+
+	private File mFile;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		mFile = File.createTempFile("discovery", null);
+		mFile.delete();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		mFile.delete();
+		super.tearDown();
+	}
+
+	private static byte[] address(int last) {
+		return new byte[] {
+				(byte) 192, (byte) 168, 1, (byte) last
+		};
+	}
+
+	public void testNetworkKey() {
+		assertEquals(NETWORK, DiscoveryCache.getNetworkKey("home", address(20), 24));
+		assertEquals("|10.0.0.0/23", DiscoveryCache.getNetworkKey(null, new byte[] {
+				10, 0, 1, 1
+		}, 23));
+	}
+
+	public void testMostRecentFirst() {
+		DiscoveryCache cache = new DiscoveryCache(mFile);
+		assertTrue(cache.getHosts(NETWORK).isEmpty());
+		cache.put(NETWORK, address(10), 8080, 5);
+		cache.put(NETWORK, address(11), 8080, 7);
+		cache.put(NETWORK, address(10), 8080, 3);
+		List<DiscoveryCache.Host> hosts = cache.getHosts(NETWORK);
+		assertEquals(2, hosts.size());
+		assertTrue(Arrays.equals(address(10), hosts.get(0).address));
+		assertEquals(3, hosts.get(0).latency);
+		assertTrue(Arrays.equals(address(11), hosts.get(1).address));
+		assertTrue(cache.getHosts("other|10.0.0.0/24").isEmpty());
+	}
+
+	public void testLimit() {
+		DiscoveryCache cache = new DiscoveryCache(mFile);
+		for (int i = 1; i <= DiscoveryCache.MAX_HOSTS + 2; i++) {
+			cache.put(NETWORK, address(i), 8080, i);
+		}
+		List<DiscoveryCache.Host> hosts = cache.getHosts(NETWORK);
+		assertEquals(DiscoveryCache.MAX_HOSTS, hosts.size());
+		assertTrue(Arrays.equals(address(DiscoveryCache.MAX_HOSTS + 2), hosts.get(0).address));
+	}
+
+	public void testSaveAndLoad() throws IOException {
+		DiscoveryCache cache = new DiscoveryCache(mFile);
+		cache.put(NETWORK, address(10), 8080, 5);
+		cache.put("office|10.0.0.0/24", new byte[] {
+				10, 0, 0, 7
+		}, 9090, 12);
+		cache.save();
+		assertTrue(mFile.exists());
+
+		DiscoveryCache loaded = new DiscoveryCache(mFile);
+		List<DiscoveryCache.Host> hosts = loaded.getHosts(NETWORK);
+		assertEquals(1, hosts.size());
+		DiscoveryCache.Host host = hosts.get(0);
+		assertTrue(Arrays.equals(address(10), host.address));
+		assertEquals(8080, host.port);
+		assertEquals(5, host.latency);
+		assertEquals(9090, loaded.getHosts("office|10.0.0.0/24").get(0).port);
+	}
+
+	public void testMissingFile() {
+		assertTrue(new DiscoveryCache(new File(mFile, "missing")).getHosts(NETWORK).isEmpty());
+	}
+}
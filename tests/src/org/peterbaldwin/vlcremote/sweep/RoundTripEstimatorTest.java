@@ -0,0 +1,77 @@
+/*-
+ *  Copyright (C) 2011 Peter Baldwin
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.peterbaldwin.vlcremote.sweep;
+
+import junit.framework.TestCase;
+
+public class RoundTripEstimatorTest extends TestCase {
+
+	public void testDefaults() {
+		RoundTripEstimator estimator = new RoundTripEstimator();
+		assertEquals(0, estimator.getSampleCount());
+		assertEquals(RoundTripEstimator.DEFAULT_CONNECT_TIMEOUT, estimator.getConnectTimeout());
+		assertEquals(RoundTripEstimator.DEFAULT_READ_TIMEOUT, estimator.getReadTimeout());
+	}
+
+	public void testFewFastSamplesKeepDefaults() {
+		RoundTripEstimator estimator = new RoundTripEstimator();
+		estimator.addSample(2);
+		assertEquals(RoundTripEstimator.DEFAULT_CONNECT_TIMEOUT, estimator.getConnectTimeout());
+		assertEquals(RoundTripEstimator.DEFAULT_READ_TIMEOUT, estimator.getReadTimeout());
+	}
+
+	public void testFastNetwork() {
+		RoundTripEstimator estimator = new RoundTripEstimator();
+		for (int i = 0; i < RoundTripEstimator.MIN_SAMPLES; i++) {
+			estimator.addSample(3);
+		}
+		assertEquals(RoundTripEstimator.MIN_CONNECT_TIMEOUT, estimator.getConnectTimeout());
+		assertEquals(RoundTripEstimator.MIN_READ_TIMEOUT, estimator.getReadTimeout());
+	}
+
+	public void testSlowNetwork() {
+		RoundTripEstimator estimator = new RoundTripEstimator();
+		estimator.addSample(400);
+		assertEquals(1600, estimator.getConnectTimeout());
+		assertEquals(4000, estimator.getReadTimeout());
+		estimator.addSample(2000);
+		assertEquals(RoundTripEstimator.MAX_CONNECT_TIMEOUT, estimator.getConnectTimeout());
+		assertEquals(RoundTripEstimator.MAX_READ_TIMEOUT, estimator.getReadTimeout());
+	}
+
+	public void testPercentile() {
+		RoundTripEstimator estimator = new RoundTripEstimator();
+		for (int i = 1; i <= 10; i++) {
+			estimator.addSample(i * 10);
+		}
+		// The slowest host sets the timeout
+		assertEquals(100, estimator.getPercentile());
+		assertEquals(400, estimator.getConnectTimeout());
+		assertEquals(1000, estimator.getReadTimeout());
+	}
+
+	public void testSampleLimit() {
+		RoundTripEstimator estimator = new RoundTripEstimator();
+		for (int i = 0; i < RoundTripEstimator.MAX_SAMPLES; i++) {
+			assertTrue(estimator.addSample(10));
+		}
+		assertFalse(estimator.addSample(1000));
+		assertEquals(RoundTripEstimator.MAX_SAMPLES, estimator.getSampleCount());
+		assertEquals(10, estimator.getPercentile());
+	}
+}
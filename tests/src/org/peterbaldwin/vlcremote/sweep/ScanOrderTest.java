@@ -0,0 +1,78 @@
+/*-
+ *  Copyright (C) 2011 Peter Baldwin
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.peterbaldwin.vlcremote.sweep;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+public class ScanOrderTest extends TestCase {
+
+	private static final byte[] INTERFACE_ADDRESS = {
+			(byte) 192, (byte) 168, 1, 10
+	};
+
+	private static InetSocketAddress address(int last, int port) throws UnknownHostException {
+		InetAddress address = InetAddress.getByAddress(new byte[] {
+				(byte) 192, (byte) 168, 1, (byte) last
+		});
+		return new InetSocketAddress(address, port);
+	}
+
+	public void testNearestFirst() throws UnknownHostException {
+		List<InetSocketAddress> order = ScanOrder.build(INTERFACE_ADDRESS,
+				Collections.singletonList(AddressRange.parse("192.168.1.0/24")), new int[] {
+					8080
+				}, Collections.<InetSocketAddress> emptySet());
+		assertEquals(253, order.size());
+		assertEquals(Arrays.asList(address(9, 8080), address(11, 8080), address(8, 8080),
+				address(12, 8080)), order.subList(0, 4));
+		assertEquals(address(254, 8080), order.get(order.size() - 1));
+		assertFalse(order.contains(address(10, 8080)));
+		assertFalse(order.contains(address(0, 8080)));
+		assertFalse(order.contains(address(255, 8080)));
+	}
+
+	public void testPortsAndExclusions() throws UnknownHostException {
+		Set<InetSocketAddress> exclude = new HashSet<InetSocketAddress>();
+		exclude.add(address(11, 9090));
+		List<InetSocketAddress> order = ScanOrder.build(INTERFACE_ADDRESS,
+				Collections.singletonList(AddressRange.parse("192.168.1.0/24")), new int[] {
+						8080, 9090
+				}, exclude);
+		assertEquals(253 * 2 - 1, order.size());
+		assertEquals(Arrays.asList(address(9, 8080), address(9, 9090), address(11, 8080),
+				address(8, 8080)), order.subList(0, 4));
+	}
+
+	public void testOverlappingRanges() {
+		List<InetSocketAddress> order = ScanOrder.build(INTERFACE_ADDRESS, Arrays.asList(
+				AddressRange.parse("192.168.0.0/23"), AddressRange.parse("192.168.1.0/24")),
+				new int[] {
+					8080
+				}, Collections.<InetSocketAddress> emptySet());
+		assertEquals(509, order.size());
+	}
+}
@@ -0,0 +1,290 @@
+/*-
+ *  Copyright (C) 2011 Peter Baldwin
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.peterbaldwin.vlcremote.sweep;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.protocol.HTTP;
+import org.apache.http.util.EntityUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Queue;
+
+import junit.framework.TestCase;
+
+public class WorkerTest extends TestCase {
+
+	private static final class Addresses implements Worker.Manager {
+		final Queue<InetSocketAddress> queue = new LinkedList<InetSocketAddress>();
+
+		public synchronized InetSocketAddress pollAddress() {
+			return queue.poll();
+		}
+	}
+
+	private static final class Results implements Worker.Callback {
+		final List<InetSocketAddress> reachable = new ArrayList<InetSocketAddress>();
+
+		final List<HttpResponse> responses = new ArrayList<HttpResponse>();
+
+		final List<InetSocketAddress> unreachable = new ArrayList<InetSocketAddress>();
+
+		public synchronized void onReachable(InetSocketAddress address, HttpResponse response,
+				int latency) {
+			reachable.add(address);
+			responses.add(response);
+		}
+
+		public synchronized void onUnreachable(InetSocketAddress address, IOException e) {
+			unreachable.add(address);
+		}
+	}
+
+	private ServerSocket mServer;
+
+	private final List<Socket> mAccepted = new ArrayList<Socket>();
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		mServer = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+		Thread acceptor = new Thread() {
+			@Override
+			public void run() {
+				// Accept connections but never respond
+				try {
+					for (;;) {
+						Socket socket = mServer.accept();
+						synchronized (mAccepted) {
+							mAccepted.add(socket);
+						}
+					}
+				} catch (IOException e) {
+					// Closed
+				}
+			}
+		};
+		acceptor.start();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		mServer.close();
+		synchronized (mAccepted) {
+			for (Socket socket : mAccepted) {
+				socket.close();
+			}
+		}
+		super.tearDown();
+	}
+
+	public void testCancelClosesConnection() throws Exception {
+		Addresses addresses = new Addresses();
+		InetSocketAddress address = new InetSocketAddress(mServer.getInetAddress(),
+				mServer.getLocalPort());
+		addresses.queue.add(address);
+		addresses.queue.add(address);
+		Results results = new Results();
+
+		Worker worker = new Worker("/");
+		worker.setManager(addresses);
+		worker.setCallback(results);
+		Thread thread = new Thread(worker);
+		thread.start();
+
+		// Wait for the request to be sent
+		for (int i = 0; i < 100 && acceptedCount() == 0; i++) {
+			Thread.sleep(10);
+		}
+		assertEquals(1, acceptedCount());
+		Thread.sleep(100);
+		assertTrue(thread.isAlive());
+
+		worker.cancel();
+		// Closing the socket wakes the blocked read well within a second
+		thread.join(1000);
+		assertFalse(thread.isAlive());
+		assertTrue(worker.isCancelled());
+		assertTrue(results.reachable.isEmpty());
+		assertTrue(results.unreachable.isEmpty());
+		// The second address is left for the next sweep
+		assertEquals(1, addresses.queue.size());
+	}
+
+	public void testCancelBeforeStart() throws Exception {
+		Addresses addresses = new Addresses();
+		addresses.queue.add(new InetSocketAddress(mServer.getInetAddress(),
+				mServer.getLocalPort()));
+		Results results = new Results();
+
+		Worker worker = new Worker("/");
+		worker.setManager(addresses);
+		worker.setCallback(results);
+		worker.cancel();
+		worker.run();
+
+		assertEquals(0, acceptedCount());
+		assertEquals(1, addresses.queue.size());
+		assertTrue(results.unreachable.isEmpty());
+	}
+
+	public void testReadResponse() throws Exception {
+		HttpResponse response = Worker.readResponse(stream("HTTP/1.1 401 Unauthorized\r\n"
+				+ "Content-Type: text/html; charset=utf-8\r\n"
+				+ "WWW-Authenticate: Basic realm=\"VLC stream\"\r\n"
+				+ "\r\n"
+				+ "<html>Password</html>"));
+		assertEquals(401, response.getStatusLine().getStatusCode());
+		assertEquals("Unauthorized", response.getStatusLine().getReasonPhrase());
+		assertEquals("Basic realm=\"VLC stream\"",
+				response.getFirstHeader("WWW-Authenticate").getValue());
+		assertEquals("text/html; charset=utf-8",
+				response.getEntity().getContentType().getValue());
+		assertEquals("<html>Password</html>", EntityUtils.toString(response.getEntity()));
+	}
+
+	public void testReadResponseWithBareNewlines() throws Exception {
+		HttpResponse response = Worker.readResponse(stream("HTTP/1.0 200 OK\n\nbody"));
+		assertEquals(200, response.getStatusLine().getStatusCode());
+		assertEquals("body", EntityUtils.toString(response.getEntity()));
+	}
+
+	public void testBodyIsBounded() throws Exception {
+		StringBuilder page = new StringBuilder("HTTP/1.1 200 OK\r\n\r\n");
+		for (int i = 0; i < 100 * 1024; i++) {
+			page.append('x');
+		}
+		InputStream in = stream(page.toString());
+		HttpResponse response = Worker.readResponse(in);
+		assertEquals(Worker.MAX_BODY_LENGTH, response.getEntity().getContentLength());
+		assertTrue(in.available() > 0);
+	}
+
+	public void testContentLength() throws Exception {
+		HttpResponse response = Worker.readResponse(stream("HTTP/1.1 200 OK\r\n"
+				+ "Content-Length: 3\r\n\r\nabcdef"));
+		assertEquals("abc", EntityUtils.toString(response.getEntity()));
+	}
+
+	public void testNotHttp() throws Exception {
+		try {
+			Worker.readResponse(stream("SSH-2.0-OpenSSH_5.8\r\n\r\n"));
+			fail();
+		} catch (IOException e) {
+			// Expected
+		}
+		try {
+			Worker.readResponse(stream("HTTP/1.1 OK\r\n\r\n"));
+			fail();
+		} catch (IOException e) {
+			// Expected
+		}
+	}
+
+	public void testHeadersTooLong() throws Exception {
+		StringBuilder page = new StringBuilder("HTTP/1.1 200 OK\r\n");
+		while (page.length() <= Worker.MAX_HEADER_LENGTH) {
+			page.append("X-Padding: 0123456789\r\n");
+		}
+		page.append("\r\n");
+		try {
+			Worker.readResponse(stream(page.toString()));
+			fail();
+		} catch (IOException e) {
+			// Expected
+		}
+	}
+
+	public void testTruncatedHeaders() throws Exception {
+		try {
+			Worker.readResponse(stream("HTTP/1.1 200 OK\r\nServer: x"));
+			fail();
+		} catch (IOException e) {
+			// Expected
+		}
+	}
+
+	public void testProbe() throws Exception {
+		final ServerSocket server = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+		Thread thread = new Thread() {
+			@Override
+			public void run() {
+				try {
+					Socket socket = server.accept();
+					try {
+						InputStream in = socket.getInputStream();
+						while (in.read() != '\n') {
+							// Skip the request line
+						}
+						byte[] page = new byte[1024 * 1024];
+						socket.getOutputStream().write(
+								"HTTP/1.0 200 OK\r\nContent-Type: text/html\r\n\r\n"
+										.getBytes("ISO-8859-1"));
+						socket.getOutputStream().write(page);
+					} finally {
+						socket.close();
+					}
+				} catch (IOException e) {
+					// The worker closed the connection before the page was sent
+				}
+			}
+		};
+		thread.start();
+		try {
+			Addresses addresses = new Addresses();
+			InetSocketAddress address = new InetSocketAddress(server.getInetAddress(),
+					server.getLocalPort());
+			addresses.queue.add(address);
+			Results results = new Results();
+			Worker worker = new Worker("/requests/status.xml");
+			worker.setManager(addresses);
+			worker.setCallback(results);
+			worker.run();
+
+			assertEquals(1, results.reachable.size());
+			assertEquals(address, results.reachable.get(0));
+			assertTrue(results.unreachable.isEmpty());
+			HttpResponse response = results.responses.get(0);
+			assertEquals(200, response.getStatusLine().getStatusCode());
+			String host = response.getFirstHeader(HTTP.TARGET_HOST).getValue();
+			assertTrue(host, host.endsWith(":" + server.getLocalPort()));
+			assertEquals(Worker.MAX_BODY_LENGTH, response.getEntity().getContentLength());
+			thread.join(1000);
+		} finally {
+			server.close();
+		}
+	}
+
+	private static InputStream stream(String response) throws IOException {
+		return new ByteArrayInputStream(response.getBytes("ISO-8859-1"));
+	}
+
+	private int acceptedCount() {
+		synchronized (mAccepted) {
+			return mAccepted.size();
+		}
+	}
+}